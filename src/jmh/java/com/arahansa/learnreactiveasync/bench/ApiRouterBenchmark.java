@@ -0,0 +1,172 @@
+package com.arahansa.learnreactiveasync.bench;
+
+import com.arahansa.learnreactiveasync.api.ApiHandler;
+import com.arahansa.learnreactiveasync.api.ApiRouter;
+import com.arahansa.learnreactiveasync.api.ApiService;
+import com.arahansa.learnreactiveasync.api.Result;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.http.server.reactive.ReactorHttpHandlerAdapter;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.ipc.netty.NettyContext;
+import reactor.ipc.netty.http.server.HttpServer;
+import reactor.ipc.netty.resources.PoolResources;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.web.reactive.function.server.RequestPredicates.GET;
+import static org.springframework.web.reactive.function.server.RouterFunctions.route;
+
+/**
+ * ApiRouter 의 /api/results 와 예전 방식 (요청마다 스레드를 잡고 ExecutorService.submit + Future.get) 을 같은 Netty 서버에서 비교한다.
+ *
+ * 두 엔드포인트 모두 getApi 를 count 번 불러서 모은 Result 를 application/stream+json 으로 돌려준다. 백엔드 지연은 latencyMillis.
+ * <ul>
+ *     <li>router: ApiRouter 그대로. 지연은 Mono.delay 라 기다리는 동안 스레드를 잡지 않는다.</li>
+ *     <li>blocking: 서블릿 컨테이너처럼 requestThreads 크기 풀의 스레드 하나가 요청 하나를 맡고,
+ *     Async03_Future 처럼 getApi 를 같은 크기의 풀에 submit 한 뒤 Future.get 으로 기다린다. getApi 는 Thread.sleep 으로 지연을 흉내낸다.</li>
+ * </ul>
+ * 한 번의 호출은 connections 개의 요청을 각자의 연결로 동시에 보내고 모두 끝날 때까지 기다린다.
+ * 서버와 클라이언트는 reactor-netty 의 기본 이벤트 루프 그룹 하나를 같이 쓴다.
+ * 10k 연결은 파일 디스크립터 한도 (ulimit -n) 를 먼저 올려야 한다.
+ * <pre>
+ * ./gradlew jmh -PjmhArgs="ApiRouterBenchmark"
+ * ./gradlew jmh -PjmhArgs="ApiRouterBenchmark -p connections=10000 -p latencyMillis=50"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ApiRouterBenchmark {
+
+    @Param({"100", "1000"})
+    public int connections;
+
+    @Param({"10"})
+    public int count;
+
+    @Param({"10"})
+    public long latencyMillis;
+
+    @Param({"200"})
+    public int requestThreads;
+
+    private ExecutorService requestPool;
+    private ExecutorService workerPool;
+    private Scheduler requestScheduler;
+    private NettyContext server;
+    private PoolResources connectionPool;
+    private WebClient client;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        requestPool = Executors.newFixedThreadPool(requestThreads);
+        workerPool = Executors.newFixedThreadPool(requestThreads);
+        requestScheduler = Schedulers.fromExecutorService(requestPool);
+
+        ApiHandler apiHandler = new ApiHandler(new ApiService(latencyMillis));
+        RouterFunction<ServerResponse> routes = new ApiRouter().apiRoutes(apiHandler)
+                .andRoute(GET("/blocking/results"), this::blockingResults);
+        server = HttpServer.create("127.0.0.1", 0)
+                .newHandler(new ReactorHttpHandlerAdapter(RouterFunctions.toHttpHandler(routes)))
+                .block();
+
+        // 기본 풀은 연결 수가 고정이라 connections 개를 동시에 열 수 없다.
+        connectionPool = PoolResources.elastic("api-bench");
+        client = WebClient.builder()
+                .baseUrl("http://127.0.0.1:" + server.address().getPort())
+                .clientConnector(new ReactorClientHttpConnector(options -> options.poolResources(connectionPool)))
+                .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        server.dispose();
+        connectionPool.dispose();
+        requestScheduler.dispose();
+        requestPool.shutdownNow();
+        workerPool.shutdownNow();
+    }
+
+    @Benchmark
+    public long router() {
+        return fire("/api/results?count={count}&concurrency={concurrency}");
+    }
+
+    @Benchmark
+    public long blocking() {
+        return fire("/blocking/results?count={count}&concurrency={concurrency}");
+    }
+
+    /**
+     * connections 개의 요청을 동시에 보내고 받은 바이트 수를 돌려준다.
+     */
+    private long fire(String uri) {
+        return Flux.range(0, connections)
+                .flatMap(i -> client.get()
+                        .uri(uri, count, count)
+                        .retrieve()
+                        .bodyToMono(String.class), connections)
+                .map(body -> (long) body.length())
+                .reduce(0L, Long::sum)
+                .block();
+    }
+
+    private Mono<ServerResponse> blockingResults(ServerRequest request) {
+        int n = request.queryParam("count").map(Integer::parseInt).orElse(10);
+        Mono<List<Result>> results = Mono.fromCallable(() -> getApis(n)).subscribeOn(requestScheduler);
+        return ServerResponse.ok()
+                .contentType(MediaType.APPLICATION_STREAM_JSON)
+                .body(results.flatMapMany(Flux::fromIterable), Result.class);
+    }
+
+    /**
+     * 요청 스레드에서 돌면서 getApi 를 모두 submit 하고 Future.get 으로 기다린다.
+     */
+    private List<Result> getApis(int n) throws Exception {
+        List<Future<Result>> futures = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            int index = i;
+            futures.add(workerPool.submit(() -> getApi(index)));
+        }
+        List<Result> results = new ArrayList<>(n);
+        for (Future<Result> future : futures) {
+            results.add(future.get());
+        }
+        return results;
+    }
+
+    private Result getApi(int index) throws InterruptedException {
+        TimeUnit.MILLISECONDS.sleep(latencyMillis);
+        return new Result("s" + index);
+    }
+}
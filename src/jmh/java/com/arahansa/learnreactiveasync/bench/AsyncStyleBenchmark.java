@@ -0,0 +1,261 @@
+package com.arahansa.learnreactiveasync.bench;
+
+import com.arahansa.learnreactiveasync.async.Promise;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 프로젝트에서 보여주는 비동기 방식들을 같은 fan-out/fan-in 작업으로 비교한다.
+ *
+ * 작업: getApi() 흉내를 fanOut 번 호출하고 (payloadSize 바이트를 만들고 해시), 결과를 모두 모아 더한다.
+ * <ul>
+ *     <li>rawThreads: Async01/02 처럼 호출마다 Thread 를 만들고 join</li>
+ *     <li>future: Async03_Future 처럼 ExecutorService.submit 후 Future.get</li>
+ *     <li>completableFutureAllOf: supplyAsync + allOf + join</li>
+ *     <li>completableFutureCombine: thenCombine 으로 한 줄로 합치기</li>
+ *     <li>completableFutureCompose: thenCompose 로 순서대로 잇기 (fan-out 이 아닌 기준점)</li>
+ *     <li>guavaAllAsList: listeningDecorator + Futures.allAsList</li>
+ *     <li>forkJoin: 호출마다 RecursiveTask 를 만들어 invokeAll</li>
+ *     <li>reactorFlatMap: Flux.flatMap 으로 같은 풀에서 실행</li>
+ *     <li>promiseAll: Promise.all</li>
+ * </ul>
+ * 처리량과 지연 백분위는 Throughput/SampleTime 모드로, 할당량은 -prof gc 로 본다.
+ * <pre>
+ * ./gradlew jmh -PjmhArgs="AsyncStyleBenchmark -prof gc"
+ * ./gradlew jmh -PjmhArgs="AsyncStyleBenchmark -p threads=4 -p fanOut=256"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AsyncStyleBenchmark {
+
+    @Param({"1", "4", "16"})
+    public int threads;
+
+    @Param({"16", "256"})
+    public int fanOut;
+
+    @Param({"64", "4096"})
+    public int payloadSize;
+
+    private ExecutorService executor;
+    private ListeningExecutorService listeningExecutor;
+    private ForkJoinPool forkJoinPool;
+    private Scheduler scheduler;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(threads);
+        listeningExecutor = MoreExecutors.listeningDecorator(executor);
+        forkJoinPool = new ForkJoinPool(threads);
+        scheduler = Schedulers.fromExecutorService(executor);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        executor.shutdown();
+        forkJoinPool.shutdown();
+        executor.awaitTermination(1, TimeUnit.SECONDS);
+        forkJoinPool.awaitTermination(1, TimeUnit.SECONDS);
+    }
+
+    /**
+     * getApi() 대신 호출하는 작업. payloadSize 바이트를 만들고 해시를 돌려준다.
+     */
+    static long getApi(int index, int payloadSize) {
+        byte[] payload = new byte[payloadSize];
+        long hash = index;
+        for (int i = 0; i < payload.length; i++) {
+            payload[i] = (byte) (hash + i);
+            hash = 31 * hash + payload[i];
+        }
+        return hash;
+    }
+
+    @Benchmark
+    public long rawThreads() throws InterruptedException {
+        long[] results = new long[fanOut];
+        Thread[] workers = new Thread[fanOut];
+        for (int i = 0; i < fanOut; i++) {
+            int index = i;
+            workers[i] = new Thread(() -> results[index] = getApi(index, payloadSize));
+            workers[i].start();
+        }
+        long sum = 0;
+        for (int i = 0; i < fanOut; i++) {
+            workers[i].join();
+            sum += results[i];
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long future() throws Exception {
+        List<Future<Long>> futures = new ArrayList<>(fanOut);
+        for (int i = 0; i < fanOut; i++) {
+            int index = i;
+            futures.add(executor.submit(() -> getApi(index, payloadSize)));
+        }
+        long sum = 0;
+        for (Future<Long> future : futures) {
+            sum += future.get();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long completableFutureAllOf() {
+        List<CompletableFuture<Long>> futures = new ArrayList<>(fanOut);
+        for (int i = 0; i < fanOut; i++) {
+            int index = i;
+            futures.add(CompletableFuture.supplyAsync(() -> getApi(index, payloadSize), executor));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+        long sum = 0;
+        for (CompletableFuture<Long> future : futures) {
+            sum += future.join();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long completableFutureCombine() {
+        CompletableFuture<Long> sum = CompletableFuture.completedFuture(0L);
+        for (int i = 0; i < fanOut; i++) {
+            int index = i;
+            sum = sum.thenCombine(CompletableFuture.supplyAsync(() -> getApi(index, payloadSize), executor), Long::sum);
+        }
+        return sum.join();
+    }
+
+    @Benchmark
+    public long completableFutureCompose() {
+        CompletableFuture<Long> sum = CompletableFuture.completedFuture(0L);
+        for (int i = 0; i < fanOut; i++) {
+            int index = i;
+            sum = sum.thenCompose(s -> CompletableFuture.supplyAsync(() -> s + getApi(index, payloadSize), executor));
+        }
+        return sum.join();
+    }
+
+    @Benchmark
+    public long guavaAllAsList() throws Exception {
+        List<ListenableFuture<Long>> futures = new ArrayList<>(fanOut);
+        for (int i = 0; i < fanOut; i++) {
+            int index = i;
+            futures.add(listeningExecutor.submit(() -> getApi(index, payloadSize)));
+        }
+        long sum = 0;
+        for (long result : Futures.allAsList(futures).get()) {
+            sum += result;
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long forkJoin() {
+        return forkJoinPool.invoke(new FanOutTask(fanOut, payloadSize));
+    }
+
+    @Benchmark
+    public long reactorFlatMap() {
+        return Flux.range(0, fanOut)
+                .flatMap(index -> Mono.fromCallable(() -> getApi(index, payloadSize)).subscribeOn(scheduler))
+                .reduce(0L, Long::sum)
+                .block();
+    }
+
+    @Benchmark
+    public long promiseAll() {
+        List<Promise<Long>> promises = new ArrayList<>(fanOut);
+        for (int i = 0; i < fanOut; i++) {
+            int index = i;
+            Promise<Long> promise = new Promise<>();
+            executor.execute(() -> promise.complete(getApi(index, payloadSize)));
+            promises.add(promise);
+        }
+        long sum = 0;
+        for (long result : Promise.<Long>all(promises).toCompletableFuture().join()) {
+            sum += result;
+        }
+        return sum;
+    }
+
+    static final class FanOutTask extends RecursiveTask<Long> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int fanOut;
+        private final int payloadSize;
+
+        FanOutTask(int fanOut, int payloadSize) {
+            this.fanOut = fanOut;
+            this.payloadSize = payloadSize;
+        }
+
+        @Override
+        protected Long compute() {
+            List<ApiCallTask> calls = new ArrayList<>(fanOut);
+            for (int i = 0; i < fanOut; i++) {
+                calls.add(new ApiCallTask(i, payloadSize));
+            }
+            long sum = 0;
+            for (ApiCallTask call : ForkJoinTask.invokeAll(calls)) {
+                sum += call.join();
+            }
+            return sum;
+        }
+    }
+
+    static final class ApiCallTask extends RecursiveTask<Long> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int index;
+        private final int payloadSize;
+
+        ApiCallTask(int index, int payloadSize) {
+            this.index = index;
+            this.payloadSize = payloadSize;
+        }
+
+        @Override
+        protected Long compute() {
+            return getApi(index, payloadSize);
+        }
+    }
+}
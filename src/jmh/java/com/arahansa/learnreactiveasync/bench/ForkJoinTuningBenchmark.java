@@ -0,0 +1,242 @@
+package com.arahansa.learnreactiveasync.bench;
+
+import com.arahansa.learnreactiveasync.forkjoin.ArrayTreeNode;
+import com.arahansa.learnreactiveasync.forkjoin.ForkJoinThresholds;
+import com.arahansa.learnreactiveasync.forkjoin.Monoid;
+import com.arahansa.learnreactiveasync.forkjoin.RangeSumTask;
+import com.arahansa.learnreactiveasync.forkjoin.TextNormalizeAction;
+import com.arahansa.learnreactiveasync.forkjoin.TreeAggregateTask;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 포크조인 임계값과 풀 크기를 고르기 위한 벤치마크.
+ *
+ * CustomRecursiveTask 의 THRESHOLD = 20, CustomRecursiveAction 의 THRESHOLD = 4, new ForkJoinPool(2) 는 근거가 없다.
+ * 같은 작업을 threshold 와 전용 풀의 parallelism 조합, 그리고 공용 풀로 돌려서 비교한다.
+ * <ul>
+ *     <li>arraySum: RangeSumTask (CustomRecursiveTask 와 같은 필터/맵)</li>
+ *     <li>upperCase: TextNormalizeAction (CustomRecursiveAction 과 같은 대문자 변환)</li>
+ *     <li>treeSum: TreeAggregateTask, threshold 를 cutoff 로 사용</li>
+ *     <li>treeSumPerChild: CountingTask 처럼 자식마다 fork 하는 기준점. threshold 와 무관하다.</li>
+ * </ul>
+ * 이름이 Common 으로 끝나는 것은 공용 풀에서 돈다. parallelism 은 전용 풀 (Dedicated) 에만, threshold 는 Threshold 에만 있는
+ * 파라미터라서 공용 풀 변형은 parallelism 마다, treeSumPerChild 는 threshold 마다 다시 돌지 않는다.
+ * threshold 가 0 이면 ForkJoinThresholds 의 기본값을 쓴다.
+ * steals 는 측정 동안 풀의 getStealCount() 증가량이다. 할당량은 -prof gc 로 본다.
+ * <pre>
+ * ./gradlew jmh -PjmhArgs="ForkJoinTuningBenchmark -prof gc"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ForkJoinTuningBenchmark {
+
+    private static final int ARRAY_SIZE = 1 << 22;
+    private static final int TEXT_LINES = 1 << 15;
+    private static final int TREE_NODES = 1 << 20;
+
+    private int[] array;
+    private String text;
+    private char[] textTarget;
+    private ArrayTreeNode tree;
+
+    @State(Scope.Benchmark)
+    public static class Dedicated {
+        @Param({"2", "4", "8"})
+        public int parallelism;
+
+        ForkJoinPool pool;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            pool = new ForkJoinPool(parallelism);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            pool.shutdown();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Threshold {
+        @Param({"0", "20", "1024", "65536"})
+        public int threshold;
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Steals {
+        public long steals;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        array = random.ints(ARRAY_SIZE, 0, 40).toArray();
+
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < TEXT_LINES; i++) {
+            builder.append("hello world ").append(i).append(i % 4 == 0 ? '\n' : ' ');
+        }
+        text = builder.toString();
+        textTarget = new char[text.length()];
+
+        tree = randomTree(random, TREE_NODES);
+    }
+
+    /**
+     * 부모를 앞쪽 노드 중에서 고르는 랜덤 트리. 팬아웃과 깊이가 고르지 않다.
+     */
+    private static ArrayTreeNode randomTree(Random random, int size) {
+        int[] parent = new int[size];
+        int[] childCount = new int[size];
+        for (int i = 1; i < size; i++) {
+            parent[i] = random.nextInt(i);
+            childCount[parent[i]]++;
+        }
+        ArrayTreeNode[][] children = new ArrayTreeNode[size][];
+        int[] filled = new int[size];
+        for (int i = 0; i < size; i++) {
+            children[i] = new ArrayTreeNode[childCount[i]];
+        }
+        ArrayTreeNode root = null;
+        for (int i = size - 1; i >= 0; i--) {
+            ArrayTreeNode node = new ArrayTreeNode(random.nextInt(10), children[i]);
+            children[i] = null;
+            if (i == 0) {
+                root = node;
+            } else {
+                children[parent[i]][filled[parent[i]]++] = node;
+            }
+        }
+        return root;
+    }
+
+    private static int thresholdFor(Threshold threshold, long length, ForkJoinPool pool) {
+        return threshold.threshold > 0 ? threshold.threshold : ForkJoinThresholds.of(length, pool);
+    }
+
+    @Benchmark
+    public long arraySum(Dedicated dedicated, Threshold threshold, Steals steals) {
+        return arraySum(dedicated.pool, threshold, steals);
+    }
+
+    @Benchmark
+    public long arraySumCommon(Threshold threshold, Steals steals) {
+        return arraySum(ForkJoinPool.commonPool(), threshold, steals);
+    }
+
+    @Benchmark
+    public char[] upperCase(Dedicated dedicated, Threshold threshold, Steals steals) {
+        return upperCase(dedicated.pool, threshold, steals);
+    }
+
+    @Benchmark
+    public char[] upperCaseCommon(Threshold threshold, Steals steals) {
+        return upperCase(ForkJoinPool.commonPool(), threshold, steals);
+    }
+
+    @Benchmark
+    public long treeSum(Dedicated dedicated, Threshold threshold, Steals steals) {
+        return treeSum(dedicated.pool, threshold, steals);
+    }
+
+    @Benchmark
+    public long treeSumCommon(Threshold threshold, Steals steals) {
+        return treeSum(ForkJoinPool.commonPool(), threshold, steals);
+    }
+
+    @Benchmark
+    public int treeSumPerChild(Dedicated dedicated, Steals steals) {
+        return treeSumPerChild(dedicated.pool, steals);
+    }
+
+    @Benchmark
+    public int treeSumPerChildCommon(Steals steals) {
+        return treeSumPerChild(ForkJoinPool.commonPool(), steals);
+    }
+
+    private long arraySum(ForkJoinPool pool, Threshold threshold, Steals steals) {
+        long before = pool.getStealCount();
+        RangeSumTask task = new RangeSumTask(array, 0, array.length, thresholdFor(threshold, array.length, pool));
+        pool.invoke(task);
+        steals.steals += pool.getStealCount() - before;
+        return task.getResult();
+    }
+
+    private char[] upperCase(ForkJoinPool pool, Threshold threshold, Steals steals) {
+        long before = pool.getStealCount();
+        pool.invoke(new TextNormalizeAction(text, 0, text.length(), textTarget, 0,
+                TextNormalizeAction.UPPER_CASE, thresholdFor(threshold, text.length(), pool), false));
+        steals.steals += pool.getStealCount() - before;
+        return textTarget;
+    }
+
+    private long treeSum(ForkJoinPool pool, Threshold threshold, Steals steals) {
+        long before = pool.getStealCount();
+        int cutoff = threshold.threshold > 0 ? threshold.threshold : TreeAggregateTask.cutoffFor(tree, pool);
+        long sum = pool.invoke(new TreeAggregateTask<>(tree, node -> (long) node.getValue(), Monoid.longSum(), cutoff));
+        steals.steals += pool.getStealCount() - before;
+        return sum;
+    }
+
+    private int treeSumPerChild(ForkJoinPool pool, Steals steals) {
+        long before = pool.getStealCount();
+        int sum = pool.invoke(new PerChildCountingTask(tree));
+        steals.steals += pool.getStealCount() - before;
+        return sum;
+    }
+
+    /**
+     * J01_ExecutorSample.CountingTask 와 같은 방식. 자식마다 태스크를 fork 한다.
+     */
+    static final class PerChildCountingTask extends RecursiveTask<Integer> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final ArrayTreeNode node;
+
+        PerChildCountingTask(ArrayTreeNode node) {
+            this.node = node;
+        }
+
+        @Override
+        protected Integer compute() {
+            List<ForkJoinTask<Integer>> forked = new ArrayList<>(node.getChildCount());
+            for (int i = 0; i < node.getChildCount(); i++) {
+                forked.add(new PerChildCountingTask(node.getChild(i)).fork());
+            }
+            int sum = node.getValue();
+            for (ForkJoinTask<Integer> task : forked) {
+                sum += task.join();
+            }
+            return sum;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.arahansa.learnreactiveasync.bench;
+
+import com.arahansa.learnreactiveasync.executor.RingBufferBlockingQueue;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 풀의 workQueue 후보들을 생산자 1 / 4 / 16 개, 소비자 1 개로 비교한다.
+ *
+ * 측정이 끝날 때 반대쪽이 먼저 멈추면 put/take 는 영원히 막히므로 offer/poll 만 쓴다.
+ * 실패한 시도도 호출 횟수에 잡히기 때문에 실제 처리량은 offered / polled 보조 카운터로 본다.
+ * <pre>
+ * ./gradlew jmh -PjmhArgs="QueueBenchmark -prof gc"
+ * </pre>
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueueBenchmark {
+
+    private static final Runnable TASK = () -> {
+    };
+
+    @Param({"ring", "array", "linked"})
+    public String queue;
+
+    @Param({"1024"})
+    public int capacity;
+
+    private BlockingQueue<Runnable> workQueue;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Counts {
+        public long offered;
+        public long polled;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            offered = 0;
+            polled = 0;
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        switch (queue) {
+            case "ring":
+                workQueue = new RingBufferBlockingQueue<>(capacity);
+                break;
+            case "array":
+                workQueue = new ArrayBlockingQueue<>(capacity);
+                break;
+            case "linked":
+                workQueue = new LinkedBlockingQueue<>(capacity);
+                break;
+            default:
+                throw new IllegalArgumentException(queue);
+        }
+    }
+
+    private void offer(Counts counts) {
+        if (workQueue.offer(TASK)) {
+            counts.offered++;
+        }
+    }
+
+    private void poll(Counts counts) {
+        if (workQueue.poll() != null) {
+            counts.polled++;
+        }
+    }
+
+    @Benchmark
+    @Group("producers1")
+    @GroupThreads(1)
+    public void offer1(Counts counts) {
+        offer(counts);
+    }
+
+    @Benchmark
+    @Group("producers1")
+    @GroupThreads(1)
+    public void poll1(Counts counts) {
+        poll(counts);
+    }
+
+    @Benchmark
+    @Group("producers4")
+    @GroupThreads(4)
+    public void offer4(Counts counts) {
+        offer(counts);
+    }
+
+    @Benchmark
+    @Group("producers4")
+    @GroupThreads(1)
+    public void poll4(Counts counts) {
+        poll(counts);
+    }
+
+    @Benchmark
+    @Group("producers16")
+    @GroupThreads(16)
+    public void offer16(Counts counts) {
+        offer(counts);
+    }
+
+    @Benchmark
+    @Group("producers16")
+    @GroupThreads(1)
+    public void poll16(Counts counts) {
+        poll(counts);
+    }
+}
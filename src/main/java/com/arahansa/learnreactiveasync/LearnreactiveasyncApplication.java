@@ -1,7 +1,9 @@
 package com.arahansa.learnreactiveasync;
 
+import com.arahansa.learnreactiveasync.executor.ExecutorRegistry;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.Bean;
 
 @SpringBootApplication
 public class LearnreactiveasyncApplication {
@@ -9,4 +11,9 @@ public class LearnreactiveasyncApplication {
 	public static void main(String[] args) {
 		SpringApplication.run(LearnreactiveasyncApplication.class, args);
 	}
+
+	@Bean(destroyMethod = "close")
+	public ExecutorRegistry executorRegistry() {
+		return new ExecutorRegistry();
+	}
 }
@@ -0,0 +1,59 @@
+package com.arahansa.learnreactiveasync.api;
+
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Mono;
+
+@Component
+public class ApiHandler {
+
+    static final int MAX_COUNT = 100_000;
+    static final int MAX_CONCURRENCY = 256;
+    static final int DEFAULT_CONCURRENCY = 32;
+
+    private final ApiService apiService;
+
+    public ApiHandler(ApiService apiService) {
+        this.apiService = apiService;
+    }
+
+    public Mono<ServerResponse> result(ServerRequest request) {
+        return ServerResponse.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(apiService.getApi(0), Result.class);
+    }
+
+    /**
+     * 줄 단위 JSON (application/stream+json) 으로 결과가 나오는 대로 보낸다.
+     */
+    public Mono<ServerResponse> stream(ServerRequest request) {
+        return results(request, MediaType.APPLICATION_STREAM_JSON);
+    }
+
+    public Mono<ServerResponse> events(ServerRequest request) {
+        return results(request, MediaType.TEXT_EVENT_STREAM);
+    }
+
+    private Mono<ServerResponse> results(ServerRequest request, MediaType mediaType) {
+        int count;
+        int concurrency;
+        try {
+            count = intParam(request, "count", 10);
+            concurrency = intParam(request, "concurrency", DEFAULT_CONCURRENCY);
+        } catch (NumberFormatException e) {
+            return ServerResponse.badRequest().build();
+        }
+        if (count < 0 || count > MAX_COUNT || concurrency < 1 || concurrency > MAX_CONCURRENCY) {
+            return ServerResponse.badRequest().build();
+        }
+        return ServerResponse.ok()
+                .contentType(mediaType)
+                .body(apiService.getApis(count, concurrency), Result.class);
+    }
+
+    private static int intParam(ServerRequest request, String name, int defaultValue) {
+        return request.queryParam(name).map(Integer::parseInt).orElse(defaultValue);
+    }
+}
@@ -0,0 +1,27 @@
+package com.arahansa.learnreactiveasync.api;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.ServerResponse;
+
+import static org.springframework.web.reactive.function.server.RequestPredicates.GET;
+import static org.springframework.web.reactive.function.server.RouterFunctions.route;
+
+/**
+ * GET /api/result          Result 하나 (Mono)
+ * GET /api/results         count 개의 Result 를 application/stream+json 으로 (Flux)
+ * GET /api/results/events  같은 내용을 text/event-stream 으로
+ *
+ * count 와 concurrency 쿼리 파라미터로 호출 수와 동시 호출 수를 정한다.
+ */
+@Configuration
+public class ApiRouter {
+
+    @Bean
+    public RouterFunction<ServerResponse> apiRoutes(ApiHandler apiHandler) {
+        return route(GET("/api/result"), apiHandler::result)
+                .andRoute(GET("/api/results"), apiHandler::stream)
+                .andRoute(GET("/api/results/events"), apiHandler::events);
+    }
+}
@@ -0,0 +1,38 @@
+package com.arahansa.learnreactiveasync.api;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+/**
+ * Async02.getApi() 의 논블로킹 버전.
+ *
+ * 백엔드 지연은 api.latency-millis 로 흉내내는데, Thread.sleep 이 아니라 Mono.delay 를 쓰므로
+ * 기다리는 동안 이벤트 루프 스레드를 잡지 않는다.
+ */
+@Service
+public class ApiService {
+
+    private final Duration latency;
+
+    public ApiService(@Value("${api.latency-millis:0}") long latencyMillis) {
+        this.latency = Duration.ofMillis(latencyMillis);
+    }
+
+    public Mono<Result> getApi(int index) {
+        Mono<Result> result = Mono.fromSupplier(() -> new Result("s" + index));
+        return latency.isZero() ? result : Mono.delay(latency).then(result);
+    }
+
+    /**
+     * getApi 를 count 번 호출한다. 동시에 진행하는 호출은 concurrency 개를 넘지 않고,
+     * 먼저 끝난 순서대로 내보낸다. 구독자가 request(n) 한 만큼만 더 호출한다.
+     */
+    public Flux<Result> getApis(int count, int concurrency) {
+        return Flux.range(0, count)
+                .flatMap(this::getApi, concurrency);
+    }
+}
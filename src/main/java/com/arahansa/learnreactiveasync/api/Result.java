@@ -0,0 +1,15 @@
+package com.arahansa.learnreactiveasync.api;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Async01/Async02 의 Result 를 JSON 으로 내보낼 수 있게 옮긴 것
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class Result {
+    private String s;
+}
@@ -0,0 +1,34 @@
+package com.arahansa.learnreactiveasync.api;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+/**
+ * MongoDB results 컬렉션에 저장되는 Result
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "results")
+public class ResultDocument {
+
+    @Id
+    private String id;
+    private String s;
+    @Indexed
+    private Instant createdAt;
+
+    public static ResultDocument from(Result result) {
+        return new ResultDocument(null, result.getS(), Instant.now());
+    }
+
+    public Result toResult() {
+        return new Result(s);
+    }
+}
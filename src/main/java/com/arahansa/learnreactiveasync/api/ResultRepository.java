@@ -0,0 +1,14 @@
+package com.arahansa.learnreactiveasync.api;
+
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.data.mongodb.repository.Tailable;
+import reactor.core.publisher.Flux;
+
+public interface ResultRepository extends ReactiveMongoRepository<ResultDocument, String> {
+
+    /**
+     * 새로 들어오는 문서를 끝없이 내보낸다. results 가 capped 컬렉션일 때만 쓸 수 있다.
+     */
+    @Tailable
+    Flux<ResultDocument> findWithTailableCursorBy();
+}
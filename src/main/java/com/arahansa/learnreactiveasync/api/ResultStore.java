@@ -0,0 +1,211 @@
+package com.arahansa.learnreactiveasync.api;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.CollectionOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.stereotype.Service;
+import org.reactivestreams.Subscription;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Result 스트림을 MongoDB 에 모아서 쓰고, 구독자의 요청만큼 나눠서 읽는다.
+ *
+ * 원소마다 insert 하면 한 시간에 수백만 건일 때 드라이버 왕복이 그대로 병목이 된다.
+ * 쓰기는 writeBatchSize 개가 차거나 writeMaxLatency 가 지나면 묶어서 insertMany 하나로 보낸다.
+ * 묶음은 concatMap 으로 하나씩 쓰므로, 쓰기가 밀리면 그만큼 위쪽 Flux 에 request 가 덜 가서 속도가 맞춰진다.
+ *
+ * bufferTimeout 은 (reactor-core 3.1) 타이머가 울렸을 때 아래쪽 request 가 없으면 OverflowException 으로 끝나므로,
+ * 쓰기가 writeMaxLatency 보다 느려지면 바로 실패한다. bufferUntil 도 request 가 없을 때 경계가 오면 같은 에러를 낸다.
+ * 그래서 Batcher 가 request 가 있을 때만 묶음을 내보내고, 위쪽에는 묶음 하나를 채울 만큼만 요청한다.
+ *
+ * 읽기는 limitRate(readBatchSize) 로 드라이버에 한 번에 readBatchSize 개까지만 요청한다.
+ * 리액티브 드라이버는 request(n) 만큼만 커서에서 가져오므로, 구독자가 느리면 커서도 그만큼 천천히 읽는다.
+ */
+@Service
+public class ResultStore {
+
+    private final ResultRepository repository;
+    private final ReactiveMongoOperations operations;
+    private final int writeBatchSize;
+    private final Duration writeMaxLatency;
+    private final int readBatchSize;
+
+    public ResultStore(ResultRepository repository, ReactiveMongoOperations operations,
+                       @Value("${results.write-batch-size:1000}") int writeBatchSize,
+                       @Value("${results.write-max-latency-millis:100}") long writeMaxLatencyMillis,
+                       @Value("${results.read-batch-size:256}") int readBatchSize) {
+        if (writeBatchSize < 1 || readBatchSize < 1) {
+            throw new IllegalArgumentException("batch sizes must be positive: " + writeBatchSize + ", " + readBatchSize);
+        }
+        this.repository = repository;
+        this.operations = operations;
+        this.writeBatchSize = writeBatchSize;
+        this.writeMaxLatency = Duration.ofMillis(writeMaxLatencyMillis);
+        this.readBatchSize = readBatchSize;
+    }
+
+    /**
+     * results 를 묶어서 저장하고, 모두 저장되면 저장한 수로 완료된다. 묶음 하나라도 실패하면 그 에러로 끝난다.
+     */
+    public Mono<Long> saveAll(Flux<Result> results) {
+        return batches(results.map(ResultDocument::from))
+                .concatMap(this::insertBatch)
+                .reduce(0L, Long::sum);
+    }
+
+    /**
+     * 오래된 것부터 읽는다.
+     */
+    public Flux<Result> findAll() {
+        return repository.findAll(Sort.by("createdAt"))
+                .limitRate(readBatchSize)
+                .map(ResultDocument::toResult);
+    }
+
+    /**
+     * 새로 저장되는 Result 를 끝없이 내보낸다. ensureCapped 로 results 를 capped 컬렉션으로 만들어 두어야 한다.
+     */
+    public Flux<Result> tail() {
+        return repository.findWithTailableCursorBy()
+                .limitRate(readBatchSize)
+                .map(ResultDocument::toResult);
+    }
+
+    /**
+     * results 컬렉션이 없으면 maxBytes 크기의 capped 컬렉션으로 만든다. 이미 있으면 그대로 둔다.
+     */
+    public Mono<Void> ensureCapped(long maxBytes) {
+        return operations.collectionExists(ResultDocument.class)
+                .flatMap(exists -> exists ? Mono.empty()
+                        : operations.createCollection(ResultDocument.class, CollectionOptions.empty().capped().size(maxBytes)))
+                .then();
+    }
+
+    /**
+     * writeBatchSize 개가 찼거나, 묶음에 처음 들어온 뒤 writeMaxLatency 가 지난 원소들을 묶는다.
+     */
+    private Flux<List<ResultDocument>> batches(Flux<ResultDocument> documents) {
+        return Flux.create(sink -> documents.subscribe(new Batcher(sink, writeBatchSize, writeMaxLatency)));
+    }
+
+    /**
+     * 아래쪽 request 가 있을 때만 묶음을 내보내고, 위쪽에는 지금 묶음을 채울 만큼만 요청한다.
+     * 시간이 지났는데 request 가 없으면 묶음을 들고 있다가 request 가 오면 내보낸다.
+     * 위쪽 신호, 타이머, 아래쪽 request 는 서로 다른 스레드에서 오므로 모두 this 로 묶는다.
+     */
+    private static class Batcher extends BaseSubscriber<ResultDocument> {
+
+        private final FluxSink<List<ResultDocument>> sink;
+        private final int batchSize;
+        private final Duration maxLatency;
+
+        private List<ResultDocument> batch;
+        private long pending;
+        private boolean flushDue;
+        private boolean done;
+        private long generation;
+        private Disposable timer = Disposables.disposed();
+
+        Batcher(FluxSink<List<ResultDocument>> sink, int batchSize, Duration maxLatency) {
+            this.sink = sink;
+            this.batchSize = batchSize;
+            this.maxLatency = maxLatency;
+            this.batch = new ArrayList<>(batchSize);
+        }
+
+        @Override
+        protected void hookOnSubscribe(Subscription subscription) {
+            sink.onRequest(n -> drain());
+            sink.onDispose(() -> {
+                dispose();
+                synchronized (this) {
+                    timer.dispose();
+                }
+            });
+            drain();
+        }
+
+        @Override
+        protected void hookOnNext(ResultDocument document) {
+            synchronized (this) {
+                pending--;
+                batch.add(document);
+                if (batch.size() == 1) {
+                    long scheduled = generation;
+                    timer = Schedulers.parallel().schedule(() -> flushAfterLatency(scheduled),
+                            maxLatency.toNanos(), TimeUnit.NANOSECONDS);
+                }
+            }
+            drain();
+        }
+
+        @Override
+        protected void hookOnComplete() {
+            synchronized (this) {
+                done = true;
+            }
+            drain();
+        }
+
+        @Override
+        protected void hookOnError(Throwable throwable) {
+            synchronized (this) {
+                timer.dispose();
+            }
+            sink.error(throwable);
+        }
+
+        private void flushAfterLatency(long scheduled) {
+            synchronized (this) {
+                // 그 사이 묶음이 나갔으면 다음 묶음의 시간은 다시 잰다.
+                if (scheduled != generation) {
+                    return;
+                }
+                flushDue = true;
+            }
+            drain();
+        }
+
+        private synchronized void drain() {
+            if (isDisposed() && !done) {
+                return;
+            }
+            boolean ready = batch.size() >= batchSize || (!batch.isEmpty() && (flushDue || done));
+            if (ready && sink.requestedFromDownstream() > 0) {
+                List<ResultDocument> full = batch;
+                batch = new ArrayList<>(batchSize);
+                flushDue = false;
+                generation++;
+                timer.dispose();
+                sink.next(full);
+            }
+            if (done) {
+                if (batch.isEmpty()) {
+                    sink.complete();
+                }
+                return;
+            }
+            if (pending == 0 && batch.size() < batchSize) {
+                pending = batchSize - batch.size();
+                request(pending);
+            }
+        }
+    }
+
+    private Mono<Long> insertBatch(List<ResultDocument> batch) {
+        // repository.insert(Iterable) 는 insertMany 한 번으로 보낸다.
+        return repository.insert(batch).then(Mono.just((long) batch.size()));
+    }
+}
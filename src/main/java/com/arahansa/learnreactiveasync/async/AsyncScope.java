@@ -0,0 +1,295 @@
+package com.arahansa.learnreactiveasync.async;
+
+import com.arahansa.learnreactiveasync.timer.TimeoutService;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 여러 작업을 한꺼번에 내보내고 (fan-out) 결과를 타입 그대로 모은다 (fan-in).
+ *
+ * CompletableFuture.allOf 는 CompletableFuture&lt;Void&gt; 라서 runningMultipleFutureParallel 처럼 끝난 뒤에 각 future 를 다시 join 해야 하고,
+ * 하나가 실패해도 나머지는 끝까지 돈다. allOfTyped 는 결과를 입력 순서대로 담은 List 로 완료되고,
+ * 첫 실패에서 바로 실패하면서 나머지를 취소한다.
+ *
+ * fork 로 이 스코프에서 시작한 작업은 FutureTask 로 돌기 때문에, 취소되면 실행 중인 스레드가 interrupt 된다.
+ * 밖에서 만든 future 는 cancel 만 되고 그 작업이 멈추는지는 작업에 달려 있다.
+ * 스코프에 deadline 을 주면 그때까지 끝나지 않은 작업은 TimeoutException 으로 실패하고 취소된다.
+ * close 하면 끝나지 않은 작업을 모두 취소한다.
+ * <pre>
+ * try (AsyncScope&lt;String&gt; scope = AsyncScope.open(executor)) {
+ *     backends.forEach(backend -&gt; scope.fork(backend::call));
+ *     List&lt;String&gt; results = scope.all().get();
+ * }
+ * </pre>
+ */
+public final class AsyncScope<T> implements AutoCloseable {
+
+    private final Executor executor;
+    private final List<CompletableFuture<T>> forks = new ArrayList<>();
+    // 정상 완료되지 않는다. deadline 이 지나면 TimeoutException 으로 실패한다.
+    private final CompletableFuture<Void> deadline = new CompletableFuture<>();
+    private boolean closed;
+
+    private AsyncScope(Executor executor) {
+        this.executor = Objects.requireNonNull(executor);
+    }
+
+    public static <T> AsyncScope<T> open(Executor executor) {
+        return new AsyncScope<>(executor);
+    }
+
+    /**
+     * 지금부터 timeout 안에 all / firstN 이 끝나지 않으면 TimeoutException 으로 실패시키고 남은 작업을 취소한다.
+     */
+    public AsyncScope<T> withDeadline(TimeoutService timeouts, long timeout, TimeUnit unit) {
+        timeouts.orTimeout(deadline, timeout, unit);
+        return this;
+    }
+
+    public synchronized CompletableFuture<T> fork(Callable<? extends T> task) {
+        if (closed) {
+            throw new IllegalStateException("scope is closed");
+        }
+        Fork<T> fork = new Fork<>(task);
+        forks.add(fork.result);
+        try {
+            executor.execute(fork);
+        } catch (RejectedExecutionException e) {
+            fork.result.completeExceptionally(e);
+        }
+        return fork.result;
+    }
+
+    /**
+     * 지금까지 fork 한 작업이 모두 성공하면 fork 순서대로 결과를 담아 완료된다.
+     */
+    public CompletableFuture<List<T>> all() {
+        return withinDeadline(allOfTyped(snapshot()));
+    }
+
+    /**
+     * 지금까지 fork 한 작업 중 먼저 성공한 n 개의 결과. 나머지는 취소한다.
+     */
+    public CompletableFuture<List<T>> firstN(int n) {
+        return withinDeadline(firstN(n, snapshot()));
+    }
+
+    public synchronized void cancelAll() {
+        for (CompletableFuture<T> fork : forks) {
+            fork.cancel(true);
+        }
+    }
+
+    /**
+     * 더 이상 fork 할 수 없고, 끝나지 않은 작업은 취소된다.
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        cancelAll();
+        deadline.cancel(false);
+    }
+
+    private synchronized List<CompletableFuture<T>> snapshot() {
+        return new ArrayList<>(forks);
+    }
+
+    /**
+     * deadline 이 지나면 남은 작업을 먼저 취소하고 그 다음에 돌려준 future 를 TimeoutException 으로 실패시킨다.
+     * 순서가 반대면 get() 으로 기다리던 쪽이 작업이 아직 도는 중에 깨어난다.
+     * 취소하면 result 가 CancellationException 으로 먼저 끝나므로, deadline 이 지난 뒤의 result 는 넘기지 않는다.
+     */
+    private <R> CompletableFuture<R> withinDeadline(CompletableFuture<R> result) {
+        CompletableFuture<R> scoped = new CompletableFuture<>();
+        AtomicBoolean expired = new AtomicBoolean();
+        deadline.whenComplete((ignored, ex) -> {
+            if (ex != null && !scoped.isDone() && expired.compareAndSet(false, true)) {
+                cancelAll();
+                scoped.completeExceptionally(ex);
+            }
+        });
+        result.whenComplete((value, ex) -> {
+            if (expired.get()) {
+                return;
+            }
+            if (ex != null) {
+                scoped.completeExceptionally(ex);
+            } else {
+                scoped.complete(value);
+            }
+        });
+        scoped.whenComplete((value, ex) -> {
+            if (scoped.isCancelled()) {
+                result.cancel(true);
+            }
+        });
+        return scoped;
+    }
+
+    /**
+     * 모두 성공하면 입력 순서대로 결과를 담은 List 로 완료된다.
+     * 하나라도 실패하면 나머지를 cancel(true) 한 다음 그 예외로 실패한다.
+     * 그래서 결과를 기다리던 쪽이 깨어날 때는 나머지가 이미 취소되어 있다. 돌려준 future 를 취소해도 나머지를 취소한다.
+     */
+    public static <T> CompletableFuture<List<T>> allOfTyped(List<? extends CompletableFuture<? extends T>> futures) {
+        CompletableFuture<List<T>> result = new CompletableFuture<>();
+        int size = futures.size();
+        if (size == 0) {
+            result.complete(Collections.emptyList());
+            return result;
+        }
+        AtomicReferenceArray<T> values = new AtomicReferenceArray<>(size);
+        AtomicInteger remaining = new AtomicInteger(size);
+        AtomicBoolean failed = new AtomicBoolean();
+        for (int i = 0; i < size; i++) {
+            int index = i;
+            futures.get(i).whenComplete((value, ex) -> {
+                if (ex != null) {
+                    // 여기서 취소한 나머지도 이 콜백으로 들어오므로, 처음 실패만 결과를 정한다.
+                    if (failed.compareAndSet(false, true)) {
+                        cancelAll(futures);
+                        result.completeExceptionally(unwrap(ex));
+                    }
+                    return;
+                }
+                values.set(index, value);
+                if (remaining.decrementAndGet() == 0) {
+                    result.complete(toList(values, size));
+                }
+            });
+        }
+        cancelOnCancel(result, futures);
+        return result;
+    }
+
+    @SafeVarargs
+    public static <T> CompletableFuture<List<T>> allOfTyped(CompletableFuture<? extends T>... futures) {
+        List<CompletableFuture<? extends T>> list = new ArrayList<>(futures.length);
+        for (CompletableFuture<? extends T> future : futures) {
+            list.add(future);
+        }
+        return allOfTyped(list);
+    }
+
+    /**
+     * 먼저 성공한 n 개의 결과를 성공한 순서대로 담아 완료되고, 나머지는 취소한다.
+     * 실패가 많아서 n 개를 채울 수 없게 되면 그때의 실패로 끝난다. 어느 쪽이든 나머지를 먼저 취소하고 완료한다.
+     */
+    public static <T> CompletableFuture<List<T>> firstN(int n, List<? extends CompletableFuture<? extends T>> futures) {
+        int size = futures.size();
+        if (n < 0 || n > size) {
+            throw new IllegalArgumentException("n must be in [0, " + size + "]: " + n);
+        }
+        CompletableFuture<List<T>> result = new CompletableFuture<>();
+        if (n == 0) {
+            result.complete(Collections.emptyList());
+        } else {
+            AtomicReferenceArray<T> values = new AtomicReferenceArray<>(n);
+            AtomicInteger claimed = new AtomicInteger();
+            AtomicInteger stored = new AtomicInteger();
+            AtomicInteger failures = new AtomicInteger();
+            AtomicBoolean settled = new AtomicBoolean();
+            int allowedFailures = size - n;
+            for (CompletableFuture<? extends T> future : futures) {
+                future.whenComplete((value, ex) -> {
+                    if (ex != null) {
+                        // 결과가 정해진 뒤 취소된 나머지도 여기로 들어오므로 settled 로 한 번만 끝낸다.
+                        if (failures.incrementAndGet() > allowedFailures && settled.compareAndSet(false, true)) {
+                            cancelAll(futures);
+                            result.completeExceptionally(unwrap(ex));
+                        }
+                        return;
+                    }
+                    int index = claimed.getAndIncrement();
+                    if (index >= n) {
+                        return;
+                    }
+                    values.set(index, value);
+                    // 자리를 먼저 잡은 쪽이 아직 값을 쓰는 중일 수 있으므로, 다 쓴 수로 완료를 판단한다.
+                    if (stored.incrementAndGet() == n && settled.compareAndSet(false, true)) {
+                        // 다 모였으면 남은 작업은 필요 없다.
+                        cancelAll(futures);
+                        result.complete(toList(values, n));
+                    }
+                });
+            }
+        }
+        cancelOnCancel(result, futures);
+        return result;
+    }
+
+    private static void cancelAll(List<? extends CompletableFuture<?>> futures) {
+        futures.forEach(future -> future.cancel(true));
+    }
+
+    /**
+     * 호출한 쪽이 돌려받은 future 를 취소하면 나머지도 취소한다. 실패와 deadline 은 완료하기 전에 직접 취소한다.
+     */
+    private static void cancelOnCancel(CompletableFuture<?> result, List<? extends CompletableFuture<?>> futures) {
+        result.whenComplete((value, ex) -> {
+            if (result.isCancelled()) {
+                cancelAll(futures);
+            }
+        });
+    }
+
+    private static <T> List<T> toList(AtomicReferenceArray<T> values, int size) {
+        List<T> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(values.get(i));
+        }
+        return list;
+    }
+
+    private static Throwable unwrap(Throwable ex) {
+        return ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+    }
+
+    /**
+     * executor 에서 도는 FutureTask 와 밖에 돌려주는 CompletableFuture 를 잇는다.
+     * result 를 취소하면 FutureTask 를 cancel(true) 해서 실행 중인 스레드를 interrupt 한다.
+     */
+    private static final class Fork<T> extends FutureTask<T> {
+
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+
+        Fork(Callable<? extends T> task) {
+            super(task::call);
+            result.whenComplete((value, ex) -> {
+                if (result.isCancelled()) {
+                    cancel(true);
+                }
+            });
+        }
+
+        @Override
+        protected void done() {
+            if (isCancelled()) {
+                result.cancel(false);
+                return;
+            }
+            try {
+                result.complete(get());
+            } catch (ExecutionException e) {
+                result.completeExceptionally(e.getCause());
+            } catch (InterruptedException e) {
+                // 완료된 뒤에만 불리므로 get 은 기다리지 않는다.
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
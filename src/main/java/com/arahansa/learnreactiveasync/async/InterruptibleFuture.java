@@ -0,0 +1,497 @@
+package com.arahansa.learnreactiveasync.async;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 취소가 체인을 거슬러 올라가고 실행 중인 작업을 interrupt 하는 CompletableFuture.
+ *
+ * J01_CompletableFuture.calculateAsyncWithCancellation 의 설명처럼 CompletableFuture.cancel 은 그 future 만 끝낼 뿐이다.
+ * thenCompose / thenCombine 으로 이어진 결과를 취소하거나 타임아웃으로 실패시켜도 위쪽의 supplyAsync 는 계속 돌면서 스레드를 잡고 있다.
+ *
+ * 여기서는 각 단계가 자신을 만든 위쪽 단계들 (this, other, thenCompose 가 돌려준 단계) 과 자신의 작업을 실행 중인 FutureTask 를 기억한다.
+ * 단계가 어떤 이유로든 (cancel, 타임아웃, 바깥에서 complete) 끝나면 위쪽을 더 기다리지 않는다.
+ * 자기 작업 (FutureTask) 과 일반 CompletionStage 는 바로 cancel(true) 하고,
+ * InterruptibleFuture 인 위쪽은 이어진 아래 단계 수를 세어 두었다가 마지막 아래 단계까지 끝났을 때에만 cancel(true) 한다.
+ * 위쪽에서 같은 일이 반복되어 맨 위의 작업 스레드까지 interrupt 된다.
+ * 정상적으로 끝날 때는 위쪽이 이미 끝나 있으므로 아무 일도 일어나지 않는다.
+ *
+ * 모든 CompletionStage 메서드가 InterruptibleFuture 를 돌려주므로 체인 중간에 일반 CompletableFuture 로 빠지지 않는다.
+ * 주의할 점:
+ * <ul>
+ *     <li>한 단계에서 여러 갈래로 나눈 경우, 한 갈래를 취소하거나 바깥에서 complete 해도 다른 갈래가 남아 있으면 공유하는 위쪽은 계속 돈다.
+ *     아래 단계를 이어 붙이기 전에 유일한 아래 단계가 끝나면 위쪽은 취소되므로, 갈래는 한꺼번에 이어 붙인다.
+ *     위쪽 future 를 직접 get 하는 쪽은 아래 단계로 세지 않는다.</li>
+ *     <li>applyToEither / acceptEither / runAfterEither 는 한쪽 결과로 끝나므로 진 쪽을 취소한다.</li>
+ *     <li>Async 가 붙은 단계의 함수는 FutureTask 로 실행되어 interrupt 할 수 있다. 붙지 않은 단계의 함수는 앞 단계를 완료한 스레드에서 돌기 때문에 취소는 전파되지만 interrupt 되지는 않는다.</li>
+ * </ul>
+ */
+public class InterruptibleFuture<T> extends CompletableFuture<T> {
+
+    // CompletableFuture 와 같은 기본 executor. 병렬도가 1 이면 commonPool 이 없으므로 태스크마다 스레드를 만든다.
+    private static final Executor ASYNC_POOL = ForkJoinPool.getCommonPoolParallelism() > 1
+            ? ForkJoinPool.commonPool() : task -> new Thread(task).start();
+
+    // 이 단계가 끝나면 놓을 위쪽 단계와 실행 중인 작업. 끝난 뒤에는 null.
+    private List<Future<?>> upstream = new ArrayList<>();
+    // this 를 위쪽으로 기억하고 있는, 아직 끝나지 않은 아래 단계 수
+    private int dependents;
+
+    public InterruptibleFuture() {
+        super.whenComplete((value, ex) -> cancelUpstream());
+    }
+
+    public static <U> InterruptibleFuture<U> callAsync(Callable<U> task) {
+        return callAsync(task, ASYNC_POOL);
+    }
+
+    /**
+     * task 를 FutureTask 로 실행한다. 돌려준 future 나 그 아래 단계를 취소하면 task 를 실행 중인 스레드가 interrupt 된다.
+     */
+    public static <U> InterruptibleFuture<U> callAsync(Callable<U> task, Executor executor) {
+        InterruptibleFuture<U> future = new InterruptibleFuture<>();
+        future.run(task, executor);
+        return future;
+    }
+
+    public static <U> InterruptibleFuture<U> supplyAsync(Supplier<U> supplier) {
+        return callAsync(supplier::get, ASYNC_POOL);
+    }
+
+    public static <U> InterruptibleFuture<U> supplyAsync(Supplier<U> supplier, Executor executor) {
+        return callAsync(supplier::get, executor);
+    }
+
+    public static InterruptibleFuture<Void> runAsync(Runnable runnable) {
+        return runAsync(runnable, ASYNC_POOL);
+    }
+
+    public static InterruptibleFuture<Void> runAsync(Runnable runnable, Executor executor) {
+        return callAsync(() -> {
+            runnable.run();
+            return null;
+        }, executor);
+    }
+
+    /**
+     * future 가 끝나지 않았는데 돌려준 future 가 끝나면 future 를 cancel(true) 한다.
+     */
+    public static <U> InterruptibleFuture<U> from(CompletionStage<U> stage) {
+        InterruptibleFuture<U> future = new InterruptibleFuture<>();
+        future.addUpstreamStage(stage);
+        stage.whenComplete(future::relay);
+        return future;
+    }
+
+    @Override
+    public InterruptibleFuture<T> toCompletableFuture() {
+        return this;
+    }
+
+    // ---- 같은 스레드에서 이어지는 단계
+
+    @Override
+    public <U> InterruptibleFuture<U> thenApply(Function<? super T, ? extends U> fn) {
+        return link(super.thenApply(fn));
+    }
+
+    @Override
+    public InterruptibleFuture<Void> thenAccept(Consumer<? super T> action) {
+        return link(super.thenAccept(action));
+    }
+
+    @Override
+    public InterruptibleFuture<Void> thenRun(Runnable action) {
+        return link(super.thenRun(action));
+    }
+
+    @Override
+    public <U, V> InterruptibleFuture<V> thenCombine(CompletionStage<? extends U> other,
+                                                     BiFunction<? super T, ? super U, ? extends V> fn) {
+        return link(super.thenCombine(other, fn), other);
+    }
+
+    @Override
+    public <U> InterruptibleFuture<Void> thenAcceptBoth(CompletionStage<? extends U> other,
+                                                        BiConsumer<? super T, ? super U> action) {
+        return link(super.thenAcceptBoth(other, action), other);
+    }
+
+    @Override
+    public InterruptibleFuture<Void> runAfterBoth(CompletionStage<?> other, Runnable action) {
+        return link(super.runAfterBoth(other, action), other);
+    }
+
+    @Override
+    public <U> InterruptibleFuture<U> applyToEither(CompletionStage<? extends T> other, Function<? super T, U> fn) {
+        return link(super.applyToEither(other, fn), other);
+    }
+
+    @Override
+    public InterruptibleFuture<Void> acceptEither(CompletionStage<? extends T> other, Consumer<? super T> action) {
+        return link(super.acceptEither(other, action), other);
+    }
+
+    @Override
+    public InterruptibleFuture<Void> runAfterEither(CompletionStage<?> other, Runnable action) {
+        return link(super.runAfterEither(other, action), other);
+    }
+
+    @Override
+    public <U> InterruptibleFuture<U> thenCompose(Function<? super T, ? extends CompletionStage<U>> fn) {
+        InterruptibleFuture<U> next = new InterruptibleFuture<>();
+        next.addUpstream(this);
+        // fn 이 돌려준 단계도 위쪽으로 기억해야 그 작업까지 취소된다.
+        next.addUpstream(super.thenCompose(value -> {
+            CompletionStage<U> stage = fn.apply(value);
+            next.addUpstreamStage(stage);
+            return stage;
+        }).whenComplete(next::relay));
+        return next;
+    }
+
+    @Override
+    public InterruptibleFuture<T> whenComplete(BiConsumer<? super T, ? super Throwable> action) {
+        return link(super.whenComplete(action));
+    }
+
+    @Override
+    public <U> InterruptibleFuture<U> handle(BiFunction<? super T, Throwable, ? extends U> fn) {
+        return link(super.handle(fn));
+    }
+
+    @Override
+    public InterruptibleFuture<T> exceptionally(Function<Throwable, ? extends T> fn) {
+        return link(super.exceptionally(fn));
+    }
+
+    // ---- executor 에서 FutureTask 로 실행되는 단계. 함수 실행 중에 취소되면 interrupt 된다.
+
+    @Override
+    public <U> InterruptibleFuture<U> thenApplyAsync(Function<? super T, ? extends U> fn) {
+        return thenApplyAsync(fn, ASYNC_POOL);
+    }
+
+    @Override
+    public <U> InterruptibleFuture<U> thenApplyAsync(Function<? super T, ? extends U> fn, Executor executor) {
+        return schedule(super.thenApply(value -> () -> fn.apply(value)), executor);
+    }
+
+    @Override
+    public InterruptibleFuture<Void> thenAcceptAsync(Consumer<? super T> action) {
+        return thenAcceptAsync(action, ASYNC_POOL);
+    }
+
+    @Override
+    public InterruptibleFuture<Void> thenAcceptAsync(Consumer<? super T> action, Executor executor) {
+        return schedule(super.thenApply(value -> () -> {
+            action.accept(value);
+            return null;
+        }), executor);
+    }
+
+    @Override
+    public InterruptibleFuture<Void> thenRunAsync(Runnable action) {
+        return thenRunAsync(action, ASYNC_POOL);
+    }
+
+    @Override
+    public InterruptibleFuture<Void> thenRunAsync(Runnable action, Executor executor) {
+        return schedule(super.thenApply(value -> () -> {
+            action.run();
+            return null;
+        }), executor);
+    }
+
+    @Override
+    public <U, V> InterruptibleFuture<V> thenCombineAsync(CompletionStage<? extends U> other,
+                                                          BiFunction<? super T, ? super U, ? extends V> fn) {
+        return thenCombineAsync(other, fn, ASYNC_POOL);
+    }
+
+    @Override
+    public <U, V> InterruptibleFuture<V> thenCombineAsync(CompletionStage<? extends U> other,
+                                                          BiFunction<? super T, ? super U, ? extends V> fn,
+                                                          Executor executor) {
+        return schedule(super.thenCombine(other, (a, b) -> () -> fn.apply(a, b)), executor, other);
+    }
+
+    @Override
+    public <U> InterruptibleFuture<Void> thenAcceptBothAsync(CompletionStage<? extends U> other,
+                                                             BiConsumer<? super T, ? super U> action) {
+        return thenAcceptBothAsync(other, action, ASYNC_POOL);
+    }
+
+    @Override
+    public <U> InterruptibleFuture<Void> thenAcceptBothAsync(CompletionStage<? extends U> other,
+                                                             BiConsumer<? super T, ? super U> action,
+                                                             Executor executor) {
+        return schedule(super.thenCombine(other, (a, b) -> () -> {
+            action.accept(a, b);
+            return null;
+        }), executor, other);
+    }
+
+    @Override
+    public InterruptibleFuture<Void> runAfterBothAsync(CompletionStage<?> other, Runnable action) {
+        return runAfterBothAsync(other, action, ASYNC_POOL);
+    }
+
+    @Override
+    public InterruptibleFuture<Void> runAfterBothAsync(CompletionStage<?> other, Runnable action, Executor executor) {
+        return schedule(super.thenCombine(other, (a, b) -> () -> {
+            action.run();
+            return null;
+        }), executor, other);
+    }
+
+    @Override
+    public <U> InterruptibleFuture<U> applyToEitherAsync(CompletionStage<? extends T> other, Function<? super T, U> fn) {
+        return applyToEitherAsync(other, fn, ASYNC_POOL);
+    }
+
+    @Override
+    public <U> InterruptibleFuture<U> applyToEitherAsync(CompletionStage<? extends T> other, Function<? super T, U> fn,
+                                                         Executor executor) {
+        return schedule(super.applyToEither(other, value -> () -> fn.apply(value)), executor, other);
+    }
+
+    @Override
+    public InterruptibleFuture<Void> acceptEitherAsync(CompletionStage<? extends T> other, Consumer<? super T> action) {
+        return acceptEitherAsync(other, action, ASYNC_POOL);
+    }
+
+    @Override
+    public InterruptibleFuture<Void> acceptEitherAsync(CompletionStage<? extends T> other, Consumer<? super T> action,
+                                                       Executor executor) {
+        return schedule(super.applyToEither(other, value -> () -> {
+            action.accept(value);
+            return null;
+        }), executor, other);
+    }
+
+    @Override
+    public InterruptibleFuture<Void> runAfterEitherAsync(CompletionStage<?> other, Runnable action) {
+        return runAfterEitherAsync(other, action, ASYNC_POOL);
+    }
+
+    @Override
+    public InterruptibleFuture<Void> runAfterEitherAsync(CompletionStage<?> other, Runnable action, Executor executor) {
+        return schedule(super.runAfterEither(other, () -> { }).thenApply(ignored -> () -> {
+            action.run();
+            return null;
+        }), executor, other);
+    }
+
+    @Override
+    public <U> InterruptibleFuture<U> thenComposeAsync(Function<? super T, ? extends CompletionStage<U>> fn) {
+        return thenComposeAsync(fn, ASYNC_POOL);
+    }
+
+    /**
+     * fn 은 FutureTask 로 실행되고, fn 이 돌려준 단계의 결과로 완료된다. 그 단계도 위쪽으로 기억한다.
+     */
+    @Override
+    public <U> InterruptibleFuture<U> thenComposeAsync(Function<? super T, ? extends CompletionStage<U>> fn,
+                                                       Executor executor) {
+        InterruptibleFuture<CompletionStage<U>> outer = thenApplyAsync(fn::apply, executor);
+        InterruptibleFuture<U> next = new InterruptibleFuture<>();
+        next.addUpstream(outer);
+        outer.whenComplete((stage, ex) -> {
+            if (ex != null) {
+                next.completeExceptionally(ex);
+                return;
+            }
+            next.addUpstreamStage(stage);
+            stage.whenComplete(next::relay);
+        });
+        return next;
+    }
+
+    @Override
+    public InterruptibleFuture<T> whenCompleteAsync(BiConsumer<? super T, ? super Throwable> action) {
+        return whenCompleteAsync(action, ASYNC_POOL);
+    }
+
+    /**
+     * CompletableFuture.whenComplete 와 같이 원래 결과를 그대로 넘긴다. action 이 던진 예외는 원래 결과가 성공일 때만 쓰인다.
+     */
+    @Override
+    public InterruptibleFuture<T> whenCompleteAsync(BiConsumer<? super T, ? super Throwable> action, Executor executor) {
+        return schedule(super.handle((value, ex) -> () -> {
+            try {
+                action.accept(value, ex);
+            } catch (Throwable t) {
+                if (ex == null) {
+                    throw t;
+                }
+            }
+            if (ex != null) {
+                throw ex instanceof CompletionException ? (CompletionException) ex : new CompletionException(ex);
+            }
+            return value;
+        }), executor);
+    }
+
+    @Override
+    public <U> InterruptibleFuture<U> handleAsync(BiFunction<? super T, Throwable, ? extends U> fn) {
+        return handleAsync(fn, ASYNC_POOL);
+    }
+
+    @Override
+    public <U> InterruptibleFuture<U> handleAsync(BiFunction<? super T, Throwable, ? extends U> fn, Executor executor) {
+        return schedule(super.handle((value, ex) -> () -> fn.apply(value, ex)), executor);
+    }
+
+    // ---- 연결
+
+    /**
+     * 일반 CompletableFuture 로 만든 다음 단계를 감싼다. 감싼 future 가 끝나면 this, others, stage 중 끝나지 않은 것을 취소한다.
+     */
+    private <U> InterruptibleFuture<U> link(CompletableFuture<U> stage, CompletionStage<?>... others) {
+        InterruptibleFuture<U> next = new InterruptibleFuture<>();
+        next.addUpstream(this);
+        for (CompletionStage<?> other : others) {
+            next.addUpstreamStage(other);
+        }
+        next.addUpstreamStage(stage);
+        stage.whenComplete(next::relay);
+        return next;
+    }
+
+    /**
+     * deferred 가 돌려준 작업을 executor 에서 FutureTask 로 실행한다.
+     */
+    private <U> InterruptibleFuture<U> schedule(CompletableFuture<? extends Callable<? extends U>> deferred,
+                                                Executor executor, CompletionStage<?>... others) {
+        InterruptibleFuture<U> next = new InterruptibleFuture<>();
+        next.addUpstream(this);
+        for (CompletionStage<?> other : others) {
+            next.addUpstreamStage(other);
+        }
+        next.addUpstream(deferred);
+        deferred.whenComplete((task, ex) -> {
+            if (ex != null) {
+                next.completeExceptionally(ex);
+            } else {
+                next.run(task, executor);
+            }
+        });
+        return next;
+    }
+
+    private void run(Callable<? extends T> task, Executor executor) {
+        FutureTask<T> running = new FutureTask<T>(task::call) {
+            @Override
+            protected void done() {
+                if (isCancelled()) {
+                    return;
+                }
+                try {
+                    complete(get());
+                } catch (ExecutionException e) {
+                    completeExceptionally(e.getCause());
+                } catch (InterruptedException e) {
+                    // 완료된 뒤에만 불리므로 get 은 기다리지 않는다.
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        addUpstream(running);
+        try {
+            executor.execute(running);
+        } catch (RejectedExecutionException e) {
+            completeExceptionally(e);
+        }
+    }
+
+    private void relay(T value, Throwable ex) {
+        if (ex != null) {
+            completeExceptionally(ex);
+        } else {
+            complete(value);
+        }
+    }
+
+    private void addUpstreamStage(CompletionStage<?> stage) {
+        addUpstream(stage instanceof Future ? (Future<?>) stage : stage.toCompletableFuture());
+    }
+
+    private void addUpstream(Future<?> future) {
+        synchronized (this) {
+            if (upstream != null) {
+                if (future instanceof InterruptibleFuture) {
+                    ((InterruptibleFuture<?>) future).retain();
+                }
+                upstream.add(future);
+                return;
+            }
+        }
+        // 이미 끝났으면 새로 이어진 위쪽은 필요 없다.
+        if (future instanceof InterruptibleFuture) {
+            ((InterruptibleFuture<?>) future).releaseIfUnused();
+        } else {
+            future.cancel(true);
+        }
+    }
+
+    private void cancelUpstream() {
+        List<Future<?>> futures;
+        synchronized (this) {
+            futures = upstream;
+            upstream = null;
+        }
+        if (futures == null) {
+            return;
+        }
+        for (Future<?> future : futures) {
+            if (future instanceof InterruptibleFuture) {
+                ((InterruptibleFuture<?>) future).release();
+            } else {
+                future.cancel(true);
+            }
+        }
+    }
+
+    private synchronized void retain() {
+        dependents++;
+    }
+
+    /**
+     * 아래 단계 하나가 더 이상 this 를 기다리지 않는다. 마지막이었으면 취소한다.
+     */
+    private void release() {
+        boolean unused;
+        synchronized (this) {
+            unused = --dependents == 0;
+        }
+        if (unused) {
+            cancel(true);
+        }
+    }
+
+    private void releaseIfUnused() {
+        boolean unused;
+        synchronized (this) {
+            unused = dependents == 0;
+        }
+        if (unused) {
+            cancel(true);
+        }
+    }
+}
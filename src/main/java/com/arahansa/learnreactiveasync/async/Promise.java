@@ -0,0 +1,222 @@
+package com.arahansa.learnreactiveasync.async;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.function.BiConsumer;
+
+/**
+ * 값을 한 번만 담을 수 있는 락 없는 결과 전달 객체.
+ *
+ * Async02 는 HashMap 에 결과를 넣고 synchronized + wait/notify 로 알리는데,
+ * notify 가 wait 보다 먼저 오면 깨어나지 못하고 (lost wakeup), 호출 하나마다 스레드 하나가 기다려야 한다.
+ * 여기서는 결과를 volatile 필드에 CAS 로 한 번만 쓰고, 기다리는 쪽은 스레드를 세우는 대신 콜백을 등록한다.
+ * 콜백은 CAS 로 쌓는 스택에 들어가며, 완료한 스레드가 스택을 닫고 등록 순서대로 실행한다.
+ * 이미 완료된 뒤에 등록한 콜백은 등록한 스레드에서 바로 실행된다.
+ * 콜백이 예외를 던지면 로그만 남기고 다음 콜백을 실행한다. complete / fail 을 부른 쪽으로는 전파되지 않는다.
+ */
+@Slf4j
+public final class Promise<T> {
+
+    // Promise.class 는 raw 타입이므로 제네릭 updater 로 바꾸는 곳에서만 경고를 끈다.
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private static final AtomicReferenceFieldUpdater<Promise<?>, Object> RESULT =
+            (AtomicReferenceFieldUpdater) AtomicReferenceFieldUpdater.newUpdater(Promise.class, Object.class, "result");
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private static final AtomicReferenceFieldUpdater<Promise<?>, Callback<?>> CALLBACKS =
+            (AtomicReferenceFieldUpdater) AtomicReferenceFieldUpdater.newUpdater(Promise.class, Callback.class, "callbacks");
+
+    private static final Object NULL = new Object();
+    private static final Callback<?> CLOSED = new Callback<>(null, null);
+
+    private volatile Object result;
+    private volatile Callback<T> callbacks;
+
+    public static <T> Promise<T> completed(T value) {
+        Promise<T> promise = new Promise<>();
+        promise.complete(value);
+        return promise;
+    }
+
+    public static <T> Promise<T> from(CompletionStage<T> stage) {
+        Promise<T> promise = new Promise<>();
+        stage.whenComplete((value, ex) -> {
+            if (ex != null) {
+                promise.fail(ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex);
+            } else {
+                promise.complete(value);
+            }
+        });
+        return promise;
+    }
+
+    /**
+     * 모든 promise 가 끝나면 결과를 순서대로 담은 리스트로 완료된다. 하나라도 실패하면 처음 실패로 끝난다.
+     */
+    @SafeVarargs
+    public static <T> Promise<List<T>> all(Promise<? extends T>... promises) {
+        List<Promise<? extends T>> list = new ArrayList<>(promises.length);
+        for (Promise<? extends T> promise : promises) {
+            list.add(promise);
+        }
+        return all(list);
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> Promise<List<T>> all(List<? extends Promise<? extends T>> promises) {
+        Promise<List<T>> all = new Promise<>();
+        int size = promises.size();
+        if (size == 0) {
+            all.complete(new ArrayList<>());
+            return all;
+        }
+        Object[] values = new Object[size];
+        AtomicInteger remaining = new AtomicInteger(size);
+        for (int i = 0; i < size; i++) {
+            int index = i;
+            promises.get(i).onComplete((value, ex) -> {
+                if (ex != null) {
+                    all.fail(ex);
+                    return;
+                }
+                values[index] = value;
+                if (remaining.decrementAndGet() == 0) {
+                    all.complete((List<T>) Arrays.asList(values));
+                }
+            });
+        }
+        return all;
+    }
+
+    /**
+     * @return 이 호출이 결과를 정했으면 true, 이미 완료되어 있었으면 false
+     */
+    public boolean complete(T value) {
+        return publish(value == null ? NULL : value);
+    }
+
+    public boolean fail(Throwable ex) {
+        return publish(new Failure(Objects.requireNonNull(ex)));
+    }
+
+    public boolean isDone() {
+        return result != null;
+    }
+
+    /**
+     * 완료되지 않았으면 valueIfAbsent 를 돌려준다. 실패했으면 CompletionException 을 던진다.
+     */
+    public T getNow(T valueIfAbsent) {
+        Object r = result;
+        return r == null ? valueIfAbsent : unwrap(r);
+    }
+
+    public void onComplete(BiConsumer<? super T, ? super Throwable> action) {
+        Callback<T> callback = new Callback<>(Objects.requireNonNull(action), null);
+        while (true) {
+            Callback<T> head = callbacks;
+            if (head == CLOSED) {
+                run(action, result);
+                return;
+            }
+            callback.next = head;
+            if (CALLBACKS.compareAndSet(this, head, callback)) {
+                return;
+            }
+        }
+    }
+
+    public CompletableFuture<T> toCompletableFuture() {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        onComplete((value, ex) -> {
+            if (ex != null) {
+                future.completeExceptionally(ex);
+            } else {
+                future.complete(value);
+            }
+        });
+        return future;
+    }
+
+    public Mono<T> toMono() {
+        return Mono.create(sink -> onComplete((value, ex) -> {
+            if (ex != null) {
+                sink.error(ex);
+            } else {
+                sink.success(value);
+            }
+        }));
+    }
+
+    @SuppressWarnings("unchecked")
+    private boolean publish(Object r) {
+        if (!RESULT.compareAndSet(this, null, r)) {
+            return false;
+        }
+        // CLOSED 가 아닌 콜백은 모두 onComplete 에서 Callback<T> 로 넣은 것이다.
+        Callback<T> head = (Callback<T>) CALLBACKS.getAndSet(this, CLOSED);
+        // 스택은 나중에 등록한 것이 위에 있으므로 뒤집어서 등록 순서대로 실행한다.
+        Callback<T> reversed = null;
+        while (head != null) {
+            Callback<T> next = head.next;
+            head.next = reversed;
+            reversed = head;
+            head = next;
+        }
+        for (Callback<T> c = reversed; c != null; c = c.next) {
+            run(c.action, r);
+        }
+        return true;
+    }
+
+    /**
+     * 콜백 하나가 던진 예외 때문에 나머지 콜백이 실행되지 않거나 완료한 쪽이 실패하면 안 되므로 여기서 삼킨다.
+     */
+    @SuppressWarnings("unchecked")
+    private void run(BiConsumer<? super T, ? super Throwable> action, Object r) {
+        try {
+            if (r instanceof Failure) {
+                action.accept(null, ((Failure) r).ex);
+            } else {
+                action.accept(r == NULL ? null : (T) r, null);
+            }
+        } catch (Throwable t) {
+            log.warn("promise callback failed", t);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private T unwrap(Object r) {
+        if (r instanceof Failure) {
+            throw new CompletionException(((Failure) r).ex);
+        }
+        return r == NULL ? null : (T) r;
+    }
+
+    private static final class Failure {
+        final Throwable ex;
+
+        Failure(Throwable ex) {
+            this.ex = ex;
+        }
+    }
+
+    private static final class Callback<T> {
+        final BiConsumer<? super T, ? super Throwable> action;
+        Callback<T> next;
+
+        Callback(BiConsumer<? super T, ? super Throwable> action, Callback<T> next) {
+            this.action = action;
+            this.next = next;
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.arahansa.learnreactiveasync.cache;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * 값 대신 진행 중인 CompletableFuture 를 담는 Guava 캐시. 같은 key 의 동시 요청은 로딩 하나를 함께 기다린다 (single-flight).
+ *
+ * Async02.getApi() 나 supplyAsync(() -&gt; ...) 는 호출마다 다시 계산하므로, 같은 key 를 수백 명이 동시에 물으면 백엔드 호출도 수백 번 나간다.
+ * 여기서는 첫 요청이 loader 를 시작하고 그 future 를 캐시에 넣는다. 로딩이 끝나기 전에 온 요청도 같은 future 를 받으므로 호출은 한 번만 나간다.
+ * Guava 의 get 은 key 마다 원자적이고 loader 는 future 를 만들기만 하므로 캐시 락을 잡고 기다리는 스레드가 없다.
+ *
+ * 크기/시간 제한과 refresh 는 넘겨받은 CacheBuilder 설정 (maximumSize, expireAfterWrite, refreshAfterWrite 등) 을 그대로 쓴다.
+ * future 는 로딩을 시작할 때 캐시에 들어가지만, 성공하면 그 시각으로 다시 써서 expireAfterWrite / refreshAfterWrite 는 값이 생긴 때부터 센다.
+ * refreshAfterWrite 가 지난 key 를 읽으면 이전 값을 바로 돌려주고 백그라운드에서 다시 로딩하며, 성공하면 새 값으로 바꾼다.
+ * 다시 로딩이 실패하면 이전 값을 그대로 둔다. refresh 는 읽을 때에만 시작된다.
+ *
+ * 실패한 로딩은 캐시에 남기지 않으므로 다음 요청이 다시 로딩한다.
+ * Guava 의 로딩 시간은 future 를 만드는 데 걸린 시간이라서, stats() 의 로딩 수와 시간은 future 가 끝날 때까지로 따로 잰다.
+ */
+public class AsyncLoadingCache<K, V> {
+
+    private final Function<? super K, ? extends CompletionStage<V>> loader;
+    private final LoadingCache<K, CompletableFuture<V>> cache;
+
+    private final LongAdder requestCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder loadSuccessCount = new LongAdder();
+    private final LongAdder loadFailureCount = new LongAdder();
+    private final LongAdder totalLoadNanos = new LongAdder();
+
+    /**
+     * @param builder 크기/시간 제한을 설정한 CacheBuilder. 바꾸지 않고 build 만 한다.
+     *                stats() 의 eviction 수는 Guava 만 알 수 있으므로 여기에 recordStats() 를 켰을 때만 센다.
+     * @param loader  key 의 값을 비동기로 읽는다. 예: key -&gt; CompletableFuture.supplyAsync(() -&gt; getApi(key), executor)
+     */
+    public AsyncLoadingCache(CacheBuilder<Object, Object> builder, Function<? super K, ? extends CompletionStage<V>> loader) {
+        this.loader = Objects.requireNonNull(loader);
+        this.cache = builder.build(new CacheLoader<K, CompletableFuture<V>>() {
+            @Override
+            public CompletableFuture<V> load(K key) {
+                missCount.increment();
+                return startLoad(key);
+            }
+
+            /**
+             * 돌려준 ListenableFuture 가 끝날 때까지 Guava 는 이전 future 를 계속 돌려준다.
+             */
+            @Override
+            public ListenableFuture<CompletableFuture<V>> reload(K key, CompletableFuture<V> previous) {
+                if (!previous.isDone()) {
+                    // 아직 로딩 중이면 새로 시작할 필요가 없다.
+                    return Futures.immediateFuture(previous);
+                }
+                CompletableFuture<V> next = startLoad(key);
+                SettableFuture<CompletableFuture<V>> reloaded = SettableFuture.create();
+                next.whenComplete((value, ex) -> {
+                    if (ex != null) {
+                        reloaded.setException(ex);
+                    } else {
+                        reloaded.set(next);
+                    }
+                });
+                return reloaded;
+            }
+        });
+    }
+
+    /**
+     * 캐시에 있으면 그 결과, 없으면 로딩을 시작한다. 로딩 중인 key 는 진행 중인 로딩의 결과를 받는다.
+     * 돌려준 future 는 요청마다 새로 만드므로 취소해도 다른 요청에는 영향이 없다.
+     */
+    public CompletableFuture<V> get(K key) {
+        requestCount.increment();
+        CompletableFuture<V> future = cache.getUnchecked(key);
+        if (future.isCompletedExceptionally()) {
+            // 캐시에 들어가기 전에 실패해서 whenComplete 가 지우지 못한 경우
+            cache.asMap().remove(key, future);
+        }
+        return future.thenApply(Function.identity());
+    }
+
+    /**
+     * 캐시에 있으면 그 결과, 없으면 null. 로딩을 시작하지 않는다.
+     */
+    public CompletableFuture<V> getIfPresent(K key) {
+        requestCount.increment();
+        CompletableFuture<V> future = cache.getIfPresent(key);
+        if (future == null) {
+            missCount.increment();
+        }
+        return future == null ? null : future.thenApply(Function.identity());
+    }
+
+    public void put(K key, V value) {
+        cache.put(key, CompletableFuture.completedFuture(value));
+    }
+
+    /**
+     * 이전 값은 새 로딩이 성공할 때까지 그대로 쓰인다. 없는 key 면 로딩하며 miss 로 센다.
+     */
+    public void refresh(K key) {
+        requestCount.increment();
+        cache.refresh(key);
+    }
+
+    public void invalidate(K key) {
+        cache.invalidate(key);
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * 로딩 중인 key 도 포함한 대략의 크기
+     */
+    public long size() {
+        return cache.size();
+    }
+
+    /**
+     * hit/miss 는 여기서 센 요청 수, 로딩 수와 로딩 시간은 future 가 끝날 때까지 잰 값. refresh 도 요청과 로딩으로 센다.
+     * eviction 은 Guava 의 값이라 builder 에 recordStats() 를 켜지 않았으면 0 이다.
+     */
+    public CacheStats stats() {
+        // miss 는 언제나 요청보다 나중에 세므로 miss 를 먼저 읽어야 hit 가 음수가 되지 않는다.
+        long misses = missCount.sum();
+        long hits = requestCount.sum() - misses;
+        return new CacheStats(hits, misses, loadSuccessCount.sum(), loadFailureCount.sum(),
+                totalLoadNanos.sum(), cache.stats().evictionCount());
+    }
+
+    private CompletableFuture<V> startLoad(K key) {
+        long start = System.nanoTime();
+        CompletableFuture<V> loading;
+        try {
+            loading = loader.apply(key).toCompletableFuture();
+        } catch (RuntimeException e) {
+            loading = new CompletableFuture<>();
+            loading.completeExceptionally(e);
+        }
+        CompletableFuture<V> future = loading.whenComplete((value, ex) -> {
+            totalLoadNanos.add(System.nanoTime() - start);
+            if (ex != null) {
+                loadFailureCount.increment();
+            } else {
+                loadSuccessCount.increment();
+            }
+        });
+        future.whenComplete((value, ex) -> {
+            if (ex != null) {
+                cache.asMap().remove(key, future);
+            } else {
+                // 같은 future 로 다시 써서 쓴 시각을 로딩 시작이 아니라 완료로 옮긴다.
+                // 아직 캐시에 들어가기 전이거나 (곧 지금 시각으로 들어간다) refresh 중이면 (Guava 가 끝난 뒤에 넣는다) 아무 일도 없다.
+                cache.asMap().replace(key, future, future);
+            }
+        });
+        return future;
+    }
+}
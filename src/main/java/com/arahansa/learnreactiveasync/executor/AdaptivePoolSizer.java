@@ -0,0 +1,140 @@
+package com.arahansa.learnreactiveasync.executor;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * InstrumentedThreadPoolExecutor 의 스레드 수를 관측한 부하에 맞춰 조절한다.
+ *
+ * interval 마다 지난 구간의 처리량(λ), 평균 실행 시간(S), 큐 대기 p90, 큐 길이를 보고
+ * 리틀의 법칙으로 필요한 스레드 수 λ × S / targetUtilization 를 구한다.
+ * 큐 대기가 목표보다 길고 큐가 비어 있지 않으면 최소한 현재의 1/4 (최소 1) 만큼 늘리고,
+ * 줄일 때는 한 번에 차이의 절반씩만 줄여서 흔들리지 않게 한다. 결과는 항상 [minThreads, maxThreads] 안이다.
+ *
+ * 큐가 무제한이면 core 를 넘는 스레드가 생기지 않으므로 core 와 max 를 같은 값으로 맞춘다.
+ * 큐에 한도가 있으면 max 만 조절한다. core 를 넘는 스레드는 큐가 찼을 때 생기고 keepAlive 동안 놀면 정리된다.
+ * 이때 core 는 min 보다 크면 max 에 맞춰 내려가는 것 말고는 그대로 둔다.
+ */
+@Slf4j
+public class AdaptivePoolSizer implements AutoCloseable {
+
+    private static final double TARGET_UTILIZATION = 0.8;
+    private static final double WAIT_QUANTILE = 0.9;
+
+    private final InstrumentedThreadPoolExecutor executor;
+    private final int minThreads;
+    private final int maxThreads;
+    private final long targetQueueWaitNanos;
+
+    private LatencyHistogram.Snapshot lastQueueWait;
+    private LatencyHistogram.Snapshot lastExecution;
+    private long lastSampleNanos;
+    private ScheduledFuture<?> schedule;
+
+    public AdaptivePoolSizer(InstrumentedThreadPoolExecutor executor, int minThreads, int maxThreads,
+                             long targetQueueWait, TimeUnit unit) {
+        if (minThreads < 1 || maxThreads < minThreads) {
+            throw new IllegalArgumentException("invalid bounds: [" + minThreads + ", " + maxThreads + "]");
+        }
+        this.executor = executor;
+        this.minThreads = minThreads;
+        this.maxThreads = maxThreads;
+        this.targetQueueWaitNanos = unit.toNanos(targetQueueWait);
+        this.lastQueueWait = executor.getQueueWait().snapshot();
+        this.lastExecution = executor.getExecutionTime().snapshot();
+        this.lastSampleNanos = System.nanoTime();
+        resize(clamp(currentThreads()));
+    }
+
+    /**
+     * scheduler 에서 interval 마다 adjust() 를 실행한다.
+     */
+    public synchronized AdaptivePoolSizer start(ScheduledExecutorService scheduler, long interval, TimeUnit unit) {
+        if (schedule != null) {
+            throw new IllegalStateException("already started");
+        }
+        schedule = scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                adjust();
+            } catch (RuntimeException e) {
+                log.warn("pool size adjustment of {} failed", executor.getName(), e);
+            }
+        }, interval, interval, unit);
+        return this;
+    }
+
+    /**
+     * 지난 호출 이후의 지표로 한 번 조절하고 새 스레드 수를 돌려준다.
+     */
+    public synchronized int adjust() {
+        long now = System.nanoTime();
+        LatencyHistogram.Snapshot queueWait = executor.getQueueWait().snapshot();
+        LatencyHistogram.Snapshot execution = executor.getExecutionTime().snapshot();
+        LatencyHistogram.Snapshot waitDelta = queueWait.since(lastQueueWait);
+        LatencyHistogram.Snapshot executionDelta = execution.since(lastExecution);
+        long elapsedNanos = Math.max(1, now - lastSampleNanos);
+        lastQueueWait = queueWait;
+        lastExecution = execution;
+        lastSampleNanos = now;
+
+        int current = currentThreads();
+        int queued = executor.getQueue().size();
+        double throughputPerNano = (double) executionDelta.count() / elapsedNanos;
+        double busyThreads = throughputPerNano * executionDelta.meanNanos();
+        int desired = (int) Math.ceil(busyThreads / TARGET_UTILIZATION);
+
+        long waitNanos = waitDelta.percentileNanos(WAIT_QUANTILE);
+        int next;
+        if (waitNanos > targetQueueWaitNanos && queued > 0) {
+            next = Math.max(desired, current + Math.max(1, current / 4));
+        } else if (desired < current && queued == 0) {
+            next = current - Math.max(1, (current - desired) / 2);
+        } else {
+            next = Math.max(current, desired);
+        }
+        next = clamp(next);
+        if (next != current) {
+            log.debug("{}: resize {} -> {} (throughput {}/s, service {} us, queue wait p90 {} us, queued {})",
+                    executor.getName(), current, next, (long) (throughputPerNano * 1e9),
+                    (long) (executionDelta.meanNanos() / 1000), waitNanos / 1000, queued);
+            resize(next);
+        }
+        return next;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (schedule != null) {
+            schedule.cancel(false);
+        }
+    }
+
+    private int clamp(int threads) {
+        return Math.max(minThreads, Math.min(maxThreads, threads));
+    }
+
+    private boolean unboundedQueue() {
+        return executor.getQueue().remainingCapacity() == Integer.MAX_VALUE;
+    }
+
+    private int currentThreads() {
+        return unboundedQueue() ? executor.getCorePoolSize() : executor.getMaximumPoolSize();
+    }
+
+    /**
+     * 자바 9 부터는 core 가 max 보다 크면 예외가 나므로 늘릴 때는 max 부터, 줄일 때는 core 부터 바꾼다.
+     */
+    private void resize(int threads) {
+        int core = unboundedQueue() ? threads : Math.min(executor.getCorePoolSize(), threads);
+        if (threads > executor.getMaximumPoolSize()) {
+            executor.setMaximumPoolSize(threads);
+            executor.setCorePoolSize(core);
+        } else {
+            executor.setCorePoolSize(core);
+            executor.setMaximumPoolSize(threads);
+        }
+    }
+}
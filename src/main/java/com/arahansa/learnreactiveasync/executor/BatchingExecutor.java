@@ -0,0 +1,253 @@
+package com.arahansa.learnreactiveasync.executor;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 아주 짧은 태스크를 하나씩 넘기지 않고 모아서 delegate 에 한 번에 넘기는 앞단.
+ *
+ * J01_ExecutorSample 처럼 작은 람다를 하나씩 submit 하면 태스크마다 FutureTask 생성, 큐 CAS, 워커 깨우기가 일어나서
+ * 실제 일보다 비용이 더 크다. 여기서는 maxBatchSize 개가 모이거나 첫 태스크가 들어온 뒤 linger 가 지나면
+ * 모인 태스크들을 Runnable 하나로 delegate 에 넘긴다. 워커는 배치를 차례로 실행하고, 결과를 다 모은 뒤에 future 들을 한꺼번에 완료한다.
+ *
+ * 제출하는 쪽은 락을 잡지 않는다. 지금 배치의 칸 번호를 getAndIncrement 로 하나 받아 그 칸에 쓰고,
+ * 마지막 칸을 받은 스레드가 배치를 내보낸다. linger / flush / close 는 칸 번호를 maxBatchSize 로 올려서 배치를 닫고,
+ * 그때까지 받은 칸만큼만 내보낸다. 닫힌 배치의 칸 번호를 받은 스레드는 새 배치로 다시 시도한다.
+ * 칸 번호를 받은 스레드가 아직 칸을 쓰지 못한 채로 배치가 실행되면, 워커가 그 칸이 써질 때까지 잠깐 기다린다.
+ *
+ * 한 배치는 한 스레드에서 순서대로 실행되므로 오래 걸리는 태스크를 섞으면 같은 배치의 나머지가 모두 기다린다.
+ * close 와 동시에 들어온 태스크는 거절되지 않고 받아들여질 수 있지만, 그 경우에도 내보내지 않고 남는 태스크는 없다.
+ */
+@Slf4j
+public class BatchingExecutor implements Executor, AutoCloseable {
+
+    private final Executor delegate;
+    private final ScheduledExecutorService scheduler;
+    private final int maxBatchSize;
+    private final long lingerNanos;
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+
+    private final AtomicReference<Batch> current = new AtomicReference<>();
+    private volatile boolean closed;
+
+    /**
+     * @param scheduler linger 가 지난 배치를 내보낼 때 쓴다. 종료는 호출한 쪽의 책임이다.
+     */
+    public BatchingExecutor(Executor delegate, ScheduledExecutorService scheduler,
+                            int maxBatchSize, long linger, TimeUnit unit) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("maxBatchSize must be positive: " + maxBatchSize);
+        }
+        this.delegate = delegate;
+        this.scheduler = scheduler;
+        this.maxBatchSize = maxBatchSize;
+        this.lingerNanos = unit.toNanos(linger);
+    }
+
+    /**
+     * 결과가 필요 없는 태스크. future 를 만들지 않으므로 가장 싸다.
+     * 실패는 로그로만 남는다.
+     */
+    @Override
+    public void execute(Runnable command) {
+        add(Objects.requireNonNull(command), null);
+    }
+
+    public <T> CompletableFuture<T> submit(Callable<T> task) {
+        Objects.requireNonNull(task);
+        CompletableFuture<T> future = new CompletableFuture<>();
+        add(task, future);
+        return future;
+    }
+
+    /**
+     * 모여 있는 태스크를 linger 를 기다리지 않고 바로 내보낸다.
+     */
+    public void flush() {
+        Batch batch = current.get();
+        if (batch != null) {
+            flush(batch);
+        }
+    }
+
+    /**
+     * 남은 배치를 내보내고 더 이상 받지 않는다. delegate 와 scheduler 는 종료하지 않는다.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        flush();
+    }
+
+    public long getSubmittedCount() {
+        return submitted.sum();
+    }
+
+    public long getBatchCount() {
+        return batches.sum();
+    }
+
+    private void add(Object task, CompletableFuture<?> future) {
+        if (closed) {
+            throw new RejectedExecutionException("batching executor is closed");
+        }
+        for (;;) {
+            Batch batch = current.get();
+            if (batch == null) {
+                batch = new Batch(maxBatchSize);
+                if (!current.compareAndSet(null, batch)) {
+                    continue;
+                }
+                if (maxBatchSize > 1) {
+                    Batch installed = batch;
+                    batch.linger = scheduler.schedule(() -> flush(installed), lingerNanos, TimeUnit.NANOSECONDS);
+                }
+            }
+            int index = batch.claimed.getAndIncrement();
+            if (index >= maxBatchSize) {
+                // 이미 닫힌 배치다. 아직 current 에 남아 있으면 치우고 다시 한다.
+                current.compareAndSet(batch, null);
+                continue;
+            }
+            batch.set(index, task, future);
+            submitted.increment();
+            if (index == maxBatchSize - 1) {
+                current.compareAndSet(batch, null);
+                ScheduledFuture<?> linger = batch.linger;
+                if (linger != null) {
+                    linger.cancel(false);
+                }
+                dispatch(batch, maxBatchSize);
+            } else if (closed) {
+                // close 가 current 를 본 뒤에 새 배치를 만들었을 수 있다. 남지 않도록 직접 내보낸다.
+                flush(batch);
+            }
+            return;
+        }
+    }
+
+    /**
+     * 배치를 닫고 그때까지 받은 칸만큼 내보낸다. 이미 닫혔거나 꽉 차서 다른 스레드가 내보냈으면 아무것도 하지 않는다.
+     */
+    private void flush(Batch batch) {
+        current.compareAndSet(batch, null);
+        int size = batch.claimed.getAndSet(maxBatchSize);
+        if (size > 0 && size < maxBatchSize) {
+            ScheduledFuture<?> linger = batch.linger;
+            if (linger != null) {
+                linger.cancel(false);
+            }
+            dispatch(batch, size);
+        }
+    }
+
+    private void dispatch(Batch batch, int size) {
+        batch.size = size;
+        batches.increment();
+        try {
+            delegate.execute(batch);
+        } catch (RejectedExecutionException e) {
+            // 배치 안의 태스크들은 이미 받아들인 것이므로 제출한 쪽으로 던지지 않고 각 future 에 넘긴다.
+            log.warn("delegate rejected a batch of {} tasks", size, e);
+            batch.fail(e);
+        }
+    }
+
+    private static final class Batch implements Runnable {
+
+        // 칸을 쓰려는 스레드가 받아 간 칸 수. maxBatchSize 이상이면 닫힌 배치다.
+        private final AtomicInteger claimed = new AtomicInteger();
+        // future 는 task 를 쓰기 전에 써 두므로 task 가 보이면 future 도 보인다.
+        private final AtomicReferenceArray<Object> tasks;
+        private final CompletableFuture<?>[] futures;
+        // 내보내는 스레드가 쓰고, delegate.execute 를 거쳐 워커가 읽는다.
+        private int size;
+        private volatile ScheduledFuture<?> linger;
+
+        Batch(int capacity) {
+            this.tasks = new AtomicReferenceArray<>(capacity);
+            this.futures = new CompletableFuture<?>[capacity];
+        }
+
+        void set(int index, Object task, CompletableFuture<?> future) {
+            futures[index] = future;
+            tasks.set(index, task);
+        }
+
+        /**
+         * 칸 번호를 받은 스레드가 아직 쓰지 못했으면 쓸 때까지 기다린다.
+         */
+        Object await(int index) {
+            Object task;
+            while ((task = tasks.get(index)) == null) {
+                Thread.yield();
+            }
+            return task;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void run() {
+            // 결과는 results 에, 실패는 failures 에 모아 두었다가 다 실행한 뒤 future 들을 한꺼번에 완료한다.
+            Object[] results = new Object[size];
+            Throwable[] failures = null;
+            for (int i = 0; i < size; i++) {
+                Object task = await(i);
+                if (futures[i] != null && futures[i].isDone()) {
+                    // 기다리는 동안 취소됐다.
+                    continue;
+                }
+                try {
+                    if (futures[i] == null) {
+                        ((Runnable) task).run();
+                    } else {
+                        results[i] = ((Callable<?>) task).call();
+                    }
+                } catch (Throwable t) {
+                    if (futures[i] == null) {
+                        log.warn("batched task failed", t);
+                        continue;
+                    }
+                    if (failures == null) {
+                        failures = new Throwable[size];
+                    }
+                    failures[i] = t;
+                }
+            }
+            for (int i = 0; i < size; i++) {
+                CompletableFuture<Object> future = (CompletableFuture<Object>) futures[i];
+                if (future == null) {
+                    continue;
+                }
+                if (failures != null && failures[i] != null) {
+                    future.completeExceptionally(failures[i]);
+                } else {
+                    future.complete(results[i]);
+                }
+            }
+        }
+
+        void fail(Throwable t) {
+            for (int i = 0; i < size; i++) {
+                await(i);
+                if (futures[i] != null) {
+                    futures[i].completeExceptionally(t);
+                }
+            }
+        }
+    }
+}
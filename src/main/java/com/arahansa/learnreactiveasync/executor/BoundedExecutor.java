@@ -0,0 +1,252 @@
+package com.arahansa.learnreactiveasync.executor;
+
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 큐 크기가 정해진 고정 크기 풀.
+ *
+ * Executors.newFixedThreadPool 과 J01_ExecutorServiceExample 의 LinkedBlockingQueue 는 크기 제한이 없어서
+ * submit 이 몰리면 힙이 찰 때까지 쌓인다. 여기서는 큐가 차면 OverflowPolicy 에 따라 처리한다.
+ *
+ * submitAsync 는 큐에 자리가 없으면 제출한 스레드를 막지 않고 대기열에 두었다가,
+ * 워커가 큐에서 태스크를 꺼내 자리가 생길 때 들어온 순서대로 넣는다. 대기열도 큐와 같은 크기까지만 받고,
+ * 그 뒤로는 ExecutorOverloadedException 으로 끝난 future 를 돌려준다.
+ * 돌려주는 AsyncSubmission 은 태스크의 결과로 완료되고, admitted() 는 큐에 들어가는 순간 완료되므로
+ * 호출한 쪽은 admitted() 를 기다렸다가 다음 것을 제출하는 식으로 속도를 늦출 수 있다.
+ */
+public class BoundedExecutor extends InstrumentedThreadPoolExecutor {
+
+    public enum OverflowPolicy {
+        /** 자리가 날 때까지 제출한 스레드를 막는다. 시간 안에 자리가 나지 않으면 ExecutorOverloadedException */
+        BLOCK,
+        /** 제출한 스레드에서 바로 실행한다. */
+        CALLER_RUNS,
+        /** 가장 오래 기다린 태스크를 버리고 (Future 면 취소하고, submitAsync 태스크면 ExecutorOverloadedException 으로 끝내고) 새 태스크를 넣는다. */
+        DROP_OLDEST,
+        /** 바로 ExecutorOverloadedException 을 던진다. */
+        FAIL_FAST
+    }
+
+    /**
+     * blockTimeout 을 주지 않았을 때 BLOCK 정책이 자리를 기다리는 시간
+     */
+    public static final long DEFAULT_BLOCK_TIMEOUT_MILLIS = 10_000;
+
+    private final Deque<WaitingTask<?>> waiting = new ConcurrentLinkedDeque<>();
+    // ConcurrentLinkedDeque.size 는 전부 세므로 따로 센다. 자리를 먼저 잡고 대기열에 넣는다.
+    private final AtomicInteger waitingCount = new AtomicInteger();
+    private final int waitingCapacity;
+
+    public BoundedExecutor(String name, int threads, int queueCapacity, OverflowPolicy policy) {
+        this(name, threads, queueCapacity, policy, DEFAULT_BLOCK_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS, Executors.defaultThreadFactory());
+    }
+
+    /**
+     * @param blockTimeout BLOCK 정책에서 자리를 기다리는 최대 시간
+     */
+    public BoundedExecutor(String name, int threads, int queueCapacity, OverflowPolicy policy,
+                           long blockTimeout, TimeUnit unit, ThreadFactory threadFactory) {
+        super(name, threads, threads, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueCapacity),
+                threadFactory, handlerFor(policy, unit.toNanos(blockTimeout)));
+        this.waitingCapacity = queueCapacity;
+        // submitAsync 는 큐에 바로 넣으므로 워커가 미리 떠 있어야 한다.
+        prestartAllCoreThreads();
+    }
+
+    private static RejectedExecutionHandler handlerFor(OverflowPolicy policy, long blockTimeoutNanos) {
+        switch (policy) {
+            case BLOCK:
+                return (r, executor) -> {
+                    if (executor.isShutdown()) {
+                        throw new RejectedExecutionException("executor is shut down");
+                    }
+                    try {
+                        if (!executor.getQueue().offer(r, blockTimeoutNanos, TimeUnit.NANOSECONDS)) {
+                            throw new ExecutorOverloadedException("queue still full after waiting "
+                                    + TimeUnit.NANOSECONDS.toMillis(blockTimeoutNanos) + " ms");
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new RejectedExecutionException("interrupted while waiting for queue space", e);
+                    }
+                    if (executor.isShutdown() && executor.getQueue().remove(r)) {
+                        throw new RejectedExecutionException("executor is shut down");
+                    }
+                };
+            case CALLER_RUNS:
+                return new ThreadPoolExecutor.CallerRunsPolicy();
+            case DROP_OLDEST:
+                return (r, executor) -> {
+                    if (executor.isShutdown()) {
+                        throw new RejectedExecutionException("executor is shut down");
+                    }
+                    Runnable oldest = executor.getQueue().poll();
+                    Runnable dropped = oldest == null ? null : unwrap(oldest);
+                    if (dropped instanceof Future) {
+                        ((Future<?>) dropped).cancel(false);
+                    } else if (dropped instanceof WaitingTask) {
+                        ((WaitingTask<?>) dropped).reject(new ExecutorOverloadedException("dropped for a newer task"));
+                    }
+                    executor.execute(r);
+                };
+            case FAIL_FAST:
+                return (r, executor) -> {
+                    if (executor.isShutdown()) {
+                        throw new RejectedExecutionException("executor is shut down");
+                    }
+                    throw new ExecutorOverloadedException("queue is full (" + executor.getQueue().size() + ")");
+                };
+            default:
+                throw new IllegalArgumentException("unknown policy: " + policy);
+        }
+    }
+
+    /**
+     * 대기열까지 차 있으면 result 와 admitted 모두 ExecutorOverloadedException 으로 끝난 채로 돌려준다.
+     */
+    public <T> AsyncSubmission<T> submitAsync(Callable<T> task) {
+        AsyncSubmission<T> result = new AsyncSubmission<>();
+        WaitingTask<T> waitingTask = new WaitingTask<>(task, result);
+        if (isShutdown()) {
+            waitingTask.reject(new RejectedExecutionException("executor is shut down"));
+            return result;
+        }
+        if (waitingCount.incrementAndGet() > waitingCapacity) {
+            waitingCount.decrementAndGet();
+            waitingTask.reject(new ExecutorOverloadedException("waiting list is full (" + waitingCapacity + ")"));
+            return result;
+        }
+        waiting.add(waitingTask);
+        admitWaiting();
+        return result;
+    }
+
+    /**
+     * submitAsync 로 들어와서 아직 큐에 들어가지 못한 태스크 수
+     */
+    public int getWaitingCount() {
+        return waitingCount.get();
+    }
+
+    @Override
+    protected void beforeExecute(Thread t, Runnable r) {
+        super.beforeExecute(t, r);
+        // 이 태스크가 큐에서 빠지면서 자리가 하나 생겼다.
+        admitWaiting();
+    }
+
+    @Override
+    public void shutdown() {
+        super.shutdown();
+        rejectWaiting();
+    }
+
+    /**
+     * 큐에 들어가 있던 submitAsync 태스크도 실행되지 않으므로, 대기열에 남은 것과 함께 future 를 RejectedExecutionException 으로 끝낸다.
+     */
+    @Override
+    public List<Runnable> shutdownNow() {
+        List<Runnable> tasks = super.shutdownNow();
+        RejectedExecutionException rejected = new RejectedExecutionException("executor is shut down");
+        for (Runnable task : tasks) {
+            if (task instanceof WaitingTask) {
+                ((WaitingTask<?>) task).reject(rejected);
+            }
+        }
+        rejectWaiting();
+        return tasks;
+    }
+
+    private void admitWaiting() {
+        WaitingTask<?> next;
+        while ((next = waiting.poll()) != null) {
+            if (isShutdown()) {
+                waiting.addFirst(next);
+                rejectWaiting();
+                return;
+            }
+            if (!getQueue().offer(new TimedTask(next, System.nanoTime()))) {
+                waiting.addFirst(next);
+                // poll 과 addFirst 사이에 워커가 자리를 비웠다면 그 워커는 빈 대기열을 보고 지나갔을 수 있다.
+                if (getQueue().remainingCapacity() == 0) {
+                    return;
+                }
+                continue;
+            }
+            waitingCount.decrementAndGet();
+            next.result.admitted.complete(null);
+        }
+    }
+
+    /**
+     * 종료된 뒤에 남은 대기 태스크는 실행하지 않는다. 각 future 는 RejectedExecutionException 으로 끝난다.
+     */
+    private void rejectWaiting() {
+        RejectedExecutionException rejected = new RejectedExecutionException("executor is shut down");
+        WaitingTask<?> next;
+        while ((next = waiting.poll()) != null) {
+            waitingCount.decrementAndGet();
+            next.reject(rejected);
+        }
+    }
+
+    /**
+     * submitAsync 가 돌려주는 future. 태스크의 결과로 완료된다.
+     */
+    public static final class AsyncSubmission<T> extends CompletableFuture<T> {
+
+        private final CompletableFuture<Void> admitted = new CompletableFuture<>();
+
+        private AsyncSubmission() {
+        }
+
+        /**
+         * 태스크가 큐에 들어가면 완료된다. 들어가지 못하고 끝나면 태스크의 future 와 같은 예외로 끝난다.
+         */
+        public CompletableFuture<Void> admitted() {
+            return admitted;
+        }
+    }
+
+    private static final class WaitingTask<T> implements Runnable {
+
+        private final Callable<T> task;
+        private final AsyncSubmission<T> result;
+
+        WaitingTask(Callable<T> task, AsyncSubmission<T> result) {
+            this.task = task;
+            this.result = result;
+        }
+
+        void reject(Throwable cause) {
+            result.admitted.completeExceptionally(cause);
+            result.completeExceptionally(cause);
+        }
+
+        @Override
+        public void run() {
+            // 기다리는 동안 호출한 쪽에서 취소했으면 실행하지 않는다.
+            if (result.isDone()) {
+                return;
+            }
+            try {
+                result.complete(task.call());
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+            }
+        }
+    }
+}
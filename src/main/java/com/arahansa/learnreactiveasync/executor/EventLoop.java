@@ -0,0 +1,373 @@
+package com.arahansa.learnreactiveasync.executor;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RunnableScheduledFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 스레드 하나가 받은편지함(inbox)을 비우며 태스크를 실행하는 이벤트 루프.
+ *
+ * Executors.newSingleThreadExecutor() 는 락을 잡는 LinkedBlockingQueue 에 노드를 만들어 넣고, submit 마다 Future 를 만든다.
+ * 여기서 execute 는 Runnable 을 미리 할당된 RingBufferBlockingQueue 에 그대로 넣으므로 태스크 하나당 새로 만드는 객체가 없다.
+ * 루프는 한 번에 최대 maxBatch 개를 꺼내 실행하고, 예약된 태스크는 루프 스레드만 만지는 PriorityQueue 에 둔다.
+ * 한 루프에 넣은 태스크는 넣은 순서대로, 같은 스레드에서 실행되므로 태스크끼리 락 없이 상태를 나눌 수 있다.
+ *
+ * busySpin 이면 할 일이 없어도 park 하지 않는다. 지연은 가장 짧지만 코어 하나를 계속 차지한다.
+ *
+ * inbox 가 가득 차면 다른 스레드의 execute 는 자리가 날 때까지 기다린다.
+ * 루프 스레드 자신이 넣을 때는 기다리면 멈춰 버리므로 루프 전용 overflow 큐에 넣는다.
+ * overflow 가 비기 전까지는 루프 스레드가 넣는 태스크도 overflow 뒤에 붙이고, inbox 를 먼저 실행해서 넣은 순서를 지킨다.
+ *
+ * shutdown 이후 아직 때가 되지 않은 예약 태스크는 취소되고, 이미 받은 태스크는 모두 실행된다.
+ */
+@Slf4j
+public class EventLoop extends AbstractExecutorService implements ScheduledExecutorService {
+
+    public static final int DEFAULT_INBOX_CAPACITY = 4096;
+    public static final int DEFAULT_MAX_BATCH = 64;
+
+    // ctl 의 최상위 비트는 shutdown, 나머지는 지금 inbox 에 넣고 있는 스레드 수
+    private static final int SHUTDOWN = Integer.MIN_VALUE;
+    private static final int SUBMITTERS = Integer.MAX_VALUE;
+
+    private static final Runnable WAKE_UP = () -> {
+    };
+
+    private final BlockingQueue<Runnable> inbox;
+    private final int maxBatch;
+    private final boolean busySpin;
+    private final Thread thread;
+
+    private final AtomicInteger ctl = new AtomicInteger();
+    private final AtomicLong sequencer = new AtomicLong();
+    private final CountDownLatch terminated = new CountDownLatch(1);
+    private volatile boolean stopped;
+
+    // 루프 스레드만 만진다.
+    private final ArrayDeque<Runnable> overflow = new ArrayDeque<>();
+    private final PriorityQueue<ScheduledTask<?>> scheduled = new PriorityQueue<>();
+
+    public EventLoop(String name) {
+        this(new ThreadFactoryBuilder().setNameFormat(name).setDaemon(true).build(),
+                DEFAULT_INBOX_CAPACITY, DEFAULT_MAX_BATCH, false);
+    }
+
+    public EventLoop(ThreadFactory threadFactory, int inboxCapacity, int maxBatch, boolean busySpin) {
+        if (maxBatch < 1) {
+            throw new IllegalArgumentException("maxBatch must be positive: " + maxBatch);
+        }
+        this.inbox = new RingBufferBlockingQueue<>(inboxCapacity);
+        this.maxBatch = maxBatch;
+        this.busySpin = busySpin;
+        this.thread = threadFactory.newThread(this::run);
+        thread.start();
+    }
+
+    /**
+     * 지금 스레드가 이 루프의 스레드인지. 맞다면 루프의 상태를 락 없이 만져도 된다.
+     */
+    public boolean inEventLoop() {
+        return Thread.currentThread() == thread;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        if (task == null) {
+            throw new NullPointerException();
+        }
+        if (inEventLoop()) {
+            if (isShutdown()) {
+                throw new RejectedExecutionException("event loop is shut down");
+            }
+            // overflow 에 먼저 넣은 태스크가 있으면 inbox 에 자리가 나도 그 뒤에 서야 순서가 지켜진다.
+            if (!overflow.isEmpty() || !inbox.offer(task)) {
+                overflow.add(task);
+            }
+            return;
+        }
+        // shutdown 비트를 확인하는 것과 넣고 있다고 알리는 것을 한 번에 한다. 루프는 넣고 있는 스레드가 없어질 때까지 끝나지 않는다.
+        if (ctl.getAndIncrement() < 0) {
+            ctl.decrementAndGet();
+            throw new RejectedExecutionException("event loop is shut down");
+        }
+        try {
+            inbox.put(task);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("interrupted while waiting for inbox space", e);
+        } finally {
+            ctl.decrementAndGet();
+        }
+    }
+
+    @Override
+    public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+        return schedule(new ScheduledTask<>(Executors.callable(command, null), deadline(delay, unit), 0L));
+    }
+
+    @Override
+    public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+        return schedule(new ScheduledTask<>(callable, deadline(delay, unit), 0L));
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period, TimeUnit unit) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("period must be positive: " + period);
+        }
+        return schedule(new ScheduledTask<>(Executors.callable(command, null), deadline(initialDelay, unit),
+                unit.toNanos(period)));
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay, TimeUnit unit) {
+        if (delay <= 0) {
+            throw new IllegalArgumentException("delay must be positive: " + delay);
+        }
+        return schedule(new ScheduledTask<>(Executors.callable(command, null), deadline(initialDelay, unit),
+                -unit.toNanos(delay)));
+    }
+
+    private static long deadline(long delay, TimeUnit unit) {
+        return System.nanoTime() + unit.toNanos(Math.max(0, delay));
+    }
+
+    private <V> ScheduledTask<V> schedule(ScheduledTask<V> task) {
+        if (inEventLoop()) {
+            if (isShutdown()) {
+                throw new RejectedExecutionException("event loop is shut down");
+            }
+            scheduled.add(task);
+        } else {
+            execute(() -> scheduled.add(task));
+        }
+        return task;
+    }
+
+    @Override
+    public void shutdown() {
+        int c;
+        do {
+            c = ctl.get();
+        } while (c >= 0 && !ctl.compareAndSet(c, c | SHUTDOWN));
+        // park 중이면 깨운다. 가득 차 있다면 어차피 루프가 돌고 있다.
+        inbox.offer(WAKE_UP);
+    }
+
+    /**
+     * inbox 에 남은 태스크를 돌려준다. 루프 스레드가 자기 자신에게 넣은 overflow 태스크는 버려진다.
+     */
+    @Override
+    public List<Runnable> shutdownNow() {
+        stopped = true;
+        shutdown();
+        thread.interrupt();
+        List<Runnable> remaining = new ArrayList<>();
+        inbox.drainTo(remaining);
+        remaining.removeIf(task -> task == WAKE_UP);
+        return remaining;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return ctl.get() < 0;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return terminated.getCount() == 0;
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return terminated.await(timeout, unit);
+    }
+
+    /**
+     * inbox 에 쌓인 태스크 수. 루프 밖에서는 근사값이다.
+     */
+    public int pendingTasks() {
+        return inbox.size() + (inEventLoop() ? overflow.size() : 0);
+    }
+
+    private void run() {
+        try {
+            for (;;) {
+                long now = System.nanoTime();
+                boolean shutdown = isShutdown();
+                if (shutdown) {
+                    cancelScheduled();
+                } else {
+                    runScheduled(now);
+                }
+                if (drain() > 0) {
+                    continue;
+                }
+                if (shutdown) {
+                    if ((ctl.get() & SUBMITTERS) == 0 && inbox.isEmpty() && overflow.isEmpty()) {
+                        break;
+                    }
+                    Thread.yield();
+                    continue;
+                }
+                if (busySpin) {
+                    continue;
+                }
+                ScheduledTask<?> next = scheduled.peek();
+                try {
+                    Runnable task = next == null
+                            ? inbox.take()
+                            : inbox.poll(next.deadlineNanos - now, TimeUnit.NANOSECONDS);
+                    if (task != null) {
+                        safeRun(task);
+                    }
+                } catch (InterruptedException e) {
+                    // shutdownNow 가 깨운 것이다. 위에서 상태를 다시 본다.
+                }
+            }
+        } finally {
+            overflow.clear();
+            cancelScheduled();
+            terminated.countDown();
+        }
+    }
+
+    private int drain() {
+        int ran = 0;
+        Runnable task;
+        while (ran < maxBatch && (task = nextTask()) != null) {
+            if (stopped) {
+                if (task instanceof Future) {
+                    ((Future<?>) task).cancel(false);
+                }
+            } else {
+                safeRun(task);
+            }
+            ran++;
+        }
+        return ran;
+    }
+
+    /**
+     * overflow 에 있는 태스크는 inbox 가 가득 찬 뒤에 들어온 것이므로 inbox 를 먼저 꺼낸다.
+     * inbox 에서 하나 꺼내 자리가 나면 overflow 의 앞쪽을 inbox 로 옮겨서, inbox 가 계속 차 있어도 overflow 가 굶지 않게 한다.
+     */
+    private Runnable nextTask() {
+        Runnable task = inbox.poll();
+        if (task == null) {
+            return overflow.poll();
+        }
+        while (!overflow.isEmpty() && inbox.offer(overflow.peek())) {
+            overflow.poll();
+        }
+        return task;
+    }
+
+    private void runScheduled(long now) {
+        ScheduledTask<?> task;
+        while ((task = scheduled.peek()) != null && task.deadlineNanos - now <= 0) {
+            scheduled.poll();
+            if (!task.isCancelled()) {
+                safeRun(task);
+            }
+        }
+    }
+
+    private void cancelScheduled() {
+        ScheduledTask<?> task;
+        while ((task = scheduled.poll()) != null) {
+            task.cancel(false);
+        }
+    }
+
+    /**
+     * cancel(true) 는 루프 스레드를 interrupt 하므로, 지우지 않으면 그 표시가 다음 태스크에 남는다.
+     * shutdownNow 의 interrupt 도 여기서 지워지지만 루프는 stopped 와 ctl 을 다시 보므로 상관없다.
+     */
+    private static void safeRun(Runnable task) {
+        try {
+            task.run();
+        } catch (Throwable t) {
+            log.warn("event loop task failed", t);
+        } finally {
+            Thread.interrupted();
+        }
+    }
+
+    /**
+     * 루프 스레드에서만 실행되고 다시 넣어진다. 취소는 표시만 하고, 힙에서 꺼낼 때 건너뛴다.
+     */
+    private final class ScheduledTask<V> extends FutureTask<V> implements RunnableScheduledFuture<V> {
+
+        private final long sequence = sequencer.getAndIncrement();
+        // 양수면 fixed rate, 음수면 fixed delay, 0 이면 한 번
+        private final long periodNanos;
+        private long deadlineNanos;
+
+        ScheduledTask(Callable<V> callable, long deadlineNanos, long periodNanos) {
+            super(callable);
+            this.deadlineNanos = deadlineNanos;
+            this.periodNanos = periodNanos;
+        }
+
+        @Override
+        public boolean isPeriodic() {
+            return periodNanos != 0;
+        }
+
+        @Override
+        public void run() {
+            if (!isPeriodic()) {
+                super.run();
+            } else if (runAndReset()) {
+                if (isShutdown()) {
+                    cancel(false);
+                    return;
+                }
+                deadlineNanos = periodNanos > 0 ? deadlineNanos + periodNanos : System.nanoTime() - periodNanos;
+                scheduled.add(this);
+            }
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            if (other == this) {
+                return 0;
+            }
+            if (other instanceof ScheduledTask) {
+                ScheduledTask<?> that = (ScheduledTask<?>) other;
+                long diff = deadlineNanos - that.deadlineNanos;
+                if (diff != 0) {
+                    return diff < 0 ? -1 : 1;
+                }
+                return sequence < that.sequence ? -1 : 1;
+            }
+            return Long.compare(getDelay(TimeUnit.NANOSECONDS), other.getDelay(TimeUnit.NANOSECONDS));
+        }
+    }
+}
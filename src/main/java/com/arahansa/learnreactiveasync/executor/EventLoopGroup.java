@@ -0,0 +1,108 @@
+package com.arahansa.learnreactiveasync.executor;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * EventLoop 여러 개를 묶는다.
+ *
+ * next(key) 는 같은 key 를 항상 같은 루프에 보내므로, key 별 작업은 락 없이 넣은 순서대로 실행되고
+ * 서로 다른 key 는 루프 수만큼 나뉘어 병렬로 돈다. key 가 없는 일은 next() 로 돌아가며 나눈다.
+ */
+public class EventLoopGroup implements AutoCloseable {
+
+    private final EventLoop[] loops;
+    private final AtomicInteger roundRobin = new AtomicInteger();
+
+    public EventLoopGroup(String name, int loopCount) {
+        this(loopCount, new ThreadFactoryBuilder().setNameFormat(name + "-%d").setDaemon(true).build(),
+                EventLoop.DEFAULT_INBOX_CAPACITY, EventLoop.DEFAULT_MAX_BATCH, false);
+    }
+
+    public EventLoopGroup(int loopCount, ThreadFactory threadFactory, int inboxCapacity, int maxBatch, boolean busySpin) {
+        if (loopCount < 1) {
+            throw new IllegalArgumentException("loopCount must be positive: " + loopCount);
+        }
+        this.loops = new EventLoop[loopCount];
+        for (int i = 0; i < loopCount; i++) {
+            loops[i] = new EventLoop(threadFactory, inboxCapacity, maxBatch, busySpin);
+        }
+    }
+
+    public EventLoop next() {
+        return loops[Math.floorMod(roundRobin.getAndIncrement(), loops.length)];
+    }
+
+    /**
+     * key 의 hashCode 로 고른 루프. 같은 key 는 항상 같은 루프다.
+     */
+    public EventLoop next(Object key) {
+        int h = key.hashCode();
+        // HashMap 처럼 상위 비트를 섞어서 하위 비트만 다른 hashCode 도 고르게 나눈다.
+        return loops[Math.floorMod(h ^ (h >>> 16), loops.length)];
+    }
+
+    public void execute(Object key, Runnable task) {
+        next(key).execute(task);
+    }
+
+    public int size() {
+        return loops.length;
+    }
+
+    public List<EventLoop> getLoops() {
+        return Collections.unmodifiableList(Arrays.asList(loops));
+    }
+
+    public void shutdown() {
+        for (EventLoop loop : loops) {
+            loop.shutdown();
+        }
+    }
+
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (EventLoop loop : loops) {
+            if (!loop.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * shutdown 하고 끝날 때까지 기다린다.
+     * 기다리는 중에 interrupt 되면 남은 태스크를 버리고 (shutdownNow) 끝까지 기다린 뒤 interrupt 상태를 되살린다.
+     * try-with-resources 에서 InterruptedException 을 던지면 억제된 예외와 섞이므로 던지지 않는다.
+     */
+    @Override
+    public void close() {
+        shutdown();
+        boolean interrupted = false;
+        for (EventLoop loop : loops) {
+            while (true) {
+                try {
+                    if (loop.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS)) {
+                        break;
+                    }
+                } catch (InterruptedException e) {
+                    if (!interrupted) {
+                        interrupted = true;
+                        for (EventLoop l : loops) {
+                            l.shutdownNow();
+                        }
+                    }
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
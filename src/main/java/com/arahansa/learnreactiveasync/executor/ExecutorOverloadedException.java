@@ -0,0 +1,16 @@
+package com.arahansa.learnreactiveasync.executor;
+
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 큐가 가득 차서 태스크를 받을 수 없을 때 던진다.
+ * 종료된 풀에 제출했을 때의 RejectedExecutionException 과 구별하기 위한 타입이다.
+ */
+public class ExecutorOverloadedException extends RejectedExecutionException {
+
+    private static final long serialVersionUID = 1L;
+
+    public ExecutorOverloadedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,164 @@
+package com.arahansa.learnreactiveasync.executor;
+
+import com.arahansa.learnreactiveasync.timer.HashedWheelTimer;
+import com.arahansa.learnreactiveasync.timer.TimeoutService;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 이름으로 찾는 공용 스레드풀 모음.
+ *
+ * 호출할 때마다 Executors.newCachedThreadPool() 을 만들고 닫지 않으면 스레드가 끝없이 늘고 JVM 도 끝나지 않는다.
+ * 여기의 풀은 모두 스레드 수와 큐 크기가 정해져 있고, close() 에서 J01_ExecutorServiceExample 의
+ * shutdown → awaitTermination → shutdownNow 순서로 정리된다.
+ * <ul>
+ *     <li>cpu-bound: 코어 수만큼의 스레드. 큐가 차면 호출한 스레드에서 실행해서 속도를 늦춘다.</li>
+ *     <li>io-bound: 더 많은 스레드. 큐가 차면 RejectedExecutionException 을 던진다.</li>
+ *     <li>scheduled: 지연/주기 실행용.</li>
+ * </ul>
+ * 단순히 일정 시간 뒤에 future 를 완료시키는 용도라면 timeouts() 의 타이머 휠을 쓴다.
+ * 만료된 타이머의 작업은 cpu-bound 풀에서 실행된다.
+ *
+ * cpu-bound 와 io-bound 는 InstrumentedThreadPoolExecutor 라서, 빈으로 등록되면 액추에이터가
+ * 큐 대기/실행 시간과 거절 수를 executor.* 미터로 내보낸다.
+ */
+@Slf4j
+public class ExecutorRegistry implements AutoCloseable, MeterBinder {
+
+    public static final String CPU_BOUND = "cpu-bound";
+    public static final String IO_BOUND = "io-bound";
+    public static final String SCHEDULED = "scheduled";
+    public static final String TIMER = "timer";
+
+    private final Map<String, ExecutorService> executors = new LinkedHashMap<>();
+    private final long awaitTerminationMillis;
+    private final HashedWheelTimer timer;
+    private final TimeoutService timeouts;
+
+    public ExecutorRegistry() {
+        this(Runtime.getRuntime().availableProcessors(), 4 * Runtime.getRuntime().availableProcessors(),
+                1024, 2, 800);
+    }
+
+    public ExecutorRegistry(int cpuThreads, int ioThreads, int queueCapacity, int scheduledThreads,
+                            long awaitTerminationMillis) {
+        this.awaitTerminationMillis = awaitTerminationMillis;
+        register(CPU_BOUND, newBoundedPool(CPU_BOUND, cpuThreads, queueCapacity, new ThreadPoolExecutor.CallerRunsPolicy()));
+        register(IO_BOUND, newBoundedPool(IO_BOUND, ioThreads, queueCapacity, new ThreadPoolExecutor.AbortPolicy()));
+
+        ScheduledThreadPoolExecutor scheduled = new ScheduledThreadPoolExecutor(scheduledThreads, threadFactory(SCHEDULED));
+        scheduled.setRemoveOnCancelPolicy(true);
+        register(SCHEDULED, scheduled);
+
+        timer = new HashedWheelTimer(threadFactory(TIMER), 10, TimeUnit.MILLISECONDS, 512, cpuBound());
+        timeouts = new TimeoutService(timer);
+    }
+
+    private static ThreadPoolExecutor newBoundedPool(String name, int threads, int queueCapacity,
+                                                     RejectedExecutionHandler rejectedExecutionHandler) {
+        ThreadPoolExecutor executor = new InstrumentedThreadPoolExecutor(name, threads, threads, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(queueCapacity), threadFactory(name), rejectedExecutionHandler);
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private static ThreadFactory threadFactory(String name) {
+        return new ThreadFactoryBuilder().setNameFormat(name + "-%d").build();
+    }
+
+    /**
+     * 풀을 추가로 등록한다. 등록된 풀은 close() 에서 함께 종료된다.
+     */
+    public synchronized void register(String name, ExecutorService executor) {
+        if (executors.containsKey(name)) {
+            throw new IllegalArgumentException("executor already registered: " + name);
+        }
+        executors.put(name, executor);
+    }
+
+    public synchronized ExecutorService get(String name) {
+        ExecutorService executor = executors.get(name);
+        if (executor == null) {
+            throw new IllegalArgumentException("unknown executor: " + name);
+        }
+        return executor;
+    }
+
+    public synchronized Map<String, ExecutorService> getExecutors() {
+        return Collections.unmodifiableMap(new LinkedHashMap<>(executors));
+    }
+
+    public ExecutorService cpuBound() {
+        return get(CPU_BOUND);
+    }
+
+    public ExecutorService ioBound() {
+        return get(IO_BOUND);
+    }
+
+    public ScheduledExecutorService scheduled() {
+        return (ScheduledExecutorService) get(SCHEDULED);
+    }
+
+    public TimeoutService timeouts() {
+        return timeouts;
+    }
+
+    /**
+     * 등록된 풀 중 InstrumentedThreadPoolExecutor 인 것들의 미터를 등록한다.
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        getExecutors().values().stream()
+                .filter(executor -> executor instanceof InstrumentedThreadPoolExecutor)
+                .forEach(executor -> ((InstrumentedThreadPoolExecutor) executor).bindTo(registry));
+    }
+
+    /**
+     * 타이머를 먼저 멈추고, 모든 풀에 shutdown 을 건 뒤 전체 awaitTerminationMillis 안에 끝나지 않은 풀은 shutdownNow 한다.
+     */
+    @Override
+    public void close() {
+        long droppedTimeouts = timer.stop();
+        if (droppedTimeouts > 0) {
+            log.warn("{} pending timeouts dropped", droppedTimeouts);
+        }
+
+        List<Map.Entry<String, ExecutorService>> entries;
+        synchronized (this) {
+            entries = new ArrayList<>(executors.entrySet());
+        }
+        entries.forEach(entry -> entry.getValue().shutdown());
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(awaitTerminationMillis);
+        for (Map.Entry<String, ExecutorService> entry : entries) {
+            ExecutorService executor = entry.getValue();
+            try {
+                if (!executor.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                    List<Runnable> dropped = executor.shutdownNow();
+                    log.warn("{} did not terminate in {} ms, {} queued tasks dropped",
+                            entry.getKey(), awaitTerminationMillis, dropped.size());
+                }
+            } catch (InterruptedException e) {
+                executor.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,343 @@
+package com.arahansa.learnreactiveasync.executor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 지연 기반 hedged request. ExecutorService.invokeAny 와 같은 일을 하되 복제본을 한꺼번에 보내지 않는다.
+ *
+ * invokeAny 는 모든 태스크를 동시에 제출하므로 복제본 수만큼 부하가 늘어난다.
+ * 여기서는 첫 번째 태스크만 실행하고, 그 호출이 최근 지연시간의 p95 (quantile) 를 넘겨도 끝나지 않을 때에만
+ * 두 번째 태스크를 백업으로 띄운다. 먼저 성공한 쪽의 결과로 완료되고 나머지는 cancel(true) 로 interrupt 한다.
+ * 느린 5% 만 백업을 보내므로 p99 는 줄이면서 전체 부하는 몇 % 만 늘어난다.
+ *
+ * 지연시간은 성공한 호출마다 첫 시도를 띄운 때부터 결과가 나온 때까지를 LatencyHistogram 에 기록하고, window 마다 스냅샷의 차이 (최근 1~2 window) 로 p95 를 다시 계산한다.
+ * 이긴 시도의 시간만 기록하면 느린 쪽은 취소되어 빠지므로 p95 가 점점 내려가고 hedge 가 늘어난다.
+ * 호출 단위로 재면 hedge 된 호출은 적어도 기준 지연만큼으로 기록되어 기준이 유지된다.
+ * 샘플이 minSamples 보다 적으면 기준이 없으므로 hedge 하지 않는다.
+ * 백엔드 전체가 느려져서 p95 가 의미 없어질 때를 대비해 hedge 수는 호출 수의 maxHedgeRatio 로 제한한다.
+ * 예산은 호출마다 maxHedgeRatio 만큼 쌓이는 토큰이고, 최근 HEDGE_BUDGET_CALLS 호출분까지만 쌓인다.
+ * 평소에 쓰지 않은 예산이 계속 쌓이면 장애 때 모든 호출이 hedge 되어 부하가 두 배가 되기 때문이다.
+ *
+ * 시도가 실패하면 다음 태스크를 바로 실행한다 (invokeAny 처럼). 이것은 대체라서 hedge 예산을 쓰지 않는다.
+ * 모든 태스크가 실패하면 마지막 예외로 실패한다.
+ */
+public class HedgingExecutor {
+
+    public static final double DEFAULT_QUANTILE = 0.95;
+    public static final double DEFAULT_MAX_HEDGE_RATIO = 0.05;
+    public static final int DEFAULT_MIN_SAMPLES = 20;
+    /**
+     * hedge 예산은 이만큼의 호출분까지만 쌓인다.
+     */
+    public static final int HEDGE_BUDGET_CALLS = 100;
+
+    // hedge 하나가 쓰는 토큰. 비율을 정수로 다루기 위한 단위다.
+    private static final long HEDGE_COST = 1_000_000;
+
+    private final Executor executor;
+    private final ScheduledExecutorService scheduler;
+    private final double quantile;
+    private final long tokensPerCall;
+    private final long maxTokens;
+    private final long windowNanos;
+    private final int minSamples;
+
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder calls = new LongAdder();
+    private final AtomicLong hedgeTokens = new AtomicLong();
+    private final LongAdder hedges = new LongAdder();
+    private final LongAdder hedgeWins = new LongAdder();
+    private final LongAdder skippedHedges = new LongAdder();
+
+    // window 경계에서 한 스레드만 갱신한다. 아래 두 스냅샷은 refresh 안에서만 쓴다.
+    private final AtomicLong nextRefresh;
+    private LatencyHistogram.Snapshot windowStart;
+    private LatencyHistogram.Snapshot previous;
+    // 0 이면 아직 기준이 없다.
+    private volatile long hedgeDelayNanos;
+
+    public HedgingExecutor(Executor executor, ScheduledExecutorService scheduler) {
+        this(executor, scheduler, DEFAULT_QUANTILE, DEFAULT_MAX_HEDGE_RATIO, 10, TimeUnit.SECONDS, DEFAULT_MIN_SAMPLES);
+    }
+
+    /**
+     * @param quantile      이 백분위의 지연시간을 넘기면 백업을 띄운다.
+     * @param maxHedgeRatio 호출 중 hedge 할 수 있는 비율. 0 이면 hedge 하지 않는다.
+     * @param window        p95 를 다시 계산하는 주기. 최근 1~2 window 동안의 지연시간으로 계산한다.
+     * @param minSamples    window 의 샘플이 이보다 적으면 이전 기준을 그대로 쓴다.
+     */
+    public HedgingExecutor(Executor executor, ScheduledExecutorService scheduler, double quantile,
+                           double maxHedgeRatio, long window, TimeUnit unit, int minSamples) {
+        if (quantile <= 0 || quantile >= 1) {
+            throw new IllegalArgumentException("quantile must be in (0, 1): " + quantile);
+        }
+        if (maxHedgeRatio < 0 || maxHedgeRatio > 1) {
+            throw new IllegalArgumentException("maxHedgeRatio must be in [0, 1]: " + maxHedgeRatio);
+        }
+        if (window <= 0) {
+            throw new IllegalArgumentException("window must be positive: " + window);
+        }
+        this.executor = Objects.requireNonNull(executor);
+        this.scheduler = Objects.requireNonNull(scheduler);
+        this.quantile = quantile;
+        this.tokensPerCall = (long) (maxHedgeRatio * HEDGE_COST);
+        this.maxTokens = Math.max(HEDGE_COST, tokensPerCall * HEDGE_BUDGET_CALLS);
+        this.windowNanos = unit.toNanos(window);
+        this.minSamples = Math.max(1, minSamples);
+        this.windowStart = latency.snapshot();
+        this.previous = windowStart;
+        this.nextRefresh = new AtomicLong(System.nanoTime() + windowNanos);
+    }
+
+    /**
+     * 같은 태스크를 백업으로 한 번 더 실행할 수 있는 호출. 첫 실행이 실패해도 한 번 더 실행되므로 태스크는 여러 번 실행되어도 안전해야 한다.
+     */
+    public <T> CompletableFuture<T> submit(Callable<T> task) {
+        return submit(Arrays.asList(task, task));
+    }
+
+    /**
+     * replicas 의 첫 번째를 실행하고, 기준 지연을 넘기면 두 번째를 백업으로 띄운다.
+     * 세 번째부터는 앞선 시도가 실패했을 때에만 실행된다.
+     * 돌려준 future 를 취소하면 실행 중인 시도도 모두 취소된다.
+     */
+    public <T> CompletableFuture<T> submit(List<? extends Callable<T>> replicas) {
+        if (replicas.isEmpty()) {
+            throw new IllegalArgumentException("replicas must not be empty");
+        }
+        calls.increment();
+        addHedgeTokens();
+        Call<T> call = new Call<>(new ArrayList<>(replicas));
+        call.launch();
+        long delay = currentHedgeDelay();
+        if (delay > 0 && replicas.size() > 1 && !call.result.isDone()) {
+            try {
+                ScheduledFuture<?> hedge = scheduler.schedule(call::hedge, delay, TimeUnit.NANOSECONDS);
+                call.result.whenComplete((value, ex) -> hedge.cancel(false));
+            } catch (RejectedExecutionException e) {
+                // 타이머가 없으면 hedge 없이 진행한다.
+                skippedHedges.increment();
+            }
+        }
+        return call.result;
+    }
+
+    /**
+     * J01_ExecutorServiceExample 의 invokeAny 자리에 쓸 수 있는 블로킹 버전
+     */
+    public <T> T invokeAny(List<? extends Callable<T>> replicas) throws InterruptedException, ExecutionException {
+        CompletableFuture<T> result = submit(replicas);
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            result.cancel(true);
+            throw e;
+        }
+    }
+
+    /**
+     * 지금 적용되는 hedge 기준 지연. 아직 샘플이 모자라면 0.
+     */
+    public long getHedgeDelay(TimeUnit unit) {
+        return unit.convert(currentHedgeDelay(), TimeUnit.NANOSECONDS);
+    }
+
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    public long getCallCount() {
+        return calls.sum();
+    }
+
+    public long getHedgeCount() {
+        return hedges.sum();
+    }
+
+    /**
+     * 백업이 먼저 성공한 수
+     */
+    public long getHedgeWinCount() {
+        return hedgeWins.sum();
+    }
+
+    /**
+     * 기준 지연을 넘겼지만 예산이 없어서 백업을 띄우지 못한 수
+     */
+    public long getSkippedHedgeCount() {
+        return skippedHedges.sum();
+    }
+
+    private long currentHedgeDelay() {
+        long now = System.nanoTime();
+        long refreshAt = nextRefresh.get();
+        if (now - refreshAt >= 0 && nextRefresh.compareAndSet(refreshAt, now + windowNanos)) {
+            refresh();
+        }
+        return hedgeDelayNanos;
+    }
+
+    /**
+     * window 가 막 바뀐 직후에도 샘플이 있도록, 직전 window 의 시작부터 지금까지로 계산한다.
+     */
+    private synchronized void refresh() {
+        LatencyHistogram.Snapshot now = latency.snapshot();
+        LatencyHistogram.Snapshot recent = now.since(windowStart);
+        if (recent.count() >= minSamples) {
+            hedgeDelayNanos = Math.max(1, recent.percentileNanos(quantile));
+        }
+        windowStart = previous;
+        previous = now;
+    }
+
+    private void addHedgeTokens() {
+        if (tokensPerCall == 0) {
+            return;
+        }
+        long tokens;
+        do {
+            tokens = hedgeTokens.get();
+            if (tokens >= maxTokens) {
+                return;
+            }
+        } while (!hedgeTokens.compareAndSet(tokens, Math.min(maxTokens, tokens + tokensPerCall)));
+    }
+
+    /**
+     * 예산 안이면 hedge 하나를 예약한다.
+     */
+    private boolean tryAcquireHedge() {
+        long tokens;
+        do {
+            tokens = hedgeTokens.get();
+            if (tokens < HEDGE_COST) {
+                return false;
+            }
+        } while (!hedgeTokens.compareAndSet(tokens, tokens - HEDGE_COST));
+        hedges.increment();
+        return true;
+    }
+
+    private final class Call<T> {
+
+        private final List<Callable<T>> replicas;
+        private final long startNanos = System.nanoTime();
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        private final AtomicInteger next = new AtomicInteger();
+        private final AtomicInteger failures = new AtomicInteger();
+        private final AtomicInteger winner = new AtomicInteger(-1);
+        private final List<Attempt> attempts = new ArrayList<>();
+
+        Call(List<Callable<T>> replicas) {
+            this.replicas = replicas;
+            result.whenComplete((value, ex) -> cancelAttempts());
+        }
+
+        /**
+         * 기준 지연을 넘기면 스케줄러에서 불린다.
+         */
+        void hedge() {
+            if (result.isDone() || next.get() >= replicas.size()) {
+                return;
+            }
+            if (!tryAcquireHedge()) {
+                skippedHedges.increment();
+                return;
+            }
+            launch();
+        }
+
+        /**
+         * 다음 태스크를 실행한다. 남은 태스크가 없으면 아무것도 하지 않는다.
+         */
+        void launch() {
+            int index = next.getAndIncrement();
+            if (index >= replicas.size()) {
+                return;
+            }
+            Attempt attempt = new Attempt(replicas.get(index), index);
+            synchronized (attempts) {
+                attempts.add(attempt);
+            }
+            if (result.isDone()) {
+                attempt.cancel(true);
+                return;
+            }
+            try {
+                executor.execute(attempt);
+            } catch (RejectedExecutionException e) {
+                failed(e);
+            }
+        }
+
+        void failed(Throwable ex) {
+            if (failures.incrementAndGet() == replicas.size()) {
+                result.completeExceptionally(ex);
+            } else {
+                launch();
+            }
+        }
+
+        private void cancelAttempts() {
+            List<Attempt> running;
+            synchronized (attempts) {
+                running = new ArrayList<>(attempts);
+            }
+            for (Attempt attempt : running) {
+                attempt.cancel(true);
+            }
+        }
+
+        private final class Attempt extends FutureTask<T> {
+
+            private final int index;
+
+            Attempt(Callable<T> task, int index) {
+                super(task);
+                this.index = index;
+            }
+
+            @Override
+            protected void done() {
+                if (isCancelled()) {
+                    return;
+                }
+                T value;
+                try {
+                    value = get();
+                } catch (ExecutionException e) {
+                    failed(e.getCause());
+                    return;
+                } catch (InterruptedException e) {
+                    // 완료된 뒤에만 불리므로 get 은 기다리지 않는다.
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                // 통계를 먼저 올려야 결과를 받은 쪽이 바로 읽어도 맞는다.
+                if (!result.isDone() && winner.compareAndSet(-1, index)) {
+                    // hedge 타이머와 같은 기준이 되도록 첫 시도의 큐 대기부터 호출 하나로 기록한다.
+                    latency.record(System.nanoTime() - startNanos);
+                    if (index > 0 && failures.get() == 0) {
+                        hedgeWins.increment();
+                    }
+                    result.complete(value);
+                }
+            }
+        }
+    }
+}
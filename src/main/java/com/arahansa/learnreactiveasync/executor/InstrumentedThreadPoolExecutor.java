@@ -0,0 +1,286 @@
+package com.arahansa.learnreactiveasync.executor;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 태스크별 큐 대기 시간과 실행 시간을 기록하는 ThreadPoolExecutor.
+ *
+ * execute() 에서 태스크를 제출 시각과 함께 감싸고, beforeExecute / afterExecute 에서
+ * 큐 대기 시간(제출 → 시작)과 실행 시간(시작 → 끝)을 LatencyHistogram 에 기록한다.
+ * 지연이 큐에서 생기는지 실행에서 생기는지를 나눠 볼 수 있다.
+ *
+ * MeterBinder 이므로 Micrometer 레지스트리에 executor.* 미터로 내보낼 수 있다.
+ * 누적 분포의 백분위는 오래 돌수록 거의 움직이지 않아서 방금 생긴 지연을 보여주지 못한다.
+ * 그래서 백분위와 최대값 게이지는 gaugeWindow 마다 스냅샷을 떠서, 직전 스냅샷 이후에 기록된 값 (since) 만으로 계산한다.
+ * 값은 window 가 바뀔 때에만 갱신된다. getQueueWait / getExecutionTime 은 그대로 누적 분포다.
+ */
+public class InstrumentedThreadPoolExecutor extends ThreadPoolExecutor implements MeterBinder {
+
+    private static final double[] PUBLISHED_QUANTILES = {0.5, 0.95, 0.99};
+
+    public static final long DEFAULT_GAUGE_WINDOW_MILLIS = 60_000;
+
+    private final String name;
+    private final LatencyHistogram queueWait = new LatencyHistogram();
+    private final LatencyHistogram executionTime = new LatencyHistogram();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private volatile long gaugeWindowNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_GAUGE_WINDOW_MILLIS);
+    // 게이지는 상태 객체를 약하게 잡으므로 여기서 잡아 둔다.
+    private final RecentSnapshot recentQueueWait = new RecentSnapshot(queueWait);
+    private final RecentSnapshot recentExecutionTime = new RecentSnapshot(executionTime);
+
+    public InstrumentedThreadPoolExecutor(String name, int corePoolSize, int maximumPoolSize, long keepAliveTime,
+                                          TimeUnit unit, BlockingQueue<Runnable> workQueue) {
+        this(name, corePoolSize, maximumPoolSize, keepAliveTime, unit, workQueue,
+                Executors.defaultThreadFactory(), new AbortPolicy());
+    }
+
+    public InstrumentedThreadPoolExecutor(String name, int corePoolSize, int maximumPoolSize, long keepAliveTime,
+                                          TimeUnit unit, BlockingQueue<Runnable> workQueue,
+                                          ThreadFactory threadFactory, RejectedExecutionHandler handler) {
+        super(corePoolSize, maximumPoolSize, keepAliveTime, unit, workQueue, threadFactory, handler);
+        this.name = name;
+        super.setRejectedExecutionHandler(new CountingRejectedExecutionHandler(handler));
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public LatencyHistogram getQueueWait() {
+        return queueWait;
+    }
+
+    public LatencyHistogram getExecutionTime() {
+        return executionTime;
+    }
+
+    /**
+     * 백분위/최대값 게이지가 보여주는 구간의 길이. 보통 레지스트리의 step 과 맞춘다.
+     */
+    public void setGaugeWindow(long window, TimeUnit unit) {
+        if (window <= 0) {
+            throw new IllegalArgumentException("window must be positive: " + window);
+        }
+        this.gaugeWindowNanos = unit.toNanos(window);
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * 잡히지 않은 예외로 끝난 태스크 수. submit() 으로 낸 태스크의 예외는 Future 에 담기므로 세지 않는다.
+     */
+    public long getFailedCount() {
+        return failed.sum();
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        super.execute(command instanceof TimedTask ? command : new TimedTask(command, System.nanoTime()));
+    }
+
+    @Override
+    protected void beforeExecute(Thread t, Runnable r) {
+        super.beforeExecute(t, r);
+        if (r instanceof TimedTask) {
+            TimedTask task = (TimedTask) r;
+            task.startNanos = System.nanoTime();
+            queueWait.record(task.startNanos - task.submitNanos);
+        }
+    }
+
+    @Override
+    protected void afterExecute(Runnable r, Throwable t) {
+        if (r instanceof TimedTask) {
+            executionTime.record(System.nanoTime() - ((TimedTask) r).startNanos);
+        }
+        if (t != null) {
+            failed.increment();
+        }
+        super.afterExecute(r, t);
+    }
+
+    @Override
+    public void setRejectedExecutionHandler(RejectedExecutionHandler handler) {
+        super.setRejectedExecutionHandler(new CountingRejectedExecutionHandler(handler));
+    }
+
+    @Override
+    public RejectedExecutionHandler getRejectedExecutionHandler() {
+        return ((CountingRejectedExecutionHandler) super.getRejectedExecutionHandler()).delegate;
+    }
+
+    /**
+     * 큐에 남아 있던 태스크를 감싸기 전의 원래 태스크로 돌려준다.
+     */
+    @Override
+    public List<Runnable> shutdownNow() {
+        List<Runnable> tasks = super.shutdownNow();
+        List<Runnable> unwrapped = new ArrayList<>(tasks.size());
+        for (Runnable task : tasks) {
+            unwrapped.add(unwrap(task));
+        }
+        return unwrapped;
+    }
+
+    /**
+     * 큐에는 TimedTask 로 감싸서 넣었으므로 감싼 태스크를 찾아 지운다.
+     */
+    @Override
+    public boolean remove(Runnable task) {
+        if (super.remove(task)) {
+            return true;
+        }
+        for (Runnable queued : getQueue()) {
+            if (queued instanceof TimedTask && ((TimedTask) queued).delegate == task) {
+                return super.remove(queued);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 감싼 채로는 취소된 Future 인지 알 수 없으므로 풀어서 확인한다.
+     */
+    @Override
+    public void purge() {
+        for (Runnable queued : getQueue()) {
+            Runnable task = unwrap(queued);
+            if (task instanceof Future && ((Future<?>) task).isCancelled()) {
+                super.remove(queued);
+            }
+        }
+    }
+
+    static Runnable unwrap(Runnable r) {
+        return r instanceof TimedTask ? ((TimedTask) r).delegate : r;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Iterable<Tag> tags = Tags.of("name", name);
+
+        for (double quantile : PUBLISHED_QUANTILES) {
+            Iterable<Tag> quantileTags = Tags.concat(tags, "quantile", Double.toString(quantile));
+            TimeGauge.builder("executor.queue.wait", recentQueueWait, TimeUnit.NANOSECONDS,
+                    recent -> recent.get().percentileNanos(quantile))
+                    .tags(quantileTags)
+                    .description("Time tasks spent in the queue before starting, over the last gauge window")
+                    .register(registry);
+            TimeGauge.builder("executor.execution", recentExecutionTime, TimeUnit.NANOSECONDS,
+                    recent -> recent.get().percentileNanos(quantile))
+                    .tags(quantileTags)
+                    .description("Time tasks spent running, over the last gauge window")
+                    .register(registry);
+        }
+        TimeGauge.builder("executor.queue.wait.max", recentQueueWait, TimeUnit.NANOSECONDS,
+                recent -> recent.get().percentileNanos(1.0))
+                .tags(tags).register(registry);
+        TimeGauge.builder("executor.execution.max", recentExecutionTime, TimeUnit.NANOSECONDS,
+                recent -> recent.get().percentileNanos(1.0))
+                .tags(tags).register(registry);
+
+        FunctionCounter.builder("executor.completed", this, ThreadPoolExecutor::getCompletedTaskCount)
+                .tags(tags).register(registry);
+        FunctionCounter.builder("executor.rejected", this, InstrumentedThreadPoolExecutor::getRejectedCount)
+                .tags(tags).register(registry);
+        FunctionCounter.builder("executor.failed", this, InstrumentedThreadPoolExecutor::getFailedCount)
+                .tags(tags).register(registry);
+
+        Gauge.builder("executor.active", this, ThreadPoolExecutor::getActiveCount)
+                .tags(tags).register(registry);
+        Gauge.builder("executor.pool.size", this, ThreadPoolExecutor::getPoolSize)
+                .tags(tags).register(registry);
+        Gauge.builder("executor.queued", this, e -> e.getQueue().size())
+                .tags(tags).register(registry);
+    }
+
+    /**
+     * 직전 window 동안 기록된 값만의 스냅샷. 읽을 때 window 가 지났으면 새로 뜬다.
+     */
+    private final class RecentSnapshot {
+
+        private final LatencyHistogram histogram;
+        private LatencyHistogram.Snapshot windowStart;
+        private LatencyHistogram.Snapshot recent;
+        private long rotatedAt;
+
+        RecentSnapshot(LatencyHistogram histogram) {
+            this.histogram = histogram;
+            this.windowStart = histogram.snapshot();
+            this.recent = windowStart.since(windowStart);
+            this.rotatedAt = System.nanoTime();
+        }
+
+        synchronized LatencyHistogram.Snapshot get() {
+            long now = System.nanoTime();
+            if (now - rotatedAt >= gaugeWindowNanos) {
+                LatencyHistogram.Snapshot current = histogram.snapshot();
+                recent = current.since(windowStart);
+                windowStart = current;
+                rotatedAt = now;
+            }
+            return recent;
+        }
+    }
+
+    /**
+     * 제출 시각을 함께 들고 있는 태스크
+     */
+    static final class TimedTask implements Runnable {
+
+        final Runnable delegate;
+        final long submitNanos;
+        long startNanos;
+
+        TimedTask(Runnable delegate, long submitNanos) {
+            this.delegate = delegate;
+            this.submitNanos = submitNanos;
+        }
+
+        @Override
+        public void run() {
+            delegate.run();
+        }
+
+        @Override
+        public String toString() {
+            return delegate.toString();
+        }
+    }
+
+    private final class CountingRejectedExecutionHandler implements RejectedExecutionHandler {
+
+        private final RejectedExecutionHandler delegate;
+
+        CountingRejectedExecutionHandler(RejectedExecutionHandler delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+            rejected.increment();
+            delegate.rejectedExecution(r, executor);
+        }
+    }
+}
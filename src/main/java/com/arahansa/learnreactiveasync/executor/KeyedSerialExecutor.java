@@ -0,0 +1,200 @@
+package com.arahansa.learnreactiveasync.executor;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.BiFunction;
+
+/**
+ * 같은 key 의 태스크는 넣은 순서대로 하나씩, 다른 key 의 태스크는 병렬로 실행한다. 실제 실행은 공유 Executor 가 한다.
+ *
+ * Exeuctors_newSingleThreadExecutior 처럼 엔티티마다 단일 스레드 executor 를 두면 엔티티 수만큼 스레드가 생긴다.
+ * 여기서는 key 마다 작은 큐만 두고, 그 key 의 태스크를 실행 중인 러너는 많아야 하나만 delegate 에 올라가 있게 한다.
+ * 러너는 한 번에 maxBatch 개까지 실행하고, 남은 게 있으면 delegate 에 자신을 다시 넣어 다른 key 에게도 차례를 준다.
+ *
+ * key 의 큐가 비면 맵에서 바로 지우므로, 메모리는 key 의 총 개수가 아니라 지금 밀려 있는 key 수에만 비례한다.
+ * 큐는 태스크마다 노드 하나인 연결 리스트라서 key 가 새로 밀릴 때 배열을 할당하지 않는다.
+ * 러너는 리스트를 통째로 떼어 와서 복사 없이 앞에서부터 실행한다.
+ * 큐의 상태는 모두 ConcurrentHashMap.compute 안에서만 바꾸므로 따로 락이 없다.
+ */
+@Slf4j
+public class KeyedSerialExecutor<K> {
+
+    public static final int DEFAULT_MAX_BATCH = 16;
+
+    private final Executor delegate;
+    private final int maxBatch;
+    private final ConcurrentHashMap<K, SerialQueue> queues = new ConcurrentHashMap<>();
+
+    // 러너가 부르는 compute 함수들. 호출마다 람다를 만들지 않도록 한 번만 만들어 둔다.
+    private final BiFunction<K, SerialQueue, SerialQueue> detach = (k, queue) -> {
+        queue.pending = queue.head;
+        queue.head = null;
+        queue.tail = null;
+        return queue;
+    };
+    // 비었으면 지운다. 다음 태스크는 새 큐로 시작하는데, 이 러너는 이미 끝났으므로 순서가 섞이지 않는다.
+    private final BiFunction<K, SerialQueue, SerialQueue> removeIfDrained =
+            (k, queue) -> queue.pending == null && queue.head == null ? null : queue;
+
+    public KeyedSerialExecutor(Executor delegate) {
+        this(delegate, DEFAULT_MAX_BATCH);
+    }
+
+    public KeyedSerialExecutor(Executor delegate, int maxBatch) {
+        if (maxBatch < 1) {
+            throw new IllegalArgumentException("maxBatch must be positive: " + maxBatch);
+        }
+        this.delegate = delegate;
+        this.maxBatch = maxBatch;
+    }
+
+    /**
+     * 실패는 로그로만 남고 같은 key 의 다음 태스크는 그대로 실행된다.
+     */
+    public void execute(K key, Runnable task) {
+        if (task == null) {
+            throw new NullPointerException();
+        }
+        Node node = new Node(task);
+        boolean[] started = new boolean[1];
+        SerialQueue current = queues.compute(key, (k, queue) -> {
+            if (queue == null) {
+                queue = new SerialQueue(k);
+            }
+            queue.add(node);
+            if (!queue.scheduled) {
+                queue.scheduled = true;
+                started[0] = true;
+            }
+            return queue;
+        });
+        if (started[0] && !current.schedule()) {
+            throw new RejectedExecutionException("delegate rejected tasks for key " + key);
+        }
+    }
+
+    public <T> CompletableFuture<T> submit(K key, Callable<T> task) {
+        SubmittedTask<T> submitted = new SubmittedTask<>(task);
+        execute(key, submitted);
+        return submitted.result;
+    }
+
+    /**
+     * 밀린 태스크가 있거나 실행 중인 key 수
+     */
+    public int getActiveKeyCount() {
+        return queues.size();
+    }
+
+    private static final class Node {
+        final Runnable task;
+        Node next;
+
+        Node(Runnable task) {
+            this.task = task;
+        }
+    }
+
+    private final class SerialQueue implements Runnable {
+
+        private final K key;
+        // 아래 세 필드는 queues.compute 안에서만 읽고 쓴다.
+        private Node head;
+        private Node tail;
+        private boolean scheduled;
+        // 떼어 왔지만 아직 실행하지 않은 태스크. 러너는 하나뿐이므로 러너만 쓴다. 러너 사이는 delegate.execute 로 이어진다.
+        private Node pending;
+
+        SerialQueue(K key) {
+            this.key = key;
+        }
+
+        void add(Node node) {
+            if (tail == null) {
+                head = node;
+            } else {
+                tail.next = node;
+            }
+            tail = node;
+        }
+
+        @Override
+        public void run() {
+            if (pending == null) {
+                queues.computeIfPresent(key, detach);
+            }
+            for (int i = 0; i < maxBatch && pending != null; i++) {
+                Node node = pending;
+                pending = node.next;
+                node.next = null;
+                try {
+                    node.task.run();
+                } catch (Throwable t) {
+                    log.warn("task for key {} failed", key, t);
+                }
+            }
+            if (queues.computeIfPresent(key, removeIfDrained) != null) {
+                schedule();
+            }
+        }
+
+        /**
+         * @return delegate 가 거절했으면 false
+         */
+        boolean schedule() {
+            try {
+                delegate.execute(this);
+                return true;
+            } catch (RejectedExecutionException e) {
+                // 러너를 올릴 수 없으면 이 key 의 남은 태스크는 실행되지 않는다. 결과를 기다리는 쪽은 실패로 끝낸다.
+                Node[] queued = new Node[1];
+                queues.computeIfPresent(key, (k, queue) -> {
+                    queued[0] = queue.head;
+                    return null;
+                });
+                int dropped = fail(pending, e) + fail(queued[0], e);
+                pending = null;
+                log.warn("delegate rejected key {}, dropped {} tasks", key, dropped, e);
+                return false;
+            }
+        }
+
+        private int fail(Node node, RejectedExecutionException e) {
+            int count = 0;
+            for (; node != null; node = node.next) {
+                if (node.task instanceof SubmittedTask) {
+                    ((SubmittedTask<?>) node.task).result.completeExceptionally(e);
+                }
+                count++;
+            }
+            return count;
+        }
+    }
+
+    private static final class SubmittedTask<T> implements Runnable {
+
+        private final Callable<T> task;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+
+        SubmittedTask(Callable<T> task) {
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            if (result.isDone()) {
+                return;
+            }
+            try {
+                result.complete(task.call());
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+            }
+        }
+    }
+}
@@ -0,0 +1,437 @@
+package com.arahansa.learnreactiveasync.executor;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Predicate;
+
+/**
+ * 미리 할당한 배열 위의 lock-free 유한 큐. ThreadPoolExecutor 의 workQueue 로 그대로 쓸 수 있다.
+ *
+ * LinkedBlockingQueue 는 태스크마다 노드를 만들고 offer/poll 마다 락을 잡는다.
+ * 여기서는 Dmitry Vyukov 의 bounded MPMC 큐처럼 칸마다 sequence 를 두고, 생산자는 tail 을, 소비자는 head 를 CAS 로 한 칸씩 가져간다.
+ * 생산자/소비자 수에 제한이 없으므로 MPSC, SPMC 로도 쓸 수 있다. head 와 tail 은 서로 다른 캐시 라인에 둔다.
+ *
+ * 막혀야 하는 put/take 는 먼저 spins 번 다시 시도하고 (절반이 지나면 yield), 그래도 안 되면 대기열에 자신을 넣고 park 한다.
+ * 반대쪽은 offer/poll 에 성공할 때마다 대기열에서 하나를 꺼내 unpark 한다. 대기하는 스레드가 없으면 비용은 빈 큐 확인 한 번이다.
+ *
+ * 중간의 원소는 칸을 옮기지 않고 TOMBSTONE 으로 CAS 해서 지운다. poll 과 peek 은 head 에 온 TOMBSTONE 을 꺼내 버리고 다음 칸을 본다.
+ * ThreadPoolExecutor 는 shutdown 과 겹친 execute, shutdownNow, remove, purge 에서 remove(Object) 를 부르므로 지원해야 한다.
+ * poll 과 peek 은 생산자가 자리를 잡고 아직 채우지 않은 칸을 비었다고 보지 않고 기다린다. 그래야 drainTo 가 끝난 뒤에 남는 원소가 없다.
+ * 지운 칸은 poll 이 지나갈 때까지 자리를 차지하므로 remainingCapacity 에는 바로 돌아오지 않는다. iterator 는 그 시점의 스냅샷이다.
+ */
+public class RingBufferBlockingQueue<E> extends AbstractQueue<E> implements BlockingQueue<E> {
+
+    public static final int DEFAULT_SPINS = 128;
+
+    // 한 캐시 라인(64 byte)보다 넉넉히 띄운다.
+    private static final int PAD = 16;
+    private static final int HEAD = PAD;
+    private static final int TAIL = PAD * 2;
+
+    private static final Object TOMBSTONE = new Object();
+
+    private final int capacity;
+    private final int mask;
+    private final int spins;
+    private final AtomicReferenceArray<Object> buffer;
+    private final AtomicLongArray sequences;
+    private final AtomicLongArray cursors = new AtomicLongArray(PAD * 3);
+    // 아직 poll 이 지나가지 않은 TOMBSTONE 수. size 에서 뺀다.
+    private final AtomicInteger tombstones = new AtomicInteger();
+
+    private final Queue<Thread> notEmptyWaiters = new ConcurrentLinkedQueue<>();
+    private final Queue<Thread> notFullWaiters = new ConcurrentLinkedQueue<>();
+
+    /**
+     * @param capacity 2 의 거듭제곱으로 올림한다. sequence 가 한 바퀴와 구별되어야 하므로 최소 2 이다.
+     */
+    public RingBufferBlockingQueue(int capacity) {
+        this(capacity, DEFAULT_SPINS);
+    }
+
+    /**
+     * @param spins park 하기 전에 다시 시도하는 횟수. 0 이면 바로 park 한다.
+     */
+    public RingBufferBlockingQueue(int capacity, int spins) {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("invalid capacity: " + capacity);
+        }
+        if (spins < 0) {
+            throw new IllegalArgumentException("spins must not be negative: " + spins);
+        }
+        this.capacity = capacity <= 2 ? 2 : Integer.highestOneBit(capacity - 1) << 1;
+        this.mask = this.capacity - 1;
+        this.spins = spins;
+        this.buffer = new AtomicReferenceArray<>(this.capacity);
+        this.sequences = new AtomicLongArray(this.capacity);
+        for (int i = 0; i < this.capacity; i++) {
+            sequences.lazySet(i, i);
+        }
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    @Override
+    public boolean offer(E e) {
+        if (e == null) {
+            throw new NullPointerException();
+        }
+        long pos = cursors.get(TAIL);
+        for (;;) {
+            int index = (int) pos & mask;
+            long diff = sequences.get(index) - pos;
+            if (diff == 0) {
+                if (cursors.compareAndSet(TAIL, pos, pos + 1)) {
+                    buffer.lazySet(index, e);
+                    // volatile 쓰기여야 아래 대기열 확인과 순서가 뒤바뀌지 않는다.
+                    sequences.set(index, pos + 1);
+                    signal(notEmptyWaiters);
+                    return true;
+                }
+                pos = cursors.get(TAIL);
+            } else if (diff < 0) {
+                // 한 바퀴 전 원소를 아직 아무도 꺼내지 않았다.
+                return false;
+            } else {
+                pos = cursors.get(TAIL);
+            }
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E poll() {
+        long pos = cursors.get(HEAD);
+        for (;;) {
+            int index = (int) pos & mask;
+            long diff = sequences.get(index) - (pos + 1);
+            if (diff == 0) {
+                if (cursors.compareAndSet(HEAD, pos, pos + 1)) {
+                    // remove 가 같은 칸을 CAS 하므로 getAndSet 으로 한쪽만 가져가게 한다.
+                    Object e = release(index, pos);
+                    if (e != TOMBSTONE) {
+                        return (E) e;
+                    }
+                }
+                pos = cursors.get(HEAD);
+            } else if (diff < 0) {
+                if (!inFlight(pos)) {
+                    return null;
+                }
+                pos = cursors.get(HEAD);
+            } else {
+                pos = cursors.get(HEAD);
+            }
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E peek() {
+        for (;;) {
+            long pos = cursors.get(HEAD);
+            int index = (int) pos & mask;
+            if (sequences.get(index) != pos + 1) {
+                if (!inFlight(pos)) {
+                    return null;
+                }
+                continue;
+            }
+            Object e = buffer.get(index);
+            if (e == TOMBSTONE) {
+                // 지워진 칸이 앞을 막고 있으면 대신 꺼내 버린다.
+                if (cursors.compareAndSet(HEAD, pos, pos + 1)) {
+                    release(index, pos);
+                }
+                continue;
+            }
+            // 읽는 사이 누가 꺼내 갔으면 다시 본다.
+            if (cursors.get(HEAD) == pos) {
+                return (E) e;
+            }
+        }
+    }
+
+    /**
+     * 생산자가 tail 을 가져갔지만 아직 sequence 를 올리지 않은 칸이면 잠깐 양보하고 true 를 돌려준다.
+     * 여기서 빈 큐라고 답하면 뒤따라 들어온 원소까지 drainTo 가 놓쳐서, shutdownNow 가 돌려주지도 실행하지도 않는 태스크가 남는다.
+     */
+    private boolean inFlight(long pos) {
+        if (cursors.get(TAIL) <= pos) {
+            return false;
+        }
+        Thread.yield();
+        return true;
+    }
+
+    /**
+     * head 를 가져간 칸을 비우고 한 바퀴 뒤의 생산자에게 넘긴다.
+     */
+    private Object release(int index, long pos) {
+        Object e = buffer.getAndSet(index, null);
+        sequences.set(index, pos + capacity);
+        signal(notFullWaiters);
+        if (e == TOMBSTONE) {
+            tombstones.decrementAndGet();
+        }
+        return e;
+    }
+
+    @Override
+    public void put(E e) throws InterruptedException {
+        awaitOffer(e, false, 0L);
+    }
+
+    @Override
+    public boolean offer(E e, long timeout, TimeUnit unit) throws InterruptedException {
+        return awaitOffer(e, true, unit.toNanos(timeout));
+    }
+
+    @Override
+    public E take() throws InterruptedException {
+        return awaitPoll(false, 0L);
+    }
+
+    @Override
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        return awaitPoll(true, unit.toNanos(timeout));
+    }
+
+    private boolean awaitOffer(E e, boolean timed, long nanos) throws InterruptedException {
+        if (offer(e)) {
+            return true;
+        }
+        if (timed && nanos <= 0) {
+            return false;
+        }
+        long deadline = System.nanoTime() + nanos;
+        for (int i = 0; i < spins; i++) {
+            backoff(i);
+            if (offer(e)) {
+                return true;
+            }
+        }
+        Thread me = Thread.currentThread();
+        for (;;) {
+            notFullWaiters.add(me);
+            if (offer(e)) {
+                leave(notFullWaiters, me, remainingCapacity() > 0);
+                return true;
+            }
+            if (!park(timed, deadline)) {
+                leave(notFullWaiters, me, remainingCapacity() > 0);
+                return false;
+            }
+            if (Thread.interrupted()) {
+                leave(notFullWaiters, me, remainingCapacity() > 0);
+                throw new InterruptedException();
+            }
+            notFullWaiters.remove(me);
+        }
+    }
+
+    private E awaitPoll(boolean timed, long nanos) throws InterruptedException {
+        E e = poll();
+        if (e != null || (timed && nanos <= 0)) {
+            return e;
+        }
+        long deadline = System.nanoTime() + nanos;
+        for (int i = 0; i < spins; i++) {
+            backoff(i);
+            if ((e = poll()) != null) {
+                return e;
+            }
+        }
+        Thread me = Thread.currentThread();
+        for (;;) {
+            notEmptyWaiters.add(me);
+            if ((e = poll()) != null) {
+                leave(notEmptyWaiters, me, !isEmpty());
+                return e;
+            }
+            if (!park(timed, deadline)) {
+                leave(notEmptyWaiters, me, !isEmpty());
+                return null;
+            }
+            if (Thread.interrupted()) {
+                leave(notEmptyWaiters, me, !isEmpty());
+                throw new InterruptedException();
+            }
+            notEmptyWaiters.remove(me);
+        }
+    }
+
+    private void backoff(int attempt) {
+        if (attempt >= spins / 2) {
+            Thread.yield();
+        }
+    }
+
+    /**
+     * @return 시간이 다 됐으면 false
+     */
+    private boolean park(boolean timed, long deadline) {
+        if (!timed) {
+            LockSupport.park(this);
+            return true;
+        }
+        long nanos = deadline - System.nanoTime();
+        if (nanos <= 0) {
+            return false;
+        }
+        LockSupport.parkNanos(this, nanos);
+        return true;
+    }
+
+    private static void signal(Queue<Thread> waiters) {
+        Thread waiter = waiters.poll();
+        if (waiter != null) {
+            LockSupport.unpark(waiter);
+        }
+    }
+
+    /**
+     * 대기열에서 빠진다. 이미 누가 꺼내 갔다면 신호를 받은 것인데,
+     * 그 신호를 쓰지 않고 나가는 경우가 있으므로 아직 조건이 맞으면 다른 대기자에게 넘긴다.
+     */
+    private static void leave(Queue<Thread> waiters, Thread me, boolean stillReady) {
+        if (!waiters.remove(me) && stillReady) {
+            signal(waiters);
+        }
+    }
+
+    @Override
+    public int size() {
+        return Math.max(0, occupied() - tombstones.get());
+    }
+
+    /**
+     * TOMBSTONE 을 포함해 차지하고 있는 칸 수.
+     */
+    private int occupied() {
+        for (;;) {
+            long head = cursors.get(HEAD);
+            long tail = cursors.get(TAIL);
+            if (cursors.get(HEAD) == head) {
+                return (int) Math.max(0, Math.min(capacity, tail - head));
+            }
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return peek() == null;
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return capacity - occupied();
+    }
+
+    /**
+     * head 부터 처음으로 equals 가 맞는 원소를 TOMBSTONE 으로 바꾼다.
+     * removeAll, retainAll, removeIf 는 iterator 의 remove 를 거쳐 같은 경로로 지운다.
+     */
+    @Override
+    public boolean remove(Object o) {
+        return o != null && removeFirst(o::equals);
+    }
+
+    private boolean removeFirst(Predicate<Object> matcher) {
+        long head = cursors.get(HEAD);
+        long tail = cursors.get(TAIL);
+        for (long pos = head; pos < tail; pos++) {
+            int index = (int) pos & mask;
+            if (sequences.get(index) != pos + 1) {
+                continue;
+            }
+            Object e = buffer.get(index);
+            // 그 사이 칸이 꺼내졌거나 다른 원소로 바뀌었으면 CAS 가 실패하고 다음 칸으로 넘어간다.
+            if (e != null && e != TOMBSTONE && matcher.test(e) && buffer.compareAndSet(index, e, TOMBSTONE)) {
+                tombstones.incrementAndGet();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c, int maxElements) {
+        if (c == this) {
+            throw new IllegalArgumentException();
+        }
+        int n = 0;
+        E e;
+        while (n < maxElements && (e = poll()) != null) {
+            c.add(e);
+            n++;
+        }
+        return n;
+    }
+
+    /**
+     * 호출한 시점에 들어 있던 원소의 스냅샷. 원소를 읽는 사이 꺼내진 칸은 건너뛴다.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public Iterator<E> iterator() {
+        List<E> snapshot = new ArrayList<>();
+        long head = cursors.get(HEAD);
+        long tail = cursors.get(TAIL);
+        for (long pos = head; pos < tail; pos++) {
+            int index = (int) pos & mask;
+            if (sequences.get(index) != pos + 1) {
+                continue;
+            }
+            Object e = buffer.get(index);
+            if (e != null && e != TOMBSTONE && sequences.get(index) == pos + 1) {
+                snapshot.add((E) e);
+            }
+        }
+        Iterator<E> it = snapshot.iterator();
+        return new Iterator<E>() {
+            private E last;
+
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public E next() {
+                return last = it.next();
+            }
+
+            /**
+             * 스냅샷이 아니라 큐에서 같은 원소 (==) 를 지운다. 이미 꺼내졌으면 아무 일도 없다.
+             */
+            @Override
+            public void remove() {
+                if (last == null) {
+                    throw new IllegalStateException();
+                }
+                E e = last;
+                last = null;
+                removeFirst(x -> x == e);
+            }
+        };
+    }
+}
@@ -0,0 +1,55 @@
+package com.arahansa.learnreactiveasync.forkjoin;
+
+import java.util.Objects;
+
+/**
+ * 자식을 HashSet 대신 배열로 들고 있는 불변 트리 노드.
+ *
+ * J01_ExecutorSample.TreeNode 와 값은 같지만, 생성할 때 서브트리의 노드 수(size)를 함께 계산해 둔다.
+ * TreeAggregateTask 는 이 값으로 작은 서브트리를 묶어서 하나의 태스크로 처리한다.
+ * 자식부터 만들어야 부모를 만들 수 있으므로 size 계산에는 재귀가 필요 없다.
+ */
+public final class ArrayTreeNode {
+
+    private static final ArrayTreeNode[] NO_CHILDREN = new ArrayTreeNode[0];
+
+    private final int value;
+    private final ArrayTreeNode[] children;
+    private final int size;
+
+    /**
+     * children 배열은 복사하지 않고 그대로 사용하므로 넘긴 뒤에는 수정하지 않아야 한다.
+     */
+    public ArrayTreeNode(int value, ArrayTreeNode... children) {
+        this.value = value;
+        this.children = children.length == 0 ? NO_CHILDREN : children;
+        long size = 1;
+        for (ArrayTreeNode child : this.children) {
+            size += Objects.requireNonNull(child, "child").size;
+        }
+        this.size = (int) Math.min(Integer.MAX_VALUE, size);
+    }
+
+    public int getValue() {
+        return value;
+    }
+
+    public int getChildCount() {
+        return children.length;
+    }
+
+    public ArrayTreeNode getChild(int index) {
+        return children[index];
+    }
+
+    /**
+     * 자신을 포함한 서브트리의 노드 수. Integer.MAX_VALUE 에서 멈춘다.
+     */
+    public int size() {
+        return size;
+    }
+
+    ArrayTreeNode[] children() {
+        return children;
+    }
+}
@@ -0,0 +1,167 @@
+package com.arahansa.learnreactiveasync.forkjoin;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * 노드 객체 대신 int 배열로 표현한 트리 (structure of arrays).
+ *
+ * 노드는 너비 우선 순서로 번호를 매기기 때문에 한 노드의 자식들은 [firstChild, firstChild + childCount) 로 연속되고,
+ * 같은 레벨의 노드들도 [levelStart[l], levelStart[l + 1]) 로 연속된다.
+ * 노드 하나에 int 세 개만 쓰므로 TreeNode 처럼 노드마다 객체와 Set 을 두는 것보다 훨씬 작고,
+ * 집계할 때 포인터를 따라가지 않고 배열을 순서대로 읽는다.
+ */
+public final class FlatTree {
+
+    private final int[] values;
+    private final int[] firstChild;
+    private final int[] childCount;
+    private final int[] levelStart;
+
+    private FlatTree(int[] values, int[] firstChild, int[] childCount, int[] levelStart) {
+        this.values = values;
+        this.firstChild = firstChild;
+        this.childCount = childCount;
+        this.levelStart = levelStart;
+    }
+
+    public static FlatTree of(ArrayTreeNode root) {
+        return from(root, ArrayTreeNode::getValue, node -> Arrays.asList(node.children()));
+    }
+
+    /**
+     * 임의의 노드 타입으로부터 만든다. 예를 들어 J01_ExecutorSample.TreeNode 는
+     * {@code FlatTree.from(tree, node -> node.value, node -> node.children)} 로 바꿀 수 있다.
+     */
+    public static <N> FlatTree from(N root, ToIntFunction<? super N> value,
+                                    Function<? super N, ? extends Iterable<? extends N>> children) {
+        List<N> order = new ArrayList<>();
+        int[] values = new int[16];
+        int[] firstChild = new int[16];
+        int[] childCount = new int[16];
+        int[] levelStart = new int[8];
+        int levels = 0;
+
+        order.add(root);
+        levelStart[levels++] = 0;
+        int levelEnd = 1;
+        for (int i = 0; i < order.size(); i++) {
+            if (i == levelEnd) {
+                if (levels + 1 == levelStart.length) {
+                    levelStart = Arrays.copyOf(levelStart, levels * 2);
+                }
+                levelStart[levels++] = i;
+                levelEnd = order.size();
+            }
+            if (i == values.length) {
+                values = Arrays.copyOf(values, i * 2);
+                firstChild = Arrays.copyOf(firstChild, i * 2);
+                childCount = Arrays.copyOf(childCount, i * 2);
+            }
+            N node = order.get(i);
+            order.set(i, null);
+            values[i] = value.applyAsInt(node);
+            firstChild[i] = order.size();
+            for (N child : children.apply(node)) {
+                order.add(child);
+            }
+            childCount[i] = order.size() - firstChild[i];
+        }
+        int size = order.size();
+        levelStart[levels] = size;
+        return new FlatTree(Arrays.copyOf(values, size), Arrays.copyOf(firstChild, size),
+                Arrays.copyOf(childCount, size), Arrays.copyOf(levelStart, levels + 1));
+    }
+
+    public int size() {
+        return values.length;
+    }
+
+    public int levels() {
+        return levelStart.length - 1;
+    }
+
+    public int value(int node) {
+        return values[node];
+    }
+
+    public int firstChild(int node) {
+        return firstChild[node];
+    }
+
+    public int childCount(int node) {
+        return childCount[node];
+    }
+
+    public int levelStart(int level) {
+        return levelStart[level];
+    }
+
+    /**
+     * CountingTask 와 같은 값. 전체 노드 값의 합이다.
+     */
+    public long sum(ForkJoinPool pool) {
+        return subtreeSums(pool)[0];
+    }
+
+    /**
+     * 노드별 서브트리 합을 가장 깊은 레벨부터 위로 올라가며 계산한다.
+     * 한 레벨 안의 노드들은 서로 독립이라서 레벨 단위로 병렬 처리하고, 다음 레벨로 가기 전에 기다린다.
+     */
+    public long[] subtreeSums(ForkJoinPool pool) {
+        long[] sums = new long[values.length];
+        for (int level = levels() - 1; level >= 0; level--) {
+            int from = levelStart[level];
+            int to = levelStart[level + 1];
+            int threshold = ForkJoinThresholds.of(to - from, pool);
+            if (to - from <= threshold) {
+                sumLevel(sums, from, to);
+            } else {
+                pool.invoke(new LevelTask(sums, from, to, threshold));
+            }
+        }
+        return sums;
+    }
+
+    private void sumLevel(long[] sums, int from, int to) {
+        for (int i = from; i < to; i++) {
+            long sum = values[i];
+            for (int c = firstChild[i], end = c + childCount[i]; c < end; c++) {
+                sum += sums[c];
+            }
+            sums[i] = sum;
+        }
+    }
+
+    private final class LevelTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final long[] sums;
+        private final int from;
+        private final int to;
+        private final int threshold;
+
+        LevelTask(long[] sums, int from, int to, int threshold) {
+            this.sums = sums;
+            this.from = from;
+            this.to = to;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= threshold) {
+                sumLevel(sums, from, to);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new LevelTask(sums, from, mid, threshold), new LevelTask(sums, mid, to, threshold));
+        }
+    }
+}
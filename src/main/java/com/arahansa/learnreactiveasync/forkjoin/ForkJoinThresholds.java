@@ -0,0 +1,28 @@
+package com.arahansa.learnreactiveasync.forkjoin;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * 포크조인 태스크의 분할 임계값 계산.
+ *
+ * 고정된 THRESHOLD (예: J01_ForkJoin 의 20) 대신 배열 길이와 풀의 병렬도로 리프 크기를 정한다.
+ * 워커 하나당 LEAVES_PER_WORKER 개 정도의 리프가 생기도록 나누고, 너무 작은 리프는 만들지 않는다.
+ */
+public final class ForkJoinThresholds {
+
+    static final int LEAVES_PER_WORKER = 8;
+    static final int MIN_THRESHOLD = 1 << 12;
+
+    private ForkJoinThresholds() {
+    }
+
+    public static int of(long length, int parallelism) {
+        long leaves = (long) Math.max(1, parallelism) * LEAVES_PER_WORKER;
+        long threshold = (length + leaves - 1) / leaves;
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(MIN_THRESHOLD, threshold));
+    }
+
+    public static int of(long length, ForkJoinPool pool) {
+        return of(length, pool.getParallelism());
+    }
+}
@@ -0,0 +1,132 @@
+package com.arahansa.learnreactiveasync.forkjoin;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * 리틀엔디안 int 가 연속으로 저장된 바이너리 파일을 메모리 맵으로 읽는다.
+ *
+ * MappedByteBuffer 하나는 2GB 를 넘을 수 없기 때문에 파일을 segmentInts 크기의 구간으로 나누어 맵한다.
+ * 데이터는 힙으로 복사되지 않으므로 -Xmx 보다 큰 파일도 다룰 수 있다.
+ *
+ * 자바 8 에는 맵을 해제하는 공개 API 가 없어서, close() 는 채널만 닫고 맵은 GC 될 때 풀린다.
+ */
+public final class MappedIntFile implements AutoCloseable {
+
+    /** 기본 세그먼트 크기: 2^28 개의 int = 1GB */
+    public static final int DEFAULT_SEGMENT_SHIFT = 28;
+
+    private static final int MAX_SEGMENT_SHIFT = 28;
+
+    private final FileChannel channel;
+    private final IntBuffer[] segments;
+    private final int segmentShift;
+    private final long length;
+
+    private MappedIntFile(FileChannel channel, IntBuffer[] segments, int segmentShift, long length) {
+        this.channel = channel;
+        this.segments = segments;
+        this.segmentShift = segmentShift;
+        this.length = length;
+    }
+
+    public static MappedIntFile open(Path path) throws IOException {
+        return open(path, DEFAULT_SEGMENT_SHIFT);
+    }
+
+    /**
+     * @param segmentShift 세그먼트 하나에 담을 int 개수의 log2 값 (최대 28)
+     */
+    public static MappedIntFile open(Path path, int segmentShift) throws IOException {
+        if (segmentShift < 0 || segmentShift > MAX_SEGMENT_SHIFT) {
+            throw new IllegalArgumentException("segmentShift must be in [0, " + MAX_SEGMENT_SHIFT + "]: " + segmentShift);
+        }
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (size % Integer.BYTES != 0) {
+                throw new IllegalArgumentException(path + " size is not a multiple of " + Integer.BYTES + ": " + size);
+            }
+            long length = size / Integer.BYTES;
+            long segmentInts = 1L << segmentShift;
+            int count = (int) ((length + segmentInts - 1) >>> segmentShift);
+
+            IntBuffer[] segments = new IntBuffer[count];
+            for (int i = 0; i < count; i++) {
+                long first = (long) i << segmentShift;
+                long ints = Math.min(segmentInts, length - first);
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY,
+                        first * Integer.BYTES, ints * Integer.BYTES);
+                segments[i] = mapped.order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+            }
+            return new MappedIntFile(channel, segments, segmentShift, length);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 파일에 들어있는 int 의 개수
+     */
+    public long length() {
+        return length;
+    }
+
+    public int get(long index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("index: " + index + ", length: " + length);
+        }
+        return segments[(int) (index >>> segmentShift)].get((int) (index & segmentMask()));
+    }
+
+    /**
+     * RangeSumTask 와 같은 필터/맵으로 파일 전체를 합한다.
+     */
+    public long sum() {
+        return sum(ForkJoinPool.commonPool());
+    }
+
+    public long sum(ForkJoinPool pool) {
+        MappedRangeSumTask task = new MappedRangeSumTask(this, 0, length, ForkJoinThresholds.of(length, pool));
+        pool.invoke(task);
+        return task.getResult();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private long segmentMask() {
+        return (1L << segmentShift) - 1;
+    }
+
+    /**
+     * [from, to) 구간을 합한다. 구간이 세그먼트 경계를 넘으면 세그먼트별로 나누어 읽는다.
+     * 절대 위치 get 만 사용하므로 여러 스레드가 같은 버퍼를 동시에 읽어도 된다.
+     */
+    long processing(long from, long to) {
+        long sum = 0;
+        long index = from;
+        while (index < to) {
+            IntBuffer segment = segments[(int) (index >>> segmentShift)];
+            int offset = (int) (index & segmentMask());
+            int end = (int) Math.min(segment.limit(), offset + (to - index));
+            for (int i = offset; i < end; i++) {
+                int a = segment.get(i);
+                if (a > 10 && a < 27) {
+                    sum += a * 10;
+                }
+            }
+            index += end - offset;
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,58 @@
+package com.arahansa.learnreactiveasync.forkjoin;
+
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * MappedIntFile 위에서 동작하는 RangeSumTask.
+ *
+ * int 배열 대신 파일 안의 int 인덱스 구간 [from, to) 을 long 으로 나누기 때문에
+ * Integer.MAX_VALUE 개를 넘는 파일도 나눌 수 있다.
+ */
+public class MappedRangeSumTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final MappedIntFile file;
+    private final long from;
+    private final long to;
+    private final int threshold;
+
+    private long result;
+
+    public MappedRangeSumTask(MappedIntFile file, long from, long to, int threshold) {
+        if (from < 0 || to > file.length() || from > to) {
+            throw new IndexOutOfBoundsException("from: " + from + ", to: " + to + ", length: " + file.length());
+        }
+        if (threshold < 1) {
+            throw new IllegalArgumentException("threshold must be positive: " + threshold);
+        }
+        this.file = file;
+        this.from = from;
+        this.to = to;
+        this.threshold = threshold;
+    }
+
+    public long getResult() {
+        return result;
+    }
+
+    @Override
+    protected void compute() {
+        if (to - from <= threshold) {
+            result = file.processing(from, to);
+            return;
+        }
+        long mid = (from + to) >>> 1;
+        MappedRangeSumTask left = new MappedRangeSumTask(file, from, mid, threshold);
+        MappedRangeSumTask right = new MappedRangeSumTask(file, mid, to, threshold);
+
+        right.fork();
+        left.compute();
+        if (right.tryUnfork()) {
+            right.compute();
+        } else {
+            right.join();
+        }
+        result = left.result + right.result;
+    }
+}
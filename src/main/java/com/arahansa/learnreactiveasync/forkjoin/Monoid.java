@@ -0,0 +1,39 @@
+package com.arahansa.learnreactiveasync.forkjoin;
+
+import java.util.Objects;
+import java.util.function.BinaryOperator;
+
+/**
+ * 항등원과 결합법칙을 만족하는 이항연산.
+ *
+ * 병렬 집계에서는 서브트리의 결과가 끝나는 순서대로 합쳐지므로 combine 은 교환법칙도 만족해야 한다.
+ */
+public interface Monoid<T> {
+
+    T identity();
+
+    T combine(T left, T right);
+
+    static <T> Monoid<T> of(T identity, BinaryOperator<T> combine) {
+        Objects.requireNonNull(combine);
+        return new Monoid<T>() {
+            @Override
+            public T identity() {
+                return identity;
+            }
+
+            @Override
+            public T combine(T left, T right) {
+                return combine.apply(left, right);
+            }
+        };
+    }
+
+    static Monoid<Long> longSum() {
+        return of(0L, Long::sum);
+    }
+
+    static Monoid<Integer> intMax() {
+        return of(Integer.MIN_VALUE, Math::max);
+    }
+}
@@ -0,0 +1,210 @@
+package com.arahansa.learnreactiveasync.forkjoin;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoublePredicate;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * double[] 를 위한 병렬 filter/map/reduce 파이프라인.
+ *
+ * J01_ForkJoin.CustomRecursiveTask 의 processing 처럼 리프마다 DoubleStream 을 만드는 대신,
+ * filter/map 체인을 배열에 담아두고 리프에서는 하나의 루프로 모든 단계를 적용한다.
+ * 리프에서는 객체를 만들지 않는다.
+ *
+ * 파이프라인은 불변이라서 한 번 만들어두고 여러 배열에 재사용할 수 있다.
+ * <pre>
+ * ParallelDoublePipeline pipeline = ParallelDoublePipeline.create()
+ *         .filter(a -> a > 10 && a < 27)
+ *         .map(a -> a * 10);
+ * double sum = pipeline.sum(arr);
+ * </pre>
+ */
+public final class ParallelDoublePipeline {
+
+    private static final byte FILTER = 0;
+    private static final byte MAP = 1;
+
+    private static final byte REDUCE = 0;
+    private static final byte COUNT = 1;
+
+    private final ForkJoinPool pool;
+    private final int threshold;
+    private final byte[] kinds;
+    private final DoublePredicate[] predicates;
+    private final DoubleUnaryOperator[] mappers;
+
+    private ParallelDoublePipeline(ForkJoinPool pool, int threshold, byte[] kinds,
+                                DoublePredicate[] predicates, DoubleUnaryOperator[] mappers) {
+        this.pool = pool;
+        this.threshold = threshold;
+        this.kinds = kinds;
+        this.predicates = predicates;
+        this.mappers = mappers;
+    }
+
+    public static ParallelDoublePipeline create() {
+        return on(ForkJoinPool.commonPool());
+    }
+
+    public static ParallelDoublePipeline on(ForkJoinPool pool) {
+        return new ParallelDoublePipeline(Objects.requireNonNull(pool), 0,
+                new byte[0], new DoublePredicate[0], new DoubleUnaryOperator[0]);
+    }
+
+    public ParallelDoublePipeline withPool(ForkJoinPool pool) {
+        return new ParallelDoublePipeline(Objects.requireNonNull(pool), threshold, kinds, predicates, mappers);
+    }
+
+    /**
+     * 리프 크기를 직접 지정한다. 0 이면 배열 길이와 풀의 병렬도로 정한다.
+     */
+    public ParallelDoublePipeline withThreshold(int threshold) {
+        if (threshold < 0) {
+            throw new IllegalArgumentException("threshold must not be negative: " + threshold);
+        }
+        return new ParallelDoublePipeline(pool, threshold, kinds, predicates, mappers);
+    }
+
+    public ParallelDoublePipeline filter(DoublePredicate predicate) {
+        return append(FILTER, Objects.requireNonNull(predicate), null);
+    }
+
+    public ParallelDoublePipeline map(DoubleUnaryOperator mapper) {
+        return append(MAP, null, Objects.requireNonNull(mapper));
+    }
+
+    private ParallelDoublePipeline append(byte kind, DoublePredicate predicate, DoubleUnaryOperator mapper) {
+        int n = kinds.length;
+        byte[] newKinds = Arrays.copyOf(kinds, n + 1);
+        DoublePredicate[] newPredicates = Arrays.copyOf(predicates, n + 1);
+        DoubleUnaryOperator[] newMappers = Arrays.copyOf(mappers, n + 1);
+        newKinds[n] = kind;
+        newPredicates[n] = predicate;
+        newMappers[n] = mapper;
+        return new ParallelDoublePipeline(pool, threshold, newKinds, newPredicates, newMappers);
+    }
+
+    /**
+     * op 는 결합법칙을 만족해야 하고 identity 는 op 의 항등원이어야 한다.
+     */
+    public double reduce(double[] array, double identity, DoubleBinaryOperator op) {
+        return reduce(array, 0, array.length, identity, op);
+    }
+
+    public double reduce(double[] array, int from, int to, double identity, DoubleBinaryOperator op) {
+        return run(array, from, to, REDUCE, identity, Objects.requireNonNull(op)).value;
+    }
+
+    /**
+     * 리프마다 더한 순서가 달라지므로 순차 합계와 마지막 자리까지 같지는 않을 수 있다.
+     */
+    public double sum(double[] array) {
+        return sum(array, 0, array.length);
+    }
+
+    public double sum(double[] array, int from, int to) {
+        return run(array, from, to, REDUCE, 0.0, Double::sum).value;
+    }
+
+    public long count(double[] array) {
+        return count(array, 0, array.length);
+    }
+
+    public long count(double[] array, int from, int to) {
+        return run(array, from, to, COUNT, 0, null).count;
+    }
+
+    private Task run(double[] array, int from, int to, byte mode, double identity, DoubleBinaryOperator op) {
+        if (from < 0 || to > array.length || from > to) {
+            throw new IndexOutOfBoundsException("from: " + from + ", to: " + to + ", length: " + array.length);
+        }
+        int leafSize = threshold > 0 ? threshold : ForkJoinThresholds.of(to - from, pool);
+        Task task = new Task(array, from, to, leafSize, mode, identity, op);
+        pool.invoke(task);
+        return task;
+    }
+
+    private final class Task extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final double[] array;
+        private final int from;
+        private final int to;
+        private final int leafSize;
+        private final byte mode;
+        private final double identity;
+        private final DoubleBinaryOperator op;
+
+        private double value;
+        private long count;
+
+        Task(double[] array, int from, int to, int leafSize, byte mode, double identity, DoubleBinaryOperator op) {
+            this.array = array;
+            this.from = from;
+            this.to = to;
+            this.leafSize = leafSize;
+            this.mode = mode;
+            this.identity = identity;
+            this.op = op;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= leafSize) {
+                leaf();
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            Task left = new Task(array, from, mid, leafSize, mode, identity, op);
+            Task right = new Task(array, mid, to, leafSize, mode, identity, op);
+
+            right.fork();
+            left.compute();
+            if (right.tryUnfork()) {
+                right.compute();
+            } else {
+                right.join();
+            }
+            if (mode == REDUCE) {
+                value = op.applyAsDouble(left.value, right.value);
+            } else {
+                count = left.count + right.count;
+            }
+        }
+
+        private void leaf() {
+            final byte[] kinds = ParallelDoublePipeline.this.kinds;
+            final DoublePredicate[] predicates = ParallelDoublePipeline.this.predicates;
+            final DoubleUnaryOperator[] mappers = ParallelDoublePipeline.this.mappers;
+            final int stages = kinds.length;
+
+            double acc = identity;
+            long accCount = 0;
+            elements:
+            for (int i = from; i < to; i++) {
+                double v = array[i];
+                for (int s = 0; s < stages; s++) {
+                    if (kinds[s] == FILTER) {
+                        if (!predicates[s].test(v)) {
+                            continue elements;
+                        }
+                    } else {
+                        v = mappers[s].applyAsDouble(v);
+                    }
+                }
+                if (mode == REDUCE) {
+                    acc = op.applyAsDouble(acc, v);
+                } else {
+                    accCount++;
+                }
+            }
+            value = acc;
+            count = accCount;
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package com.arahansa.learnreactiveasync.forkjoin;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntBinaryOperator;
+import java.util.function.IntPredicate;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * int[] 를 위한 병렬 filter/map/reduce 파이프라인.
+ *
+ * J01_ForkJoin.CustomRecursiveTask 의 processing 처럼 리프마다 IntStream 을 만드는 대신,
+ * filter/map 체인을 배열에 담아두고 리프에서는 하나의 루프로 모든 단계를 적용한다.
+ * 리프에서는 객체를 만들지 않는다.
+ *
+ * 파이프라인은 불변이라서 한 번 만들어두고 여러 배열에 재사용할 수 있다.
+ * <pre>
+ * ParallelIntPipeline pipeline = ParallelIntPipeline.create()
+ *         .filter(a -> a > 10 && a < 27)
+ *         .map(a -> a * 10);
+ * long sum = pipeline.sum(arr);
+ * </pre>
+ */
+public final class ParallelIntPipeline {
+
+    private static final byte FILTER = 0;
+    private static final byte MAP = 1;
+
+    private static final byte REDUCE = 0;
+    private static final byte SUM = 1;
+    private static final byte COUNT = 2;
+
+    private final ForkJoinPool pool;
+    private final int threshold;
+    private final byte[] kinds;
+    private final IntPredicate[] predicates;
+    private final IntUnaryOperator[] mappers;
+
+    private ParallelIntPipeline(ForkJoinPool pool, int threshold, byte[] kinds,
+                                IntPredicate[] predicates, IntUnaryOperator[] mappers) {
+        this.pool = pool;
+        this.threshold = threshold;
+        this.kinds = kinds;
+        this.predicates = predicates;
+        this.mappers = mappers;
+    }
+
+    public static ParallelIntPipeline create() {
+        return on(ForkJoinPool.commonPool());
+    }
+
+    public static ParallelIntPipeline on(ForkJoinPool pool) {
+        return new ParallelIntPipeline(Objects.requireNonNull(pool), 0,
+                new byte[0], new IntPredicate[0], new IntUnaryOperator[0]);
+    }
+
+    public ParallelIntPipeline withPool(ForkJoinPool pool) {
+        return new ParallelIntPipeline(Objects.requireNonNull(pool), threshold, kinds, predicates, mappers);
+    }
+
+    /**
+     * 리프 크기를 직접 지정한다. 0 이면 배열 길이와 풀의 병렬도로 정한다.
+     */
+    public ParallelIntPipeline withThreshold(int threshold) {
+        if (threshold < 0) {
+            throw new IllegalArgumentException("threshold must not be negative: " + threshold);
+        }
+        return new ParallelIntPipeline(pool, threshold, kinds, predicates, mappers);
+    }
+
+    public ParallelIntPipeline filter(IntPredicate predicate) {
+        return append(FILTER, Objects.requireNonNull(predicate), null);
+    }
+
+    public ParallelIntPipeline map(IntUnaryOperator mapper) {
+        return append(MAP, null, Objects.requireNonNull(mapper));
+    }
+
+    private ParallelIntPipeline append(byte kind, IntPredicate predicate, IntUnaryOperator mapper) {
+        int n = kinds.length;
+        byte[] newKinds = Arrays.copyOf(kinds, n + 1);
+        IntPredicate[] newPredicates = Arrays.copyOf(predicates, n + 1);
+        IntUnaryOperator[] newMappers = Arrays.copyOf(mappers, n + 1);
+        newKinds[n] = kind;
+        newPredicates[n] = predicate;
+        newMappers[n] = mapper;
+        return new ParallelIntPipeline(pool, threshold, newKinds, newPredicates, newMappers);
+    }
+
+    /**
+     * op 는 결합법칙을 만족해야 하고 identity 는 op 의 항등원이어야 한다.
+     */
+    public int reduce(int[] array, int identity, IntBinaryOperator op) {
+        return reduce(array, 0, array.length, identity, op);
+    }
+
+    public int reduce(int[] array, int from, int to, int identity, IntBinaryOperator op) {
+        return run(array, from, to, REDUCE, identity, Objects.requireNonNull(op)).value;
+    }
+
+    /**
+     * 결과를 long 으로 더하기 때문에 int 합계가 넘쳐도 안전하다.
+     */
+    public long sum(int[] array) {
+        return sum(array, 0, array.length);
+    }
+
+    public long sum(int[] array, int from, int to) {
+        return run(array, from, to, SUM, 0, null).wide;
+    }
+
+    public long count(int[] array) {
+        return count(array, 0, array.length);
+    }
+
+    public long count(int[] array, int from, int to) {
+        return run(array, from, to, COUNT, 0, null).wide;
+    }
+
+    private Task run(int[] array, int from, int to, byte mode, int identity, IntBinaryOperator op) {
+        if (from < 0 || to > array.length || from > to) {
+            throw new IndexOutOfBoundsException("from: " + from + ", to: " + to + ", length: " + array.length);
+        }
+        int leafSize = threshold > 0 ? threshold : ForkJoinThresholds.of(to - from, pool);
+        Task task = new Task(array, from, to, leafSize, mode, identity, op);
+        pool.invoke(task);
+        return task;
+    }
+
+    private final class Task extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int[] array;
+        private final int from;
+        private final int to;
+        private final int leafSize;
+        private final byte mode;
+        private final int identity;
+        private final IntBinaryOperator op;
+
+        private int value;
+        private long wide;
+
+        Task(int[] array, int from, int to, int leafSize, byte mode, int identity, IntBinaryOperator op) {
+            this.array = array;
+            this.from = from;
+            this.to = to;
+            this.leafSize = leafSize;
+            this.mode = mode;
+            this.identity = identity;
+            this.op = op;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= leafSize) {
+                leaf();
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            Task left = new Task(array, from, mid, leafSize, mode, identity, op);
+            Task right = new Task(array, mid, to, leafSize, mode, identity, op);
+
+            right.fork();
+            left.compute();
+            if (right.tryUnfork()) {
+                right.compute();
+            } else {
+                right.join();
+            }
+            if (mode == REDUCE) {
+                value = op.applyAsInt(left.value, right.value);
+            } else {
+                wide = left.wide + right.wide;
+            }
+        }
+
+        private void leaf() {
+            final byte[] kinds = ParallelIntPipeline.this.kinds;
+            final IntPredicate[] predicates = ParallelIntPipeline.this.predicates;
+            final IntUnaryOperator[] mappers = ParallelIntPipeline.this.mappers;
+            final int stages = kinds.length;
+
+            int acc = identity;
+            long accWide = 0;
+            elements:
+            for (int i = from; i < to; i++) {
+                int v = array[i];
+                for (int s = 0; s < stages; s++) {
+                    if (kinds[s] == FILTER) {
+                        if (!predicates[s].test(v)) {
+                            continue elements;
+                        }
+                    } else {
+                        v = mappers[s].applyAsInt(v);
+                    }
+                }
+                switch (mode) {
+                    case REDUCE:
+                        acc = op.applyAsInt(acc, v);
+                        break;
+                    case SUM:
+                        accWide += v;
+                        break;
+                    default:
+                        accWide++;
+                }
+            }
+            value = acc;
+            wide = accWide;
+        }
+    }
+}
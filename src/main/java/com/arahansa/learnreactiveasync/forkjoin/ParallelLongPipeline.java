@@ -0,0 +1,213 @@
+package com.arahansa.learnreactiveasync.forkjoin;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.LongBinaryOperator;
+import java.util.function.LongPredicate;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * long[] 를 위한 병렬 filter/map/reduce 파이프라인.
+ *
+ * J01_ForkJoin.CustomRecursiveTask 의 processing 처럼 리프마다 LongStream 을 만드는 대신,
+ * filter/map 체인을 배열에 담아두고 리프에서는 하나의 루프로 모든 단계를 적용한다.
+ * 리프에서는 객체를 만들지 않는다.
+ *
+ * 파이프라인은 불변이라서 한 번 만들어두고 여러 배열에 재사용할 수 있다.
+ * <pre>
+ * ParallelLongPipeline pipeline = ParallelLongPipeline.create()
+ *         .filter(a -> a > 10 && a < 27)
+ *         .map(a -> a * 10);
+ * long sum = pipeline.sum(arr);
+ * </pre>
+ */
+public final class ParallelLongPipeline {
+
+    private static final byte FILTER = 0;
+    private static final byte MAP = 1;
+
+    private static final byte REDUCE = 0;
+    private static final byte SUM = 1;
+    private static final byte COUNT = 2;
+
+    private final ForkJoinPool pool;
+    private final int threshold;
+    private final byte[] kinds;
+    private final LongPredicate[] predicates;
+    private final LongUnaryOperator[] mappers;
+
+    private ParallelLongPipeline(ForkJoinPool pool, int threshold, byte[] kinds,
+                                LongPredicate[] predicates, LongUnaryOperator[] mappers) {
+        this.pool = pool;
+        this.threshold = threshold;
+        this.kinds = kinds;
+        this.predicates = predicates;
+        this.mappers = mappers;
+    }
+
+    public static ParallelLongPipeline create() {
+        return on(ForkJoinPool.commonPool());
+    }
+
+    public static ParallelLongPipeline on(ForkJoinPool pool) {
+        return new ParallelLongPipeline(Objects.requireNonNull(pool), 0,
+                new byte[0], new LongPredicate[0], new LongUnaryOperator[0]);
+    }
+
+    public ParallelLongPipeline withPool(ForkJoinPool pool) {
+        return new ParallelLongPipeline(Objects.requireNonNull(pool), threshold, kinds, predicates, mappers);
+    }
+
+    /**
+     * 리프 크기를 직접 지정한다. 0 이면 배열 길이와 풀의 병렬도로 정한다.
+     */
+    public ParallelLongPipeline withThreshold(int threshold) {
+        if (threshold < 0) {
+            throw new IllegalArgumentException("threshold must not be negative: " + threshold);
+        }
+        return new ParallelLongPipeline(pool, threshold, kinds, predicates, mappers);
+    }
+
+    public ParallelLongPipeline filter(LongPredicate predicate) {
+        return append(FILTER, Objects.requireNonNull(predicate), null);
+    }
+
+    public ParallelLongPipeline map(LongUnaryOperator mapper) {
+        return append(MAP, null, Objects.requireNonNull(mapper));
+    }
+
+    private ParallelLongPipeline append(byte kind, LongPredicate predicate, LongUnaryOperator mapper) {
+        int n = kinds.length;
+        byte[] newKinds = Arrays.copyOf(kinds, n + 1);
+        LongPredicate[] newPredicates = Arrays.copyOf(predicates, n + 1);
+        LongUnaryOperator[] newMappers = Arrays.copyOf(mappers, n + 1);
+        newKinds[n] = kind;
+        newPredicates[n] = predicate;
+        newMappers[n] = mapper;
+        return new ParallelLongPipeline(pool, threshold, newKinds, newPredicates, newMappers);
+    }
+
+    /**
+     * op 는 결합법칙을 만족해야 하고 identity 는 op 의 항등원이어야 한다.
+     */
+    public long reduce(long[] array, long identity, LongBinaryOperator op) {
+        return reduce(array, 0, array.length, identity, op);
+    }
+
+    public long reduce(long[] array, int from, int to, long identity, LongBinaryOperator op) {
+        return run(array, from, to, REDUCE, identity, Objects.requireNonNull(op)).value;
+    }
+
+    public long sum(long[] array) {
+        return sum(array, 0, array.length);
+    }
+
+    public long sum(long[] array, int from, int to) {
+        return run(array, from, to, SUM, 0, null).wide;
+    }
+
+    public long count(long[] array) {
+        return count(array, 0, array.length);
+    }
+
+    public long count(long[] array, int from, int to) {
+        return run(array, from, to, COUNT, 0, null).wide;
+    }
+
+    private Task run(long[] array, int from, int to, byte mode, long identity, LongBinaryOperator op) {
+        if (from < 0 || to > array.length || from > to) {
+            throw new IndexOutOfBoundsException("from: " + from + ", to: " + to + ", length: " + array.length);
+        }
+        int leafSize = threshold > 0 ? threshold : ForkJoinThresholds.of(to - from, pool);
+        Task task = new Task(array, from, to, leafSize, mode, identity, op);
+        pool.invoke(task);
+        return task;
+    }
+
+    private final class Task extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final long[] array;
+        private final int from;
+        private final int to;
+        private final int leafSize;
+        private final byte mode;
+        private final long identity;
+        private final LongBinaryOperator op;
+
+        private long value;
+        private long wide;
+
+        Task(long[] array, int from, int to, int leafSize, byte mode, long identity, LongBinaryOperator op) {
+            this.array = array;
+            this.from = from;
+            this.to = to;
+            this.leafSize = leafSize;
+            this.mode = mode;
+            this.identity = identity;
+            this.op = op;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= leafSize) {
+                leaf();
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            Task left = new Task(array, from, mid, leafSize, mode, identity, op);
+            Task right = new Task(array, mid, to, leafSize, mode, identity, op);
+
+            right.fork();
+            left.compute();
+            if (right.tryUnfork()) {
+                right.compute();
+            } else {
+                right.join();
+            }
+            if (mode == REDUCE) {
+                value = op.applyAsLong(left.value, right.value);
+            } else {
+                wide = left.wide + right.wide;
+            }
+        }
+
+        private void leaf() {
+            final byte[] kinds = ParallelLongPipeline.this.kinds;
+            final LongPredicate[] predicates = ParallelLongPipeline.this.predicates;
+            final LongUnaryOperator[] mappers = ParallelLongPipeline.this.mappers;
+            final int stages = kinds.length;
+
+            long acc = identity;
+            long accWide = 0;
+            elements:
+            for (int i = from; i < to; i++) {
+                long v = array[i];
+                for (int s = 0; s < stages; s++) {
+                    if (kinds[s] == FILTER) {
+                        if (!predicates[s].test(v)) {
+                            continue elements;
+                        }
+                    } else {
+                        v = mappers[s].applyAsLong(v);
+                    }
+                }
+                switch (mode) {
+                    case REDUCE:
+                        acc = op.applyAsLong(acc, v);
+                        break;
+                    case SUM:
+                        accWide += v;
+                        break;
+                    default:
+                        accWide++;
+                }
+            }
+            value = acc;
+            wide = accWide;
+        }
+    }
+}
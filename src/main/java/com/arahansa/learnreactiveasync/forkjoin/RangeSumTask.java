@@ -0,0 +1,83 @@
+package com.arahansa.learnreactiveasync.forkjoin;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * J01_ForkJoin.CustomRecursiveTask 의 배열 복사 없는 버전.
+ *
+ * Arrays.copyOfRange 로 배열을 잘라내지 않고 (array, from, to) 구간만 넘겨서 나눈다.
+ * 절반은 fork 하고 나머지 절반은 현재 스레드에서 직접 계산하며,
+ * 결과는 Integer 대신 long 필드에 담아서 박싱과 오버플로우가 없다.
+ *
+ * 필터/맵은 원래 예제와 같다. (a > 10 && a < 27) 인 값에 10 을 곱해서 더한다.
+ */
+public class RangeSumTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int[] array;
+    private final int from;
+    private final int to;
+    private final int threshold;
+
+    private long result;
+
+    public RangeSumTask(int[] array, int from, int to, int threshold) {
+        if (from < 0 || to > array.length || from > to) {
+            throw new IndexOutOfBoundsException("from: " + from + ", to: " + to + ", length: " + array.length);
+        }
+        if (threshold < 1) {
+            throw new IllegalArgumentException("threshold must be positive: " + threshold);
+        }
+        this.array = array;
+        this.from = from;
+        this.to = to;
+        this.threshold = threshold;
+    }
+
+    public static long sum(int[] array) {
+        return sum(ForkJoinPool.commonPool(), array);
+    }
+
+    public static long sum(ForkJoinPool pool, int[] array) {
+        RangeSumTask task = new RangeSumTask(array, 0, array.length, ForkJoinThresholds.of(array.length, pool));
+        pool.invoke(task);
+        return task.getResult();
+    }
+
+    public long getResult() {
+        return result;
+    }
+
+    @Override
+    protected void compute() {
+        if (to - from <= threshold) {
+            result = processing(array, from, to);
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        RangeSumTask left = new RangeSumTask(array, from, mid, threshold);
+        RangeSumTask right = new RangeSumTask(array, mid, to, threshold);
+
+        right.fork();
+        left.compute();
+        if (right.tryUnfork()) {
+            right.compute();
+        } else {
+            right.join();
+        }
+        result = left.result + right.result;
+    }
+
+    static long processing(int[] array, int from, int to) {
+        long sum = 0;
+        for (int i = from; i < to; i++) {
+            int a = array[i];
+            if (a > 10 && a < 27) {
+                sum += a * 10;
+            }
+        }
+        return sum;
+    }
+}
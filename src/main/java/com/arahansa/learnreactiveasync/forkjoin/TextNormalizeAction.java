@@ -0,0 +1,138 @@
+package com.arahansa.learnreactiveasync.forkjoin;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * J01_ForkJoin.CustomRecursiveAction 의 문자열 복사 없는 버전.
+ *
+ * substring 으로 문자열을 잘라내지 않고 (CharSequence, start, end) 구간만 넘겨서 나누고,
+ * 결과는 미리 할당한 char[] 의 같은 위치에 바로 쓴다.
+ * 구간은 가운데에서 앞뒤로 MAX_SPLIT_SCAN 글자 안의 공백이나 줄바꿈에서 나누므로 보통은 단어 하나가 두 리프에 걸치지 않는다.
+ * 그 안에 공백이 없으면 더 찾지 않고 가운데에서 나눈다. 변환은 글자 단위라서 단어가 잘려도 결과는 같고,
+ * 공백 없는 긴 구간을 통째로 훑거나 하나의 큰 리프로 남기지 않는다.
+ *
+ * 리프 로그는 logLeaves 가 true 이고 debug 레벨이 켜져 있을 때만 남긴다.
+ */
+@Slf4j
+public class TextNormalizeAction extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 문자 하나를 문자 하나로 바꾸는 변환. 출력 길이가 입력과 같아야 하므로 char 단위로 정의한다.
+     */
+    @FunctionalInterface
+    public interface CharMapper {
+        char map(char c);
+    }
+
+    /**
+     * Character.toUpperCase 를 쓰기 때문에 'ß' 처럼 대문자가 두 글자가 되는 경우는 그대로 남는다.
+     */
+    public static final CharMapper UPPER_CASE = Character::toUpperCase;
+
+    /**
+     * 가운데에서 공백을 찾는 최대 거리. 보통 단어 길이보다 넉넉하게 잡는다.
+     */
+    static final int MAX_SPLIT_SCAN = 64;
+
+    private final CharSequence source;
+    private final int start;
+    private final int end;
+    private final char[] target;
+    private final int targetOffset;
+    private final CharMapper mapper;
+    private final int threshold;
+    private final boolean logLeaves;
+
+    public TextNormalizeAction(CharSequence source, int start, int end, char[] target, int targetOffset,
+                               CharMapper mapper, int threshold, boolean logLeaves) {
+        if (start < 0 || end > source.length() || start > end) {
+            throw new IndexOutOfBoundsException("start: " + start + ", end: " + end + ", length: " + source.length());
+        }
+        if (targetOffset < 0 || targetOffset + (end - start) > target.length) {
+            throw new IndexOutOfBoundsException("targetOffset: " + targetOffset + ", target length: " + target.length);
+        }
+        if (threshold < 1) {
+            throw new IllegalArgumentException("threshold must be positive: " + threshold);
+        }
+        this.source = source;
+        this.start = start;
+        this.end = end;
+        this.target = target;
+        this.targetOffset = targetOffset;
+        this.mapper = mapper;
+        this.threshold = threshold;
+        this.logLeaves = logLeaves;
+    }
+
+    public static char[] toUpperCase(CharSequence source) {
+        return normalize(ForkJoinPool.commonPool(), source, UPPER_CASE);
+    }
+
+    public static char[] normalize(ForkJoinPool pool, CharSequence source, CharMapper mapper) {
+        char[] target = new char[source.length()];
+        pool.invoke(new TextNormalizeAction(source, 0, source.length(), target, 0, mapper,
+                ForkJoinThresholds.of(source.length(), pool), false));
+        return target;
+    }
+
+    @Override
+    protected void compute() {
+        if (end - start <= threshold) {
+            processing();
+            return;
+        }
+        int split = findSplit();
+        TextNormalizeAction left = child(start, split);
+        TextNormalizeAction right = child(split, end);
+
+        right.fork();
+        left.compute();
+        if (right.tryUnfork()) {
+            right.compute();
+        } else {
+            right.join();
+        }
+    }
+
+    private TextNormalizeAction child(int from, int to) {
+        return new TextNormalizeAction(source, from, to, target, targetOffset + (from - start),
+                mapper, threshold, logLeaves);
+    }
+
+    /**
+     * 가운데에서 MAX_SPLIT_SCAN 안에서 가장 가까운 공백 바로 뒤의 위치를 찾는다.
+     * 없으면 가운데. 가운데가 서로게이트 쌍 사이면 (오른쪽이 비지 않는 한) 한 칸 뒤로 민다.
+     */
+    private int findSplit() {
+        int mid = (start + end) >>> 1;
+        int scan = Math.min(MAX_SPLIT_SCAN, mid - start);
+        for (int distance = 0; distance <= scan; distance++) {
+            int forward = mid + distance;
+            int backward = mid - distance;
+            if (forward + 1 < end && Character.isWhitespace(source.charAt(forward))) {
+                return forward + 1;
+            }
+            if (backward > start && Character.isWhitespace(source.charAt(backward - 1))) {
+                return backward;
+            }
+        }
+        if (mid + 1 < end && Character.isHighSurrogate(source.charAt(mid - 1)) && Character.isLowSurrogate(source.charAt(mid))) {
+            return mid + 1;
+        }
+        return mid;
+    }
+
+    private void processing() {
+        for (int i = start, j = targetOffset; i < end; i++, j++) {
+            target[j] = mapper.map(source.charAt(i));
+        }
+        if (logLeaves && log.isDebugEnabled()) {
+            log.debug("This result - [{}, {}) - was processed by {}", start, end, Thread.currentThread().getName());
+        }
+    }
+}
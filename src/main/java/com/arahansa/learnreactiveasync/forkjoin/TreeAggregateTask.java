@@ -0,0 +1,150 @@
+package com.arahansa.learnreactiveasync.forkjoin;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Function;
+
+/**
+ * ArrayTreeNode 트리를 병렬로 집계하는 태스크.
+ *
+ * J01_ExecutorSample.CountingTask 는 자식마다 태스크를 하나씩 fork 하기 때문에
+ * 팬아웃이 크면 아주 작은 태스크가 수없이 생기고, 깊은 체인에서는 스택이 넘친다.
+ * 이 태스크는 다음과 같이 나눈다.
+ * <ul>
+ *     <li>size 가 cutoff 이하인 서브트리는 명시적인 스택으로 반복 순회한다.</li>
+ *     <li>작은 형제 서브트리들은 노드 수 합이 cutoff 가 될 때까지 묶어서 하나의 태스크로 fork 한다.</li>
+ *     <li>큰 자식 중 마지막 하나는 fork 하지 않고 현재 루프에서 이어서 내려가므로 긴 체인에서도 스택이 쌓이지 않는다.</li>
+ * </ul>
+ * 한 태스크는 nodes[from, to) 의 서브트리들을 맡는다.
+ */
+public class TreeAggregateTask<T> extends RecursiveTask<T> {
+
+    private static final long serialVersionUID = 1L;
+
+    static final int MIN_CUTOFF = 64;
+
+    private final ArrayTreeNode[] nodes;
+    private final int from;
+    private final int to;
+    private final Function<ArrayTreeNode, T> mapper;
+    private final Monoid<T> monoid;
+    private final int cutoff;
+
+    public TreeAggregateTask(ArrayTreeNode root, Function<ArrayTreeNode, T> mapper, Monoid<T> monoid, int cutoff) {
+        this(new ArrayTreeNode[]{Objects.requireNonNull(root)}, 0, 1, mapper, monoid, cutoff);
+    }
+
+    private TreeAggregateTask(ArrayTreeNode[] nodes, int from, int to,
+                              Function<ArrayTreeNode, T> mapper, Monoid<T> monoid, int cutoff) {
+        if (cutoff < 1) {
+            throw new IllegalArgumentException("cutoff must be positive: " + cutoff);
+        }
+        this.nodes = nodes;
+        this.from = from;
+        this.to = to;
+        this.mapper = Objects.requireNonNull(mapper);
+        this.monoid = Objects.requireNonNull(monoid);
+        this.cutoff = cutoff;
+    }
+
+    public static <T> T aggregate(ForkJoinPool pool, ArrayTreeNode root,
+                                  Function<ArrayTreeNode, T> mapper, Monoid<T> monoid) {
+        return pool.invoke(new TreeAggregateTask<>(root, mapper, monoid, cutoffFor(root, pool)));
+    }
+
+    /**
+     * CountingTask 와 같은 값의 합. 결과는 long 이다.
+     */
+    public static long sum(ForkJoinPool pool, ArrayTreeNode root) {
+        return aggregate(pool, root, node -> (long) node.getValue(), Monoid.longSum());
+    }
+
+    public static int cutoffFor(ArrayTreeNode root, ForkJoinPool pool) {
+        long leaves = (long) pool.getParallelism() * ForkJoinThresholds.LEAVES_PER_WORKER;
+        return (int) Math.max(MIN_CUTOFF, root.size() / leaves);
+    }
+
+    @Override
+    protected T compute() {
+        List<TreeAggregateTask<T>> forked = new ArrayList<>();
+        T acc = monoid.identity();
+        for (int i = from; i < to; i++) {
+            acc = monoid.combine(acc, descend(nodes[i], forked));
+        }
+        for (int i = forked.size() - 1; i >= 0; i--) {
+            TreeAggregateTask<T> task = forked.get(i);
+            acc = monoid.combine(acc, task.tryUnfork() ? task.compute() : task.join());
+        }
+        return acc;
+    }
+
+    private T descend(ArrayTreeNode node, List<TreeAggregateTask<T>> forked) {
+        T acc = monoid.identity();
+        while (node.size() > cutoff) {
+            acc = monoid.combine(acc, mapper.apply(node));
+
+            ArrayTreeNode[] children = node.children();
+            int next = -1;
+            int batchStart = 0;
+            long batchSize = 0;
+            for (int i = 0; i < children.length; i++) {
+                int size = children[i].size();
+                if (size > cutoff) {
+                    // 큰 자식 앞에 모인 작은 서브트리들은 cutoff 보다 작으므로 직접 처리한다.
+                    acc = monoid.combine(acc, sequential(children, batchStart, i));
+                    if (next >= 0) {
+                        forked.add(fork(children, next, next + 1));
+                    }
+                    next = i;
+                    batchStart = i + 1;
+                    batchSize = 0;
+                    continue;
+                }
+                batchSize += size;
+                if (batchSize >= cutoff) {
+                    forked.add(fork(children, batchStart, i + 1));
+                    batchStart = i + 1;
+                    batchSize = 0;
+                }
+            }
+            acc = monoid.combine(acc, sequential(children, batchStart, children.length));
+            if (next < 0) {
+                return acc;
+            }
+            node = children[next];
+        }
+        return monoid.combine(acc, sequential(node));
+    }
+
+    private TreeAggregateTask<T> fork(ArrayTreeNode[] children, int start, int end) {
+        TreeAggregateTask<T> task = new TreeAggregateTask<>(children, start, end, mapper, monoid, cutoff);
+        task.fork();
+        return task;
+    }
+
+    private T sequential(ArrayTreeNode[] roots, int start, int end) {
+        T acc = monoid.identity();
+        for (int i = start; i < end; i++) {
+            acc = monoid.combine(acc, sequential(roots[i]));
+        }
+        return acc;
+    }
+
+    private T sequential(ArrayTreeNode root) {
+        T acc = monoid.identity();
+        ArrayDeque<ArrayTreeNode> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            ArrayTreeNode node = stack.pop();
+            acc = monoid.combine(acc, mapper.apply(node));
+            for (ArrayTreeNode child : node.children()) {
+                stack.push(child);
+            }
+        }
+        return acc;
+    }
+}
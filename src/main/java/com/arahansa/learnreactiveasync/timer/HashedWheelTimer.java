@@ -0,0 +1,333 @@
+package com.arahansa.learnreactiveasync.timer;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 해시 타이머 휠.
+ *
+ * 타이머마다 스레드를 재우는 대신(Thread.sleep) 스레드 하나가 tickDuration 마다 휠을 한 칸씩 돌면서
+ * 만료된 타이머의 작업을 taskExecutor 에 넘긴다. 휠 한 바퀴보다 먼 타이머는 남은 바퀴 수(remainingRounds)를 센다.
+ * <ul>
+ *     <li>등록: 락 없는 큐에 넣기만 하므로 O(1). 워커 스레드가 다음 틱에 버킷으로 옮긴다.</li>
+ *     <li>취소: 상태를 CAS 로 바꾸고 취소 큐에 넣는다. 워커 스레드가 버킷의 연결 리스트에서 O(1) 로 뺀다.</li>
+ * </ul>
+ * 정확도는 tickDuration 단위이므로 짧은 지연을 정밀하게 맞춰야 하는 용도에는 맞지 않는다.
+ * 버킷은 워커 스레드만 만지기 때문에 락이 필요 없다.
+ */
+@Slf4j
+public class HashedWheelTimer implements AutoCloseable {
+
+    /**
+     * newTimeout 이 돌려주는 핸들
+     */
+    public interface Timeout {
+
+        /**
+         * 아직 만료되지 않았으면 취소하고 true 를 돌려준다.
+         */
+        boolean cancel();
+
+        boolean isCancelled();
+
+        boolean isExpired();
+    }
+
+    private static final int MAX_TRANSFER_PER_TICK = 100_000;
+
+    private static final Executor ON_WORKER = Runnable::run;
+
+    private final long tickNanos;
+    private final Bucket[] wheel;
+    private final int mask;
+    private final Executor taskExecutor;
+    private final Queue<HashedTimeout> pending = new ConcurrentLinkedQueue<>();
+    private final Queue<HashedTimeout> cancelled = new ConcurrentLinkedQueue<>();
+    private final AtomicLong pendingCount = new AtomicLong();
+    private final Thread worker;
+    private final long startTime;
+
+    private volatile boolean running = true;
+
+    /**
+     * 만료된 작업을 워커 스레드에서 바로 실행한다. 작업은 짧아야 한다.
+     */
+    public HashedWheelTimer(ThreadFactory threadFactory, long tickDuration, TimeUnit unit, int ticksPerWheel) {
+        this(threadFactory, tickDuration, unit, ticksPerWheel, ON_WORKER);
+    }
+
+    /**
+     * @param taskExecutor 만료된 작업을 실행한다. 작업을 거절하면 (포화, 종료) 버리지 않고 워커 스레드에서 직접 실행한다.
+     */
+    public HashedWheelTimer(ThreadFactory threadFactory, long tickDuration, TimeUnit unit, int ticksPerWheel,
+                            Executor taskExecutor) {
+        if (tickDuration <= 0) {
+            throw new IllegalArgumentException("tickDuration must be positive: " + tickDuration);
+        }
+        if (ticksPerWheel <= 0 || ticksPerWheel > (1 << 30)) {
+            throw new IllegalArgumentException("ticksPerWheel must be in (0, 2^30]: " + ticksPerWheel);
+        }
+        int size = 1;
+        while (size < ticksPerWheel) {
+            size <<= 1;
+        }
+        this.tickNanos = unit.toNanos(tickDuration);
+        this.wheel = new Bucket[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new Bucket();
+        }
+        this.mask = size - 1;
+        this.taskExecutor = taskExecutor;
+        this.startTime = System.nanoTime();
+        this.worker = threadFactory.newThread(this::run);
+        this.worker.start();
+    }
+
+    /**
+     * delay 뒤에 task 를 실행한다.
+     *
+     * @throws RejectedExecutionException 타이머가 이미 멈췄을 때
+     */
+    public Timeout newTimeout(Runnable task, long delay, TimeUnit unit) {
+        if (!running) {
+            throw new RejectedExecutionException("timer is stopped");
+        }
+        long delayNanos = Math.max(0, unit.toNanos(delay));
+        long now = System.nanoTime() - startTime;
+        long deadline = now + delayNanos < 0 ? Long.MAX_VALUE : now + delayNanos;
+        HashedTimeout timeout = new HashedTimeout(this, task, deadline);
+        pendingCount.incrementAndGet();
+        pending.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * 아직 만료되거나 취소되지 않은 타이머 수
+     */
+    public long pendingTimeouts() {
+        return pendingCount.get();
+    }
+
+    /**
+     * 워커 스레드를 멈춘다. 실행되지 않은 타이머는 버려지고 그 수를 돌려준다.
+     */
+    public long stop() {
+        running = false;
+        LockSupport.unpark(worker);
+        boolean interrupted = false;
+        while (worker.isAlive() && Thread.currentThread() != worker) {
+            try {
+                worker.join(100);
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        return pendingCount.getAndSet(0);
+    }
+
+    @Override
+    public void close() {
+        stop();
+    }
+
+    private void run() {
+        long tick = 0;
+        while (true) {
+            if (!waitForNextTick(tick)) {
+                return;
+            }
+            removeCancelled();
+            transferPending(tick);
+            wheel[(int) (tick & mask)].expire();
+            tick++;
+        }
+    }
+
+    private boolean waitForNextTick(long tick) {
+        long target = tickNanos * (tick + 1);
+        while (true) {
+            if (!running) {
+                return false;
+            }
+            long now = System.nanoTime() - startTime;
+            if (now >= target) {
+                return true;
+            }
+            LockSupport.parkNanos(this, target - now);
+        }
+    }
+
+    private void removeCancelled() {
+        HashedTimeout timeout;
+        while ((timeout = cancelled.poll()) != null) {
+            if (timeout.bucket != null) {
+                timeout.bucket.remove(timeout);
+            }
+        }
+    }
+
+    private void transferPending(long tick) {
+        for (int i = 0; i < MAX_TRANSFER_PER_TICK; i++) {
+            HashedTimeout timeout = pending.poll();
+            if (timeout == null) {
+                return;
+            }
+            if (timeout.state != HashedTimeout.INIT) {
+                continue;
+            }
+            long calculated = timeout.deadline / tickNanos;
+            timeout.remainingRounds = Math.max(0, (calculated - tick) / wheel.length);
+            long ticks = Math.max(calculated, tick);
+            wheel[(int) (ticks & mask)].add(timeout);
+        }
+    }
+
+    private void dispatch(HashedTimeout timeout) {
+        if (!timeout.compareAndSetState(HashedTimeout.INIT, HashedTimeout.EXPIRED)) {
+            return;
+        }
+        pendingCount.decrementAndGet();
+        if (taskExecutor == ON_WORKER) {
+            runOnWorker(timeout.task);
+            return;
+        }
+        try {
+            taskExecutor.execute(timeout.task);
+        } catch (RejectedExecutionException e) {
+            // 버리면 타이머를 기다리는 쪽 (orTimeout 등) 이 영영 끝나지 않는다. 그 틱이 늦어지더라도 여기서 실행한다.
+            log.warn("timer task {} rejected by executor, running it on the timer thread", timeout.task, e);
+            runOnWorker(timeout.task);
+        } catch (Throwable t) {
+            log.warn("timer task {} failed", timeout.task, t);
+        }
+    }
+
+    private static void runOnWorker(Runnable task) {
+        try {
+            task.run();
+        } catch (Throwable t) {
+            log.warn("timer task {} failed", task, t);
+        }
+    }
+
+    private static final class HashedTimeout implements Timeout {
+
+        static final int INIT = 0;
+        static final int CANCELLED = 1;
+        static final int EXPIRED = 2;
+
+        private static final AtomicIntegerFieldUpdater<HashedTimeout> STATE =
+                AtomicIntegerFieldUpdater.newUpdater(HashedTimeout.class, "state");
+
+        final HashedWheelTimer timer;
+        final Runnable task;
+        final long deadline;
+        volatile int state = INIT;
+
+        // 아래 필드는 워커 스레드만 읽고 쓴다.
+        long remainingRounds;
+        Bucket bucket;
+        HashedTimeout prev;
+        HashedTimeout next;
+
+        HashedTimeout(HashedWheelTimer timer, Runnable task, long deadline) {
+            this.timer = timer;
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        boolean compareAndSetState(int expected, int state) {
+            return STATE.compareAndSet(this, expected, state);
+        }
+
+        @Override
+        public boolean cancel() {
+            if (!compareAndSetState(INIT, CANCELLED)) {
+                return false;
+            }
+            timer.pendingCount.decrementAndGet();
+            timer.cancelled.add(this);
+            return true;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return state == CANCELLED;
+        }
+
+        @Override
+        public boolean isExpired() {
+            return state == EXPIRED;
+        }
+    }
+
+    /**
+     * 타이머의 이중 연결 리스트. 워커 스레드만 사용한다.
+     */
+    private final class Bucket {
+
+        private HashedTimeout head;
+        private HashedTimeout tail;
+
+        void add(HashedTimeout timeout) {
+            timeout.bucket = this;
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        void expire() {
+            HashedTimeout timeout = head;
+            while (timeout != null) {
+                HashedTimeout next = timeout.next;
+                if (timeout.state != HashedTimeout.INIT) {
+                    remove(timeout);
+                } else if (timeout.remainingRounds <= 0) {
+                    remove(timeout);
+                    dispatch(timeout);
+                } else {
+                    timeout.remainingRounds--;
+                }
+                timeout = next;
+            }
+        }
+
+        void remove(HashedTimeout timeout) {
+            if (timeout.bucket != this) {
+                return;
+            }
+            HashedTimeout next = timeout.next;
+            if (timeout.prev != null) {
+                timeout.prev.next = next;
+            }
+            if (next != null) {
+                next.prev = timeout.prev;
+            }
+            if (timeout == head) {
+                head = next;
+            }
+            if (timeout == tail) {
+                tail = timeout.prev;
+            }
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.arahansa.learnreactiveasync.timer;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * HashedWheelTimer 로 CompletableFuture 를 일정 시간 뒤에 완료/실패/취소시킨다.
+ *
+ * J01_CompletableFuture.calculateAsync 처럼 풀의 스레드에서 Thread.sleep 한 뒤 complete 하면 지연 하나에 스레드 하나가 묶인다.
+ * 여기서는 타이머만 등록하므로 대기 중인 지연이 많아도 스레드는 늘지 않는다.
+ * orTimeout / completeOnTimeout 은 자바 9 의 CompletableFuture 메서드와 같은 동작을 자바 8 에서 제공한다.
+ * future 가 먼저 끝나면 등록한 타이머는 취소된다.
+ */
+public class TimeoutService {
+
+    private final HashedWheelTimer timer;
+
+    public TimeoutService(HashedWheelTimer timer) {
+        this.timer = Objects.requireNonNull(timer);
+    }
+
+    /**
+     * delay 뒤에 value 로 완료되는 새 future
+     */
+    public <T> CompletableFuture<T> delay(T value, long delay, TimeUnit unit) {
+        return completeOnTimeout(new CompletableFuture<>(), value, delay, unit);
+    }
+
+    /**
+     * delay 안에 끝나지 않으면 value 로 완료시킨다. 넘겨받은 future 를 그대로 돌려준다.
+     */
+    public <T> CompletableFuture<T> completeOnTimeout(CompletableFuture<T> future, T value, long delay, TimeUnit unit) {
+        return schedule(future, () -> future.complete(value), delay, unit);
+    }
+
+    /**
+     * delay 안에 끝나지 않으면 TimeoutException 으로 실패시킨다.
+     */
+    public <T> CompletableFuture<T> orTimeout(CompletableFuture<T> future, long delay, TimeUnit unit) {
+        return schedule(future, () -> future.completeExceptionally(
+                new TimeoutException("timed out after " + delay + " " + unit)), delay, unit);
+    }
+
+    public <T> CompletableFuture<T> failAfter(CompletableFuture<T> future, Throwable ex, long delay, TimeUnit unit) {
+        Objects.requireNonNull(ex);
+        return schedule(future, () -> future.completeExceptionally(ex), delay, unit);
+    }
+
+    public <T> CompletableFuture<T> cancelAfter(CompletableFuture<T> future, long delay, TimeUnit unit) {
+        return schedule(future, () -> future.cancel(false), delay, unit);
+    }
+
+    private <T> CompletableFuture<T> schedule(CompletableFuture<T> future, Runnable action, long delay, TimeUnit unit) {
+        if (future.isDone()) {
+            return future;
+        }
+        HashedWheelTimer.Timeout timeout = timer.newTimeout(action, delay, unit);
+        future.whenComplete((result, ex) -> timeout.cancel());
+        return future;
+    }
+}
@@ -0,0 +1,431 @@
+package com.arahansa.learnreactiveasync.timer;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RunnableScheduledFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 계층형 타이밍 휠 위의 ScheduledExecutorService.
+ *
+ * Executors.newScheduledThreadPool 의 DelayedWorkQueue 는 락 하나로 보호되는 이진 힙이라 등록/취소가 O(log n) 이고,
+ * 세션마다 heartbeat 를 거는 식으로 예약이 수백만 개가 되면 그 락에서 줄을 선다.
+ * 여기서는 휠 LEVELS 단, 단마다 2^WHEEL_BITS 칸을 두고 칸(버킷)마다 락을 따로 둔다.
+ * <ul>
+ *     <li>등록: 마감 틱이 들어갈 가장 낮은 단의 버킷 하나만 잠그고 이중 연결 리스트에 붙인다. O(1)</li>
+ *     <li>취소: 태스크가 들어 있는 버킷만 잠그고 리스트에서 뺀다. O(1)</li>
+ *     <li>틱: 틱 스레드가 0 단의 버킷을 비우며 만료된 태스크를 workers 에 넘기고,
+ *     윗단의 버킷은 때가 되면 아랫단으로 다시 나눠 넣는다.</li>
+ * </ul>
+ * HashedWheelTimer 와 달리 등록과 취소가 틱 스레드를 거치지 않으므로, 취소된 태스크가 다음 틱까지 남아 있지 않는다.
+ *
+ * 정밀도는 tickDuration 이고, 태스크는 지연보다 일찍 실행되지 않는다.
+ * shutdown 하면 아직 때가 되지 않은 태스크는 모두 취소된다.
+ * (ScheduledThreadPoolExecutor 의 setExecuteExistingDelayedTasksAfterShutdownPolicy(false) 와 같다)
+ */
+public class TimingWheelScheduledExecutor extends AbstractExecutorService implements ScheduledExecutorService {
+
+    private static final int WHEEL_BITS = 8;
+    private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+    private static final int LEVELS = 4;
+
+    private final long tickNanos;
+    private final long startNanos;
+    private final Bucket[][] wheels = new Bucket[LEVELS][WHEEL_SIZE];
+    private final ThreadPoolExecutor workers;
+    private final Thread ticker;
+    private final AtomicLong sequencer = new AtomicLong();
+
+    // 다음에 처리할 틱. 이보다 작은 틱은 모두 처리됐다. 틱 스레드만 쓴다.
+    private volatile long currentTick;
+    private volatile boolean shutdown;
+
+    /**
+     * 1ms 틱
+     */
+    public TimingWheelScheduledExecutor(int workerThreads) {
+        this(workerThreads, 1, TimeUnit.MILLISECONDS,
+                new ThreadFactoryBuilder().setNameFormat("timing-wheel-%d").setDaemon(true).build());
+    }
+
+    public TimingWheelScheduledExecutor(int workerThreads, long tickDuration, TimeUnit unit, ThreadFactory threadFactory) {
+        if (tickDuration <= 0) {
+            throw new IllegalArgumentException("tickDuration must be positive: " + tickDuration);
+        }
+        this.tickNanos = unit.toNanos(tickDuration);
+        for (Bucket[] wheel : wheels) {
+            for (int i = 0; i < WHEEL_SIZE; i++) {
+                wheel[i] = new Bucket();
+            }
+        }
+        this.workers = new ThreadPoolExecutor(workerThreads, workerThreads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), threadFactory);
+        this.startNanos = System.nanoTime();
+        this.ticker = threadFactory.newThread(this::run);
+        ticker.start();
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        if (shutdown) {
+            throw new RejectedExecutionException("scheduler is shut down");
+        }
+        workers.execute(command);
+    }
+
+    @Override
+    public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+        return schedule(new WheelTask<>(Executors.callable(command, null), triggerNanos(delay, unit), 0L));
+    }
+
+    @Override
+    public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+        return schedule(new WheelTask<>(callable, triggerNanos(delay, unit), 0L));
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period, TimeUnit unit) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("period must be positive: " + period);
+        }
+        return schedule(new WheelTask<>(Executors.callable(command, null), triggerNanos(initialDelay, unit),
+                unit.toNanos(period)));
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay, TimeUnit unit) {
+        if (delay <= 0) {
+            throw new IllegalArgumentException("delay must be positive: " + delay);
+        }
+        return schedule(new WheelTask<>(Executors.callable(command, null), triggerNanos(initialDelay, unit),
+                -unit.toNanos(delay)));
+    }
+
+    /**
+     * startNanos 기준 실행 시각
+     */
+    private long triggerNanos(long delay, TimeUnit unit) {
+        long now = System.nanoTime() - startNanos;
+        long trigger = now + unit.toNanos(Math.max(0, delay));
+        return trigger < 0 ? Long.MAX_VALUE : trigger;
+    }
+
+    private <V> WheelTask<V> schedule(WheelTask<V> task) {
+        if (shutdown) {
+            throw new RejectedExecutionException("scheduler is shut down");
+        }
+        place(task);
+        return task;
+    }
+
+    /**
+     * task 를 마감 틱에 맞는 버킷에 넣는다. 고르는 사이 틱 스레드가 그 버킷을 지나갔으면 다시 고른다.
+     */
+    private void place(WheelTask<?> task) {
+        for (;;) {
+            long now = currentTick;
+            long deadline = Math.max(task.deadlineTick, now);
+            int level = 0;
+            long cell = deadline;
+            while (level < LEVELS - 1 && cell - (now >>> (level * WHEEL_BITS)) >= WHEEL_SIZE) {
+                level++;
+                cell = deadline >>> (level * WHEEL_BITS);
+            }
+            long farthest = (now >>> (level * WHEEL_BITS)) + WHEEL_SIZE - 1;
+            if (cell > farthest) {
+                // 맨 윗단보다 멀면 가장 먼 칸에 두었다가, 그 칸을 비울 때 다시 넣는다.
+                cell = farthest;
+            }
+            Bucket bucket = wheels[level][(int) (cell & WHEEL_MASK)];
+            boolean passed;
+            synchronized (bucket) {
+                passed = bucket.lastDrainedTick >= cell << (level * WHEEL_BITS);
+                if (!passed) {
+                    if (shutdown) {
+                        task.cancel(false);
+                    } else {
+                        // cancel 은 상태를 바꾼 뒤 bucket 을 읽으므로, 여기서는 bucket 을 먼저 쓰고 상태를 읽는다.
+                        // 그래야 둘 중 한쪽은 반드시 상대를 본다. 순서가 반대면 그 사이의 취소가 bucket 을 놓쳐 태스크가 남는다.
+                        bucket.add(task);
+                        if (task.isCancelled()) {
+                            bucket.remove(task);
+                        }
+                    }
+                }
+            }
+            if (!passed) {
+                return;
+            }
+            // 틱 스레드가 이 틱을 처리하는 중이다. currentTick 이 넘어갈 때까지 양보한다.
+            Thread.yield();
+        }
+    }
+
+    private void run() {
+        List<WheelTask<?>> expired = new ArrayList<>();
+        while (!shutdown) {
+            long tick = currentTick;
+            long wakeAt = startNanos + tick * tickNanos;
+            long sleepNanos;
+            while (!shutdown && (sleepNanos = wakeAt - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(this, sleepNanos);
+            }
+            if (shutdown) {
+                break;
+            }
+            // 윗단부터 때가 된 칸을 아랫단으로 나눠 넣는다.
+            for (int level = LEVELS - 1; level > 0; level--) {
+                int shift = level * WHEEL_BITS;
+                if ((tick & ((1L << shift) - 1)) == 0) {
+                    cascade(wheels[level][(int) ((tick >>> shift) & WHEEL_MASK)], tick, expired);
+                }
+            }
+            cascade(wheels[0][(int) (tick & WHEEL_MASK)], tick, expired);
+            currentTick = tick + 1;
+            for (WheelTask<?> task : expired) {
+                try {
+                    workers.execute(task);
+                } catch (RejectedExecutionException e) {
+                    task.cancel(false);
+                }
+            }
+            expired.clear();
+        }
+        cancelAll();
+    }
+
+    /**
+     * 버킷을 비우고, 마감이 지난 태스크는 expired 에, 나머지는 다시 place 한다.
+     */
+    private void cascade(Bucket bucket, long tick, List<WheelTask<?>> expired) {
+        WheelTask<?> head;
+        synchronized (bucket) {
+            bucket.lastDrainedTick = tick;
+            head = bucket.detachAll();
+        }
+        while (head != null) {
+            WheelTask<?> next = head.next;
+            head.next = null;
+            if (head.deadlineTick <= tick) {
+                expired.add(head);
+            } else {
+                place(head);
+            }
+            head = next;
+        }
+    }
+
+    private void cancelAll() {
+        for (Bucket[] wheel : wheels) {
+            for (Bucket bucket : wheel) {
+                WheelTask<?> head;
+                synchronized (bucket) {
+                    head = bucket.detachAll();
+                }
+                while (head != null) {
+                    WheelTask<?> next = head.next;
+                    head.next = null;
+                    head.cancel(false);
+                    head = next;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        shutdown = true;
+        LockSupport.unpark(ticker);
+        workers.shutdown();
+    }
+
+    /**
+     * 예약만 되어 있던 태스크는 취소되고, workers 큐에서 기다리던 태스크를 돌려준다.
+     */
+    @Override
+    public List<Runnable> shutdownNow() {
+        shutdown = true;
+        LockSupport.unpark(ticker);
+        return workers.shutdownNow();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return !ticker.isAlive() && workers.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        TimeUnit.NANOSECONDS.timedJoin(ticker, Math.max(1, deadline - System.nanoTime()));
+        return !ticker.isAlive() && workers.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 예약된 태스크 수. 버킷마다 따로 세므로 근사값이다.
+     */
+    public long getScheduledCount() {
+        long count = 0;
+        for (Bucket[] wheel : wheels) {
+            for (Bucket bucket : wheel) {
+                count += bucket.size;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 이중 연결 리스트. 모든 접근은 이 버킷을 잠그고 한다.
+     */
+    private static final class Bucket {
+        private WheelTask<?> head;
+        private long lastDrainedTick = -1;
+        private volatile int size;
+
+        void add(WheelTask<?> task) {
+            task.bucket = this;
+            task.prev = null;
+            task.next = head;
+            if (head != null) {
+                head.prev = task;
+            }
+            head = task;
+            size++;
+        }
+
+        void remove(WheelTask<?> task) {
+            if (task.prev != null) {
+                task.prev.next = task.next;
+            } else {
+                head = task.next;
+            }
+            if (task.next != null) {
+                task.next.prev = task.prev;
+            }
+            task.prev = null;
+            task.next = null;
+            task.bucket = null;
+            size--;
+        }
+
+        /**
+         * 리스트를 통째로 떼어 낸다. 돌려준 태스크들은 next 로만 이어져 있다.
+         */
+        WheelTask<?> detachAll() {
+            WheelTask<?> first = head;
+            for (WheelTask<?> task = first; task != null; task = task.next) {
+                task.bucket = null;
+                task.prev = null;
+            }
+            head = null;
+            size = 0;
+            return first;
+        }
+    }
+
+    private final class WheelTask<V> extends FutureTask<V> implements RunnableScheduledFuture<V> {
+
+        private final long sequence = sequencer.getAndIncrement();
+        // 양수면 fixed rate, 음수면 fixed delay, 0 이면 한 번
+        private final long periodNanos;
+        private long triggerNanos;
+        private long deadlineTick;
+
+        // 버킷 잠금 아래에서만 바꾼다. bucket 은 취소하는 쪽이 잠금 없이 읽으므로 volatile
+        private volatile Bucket bucket;
+        private WheelTask<?> prev;
+        private WheelTask<?> next;
+
+        WheelTask(Callable<V> callable, long triggerNanos, long periodNanos) {
+            super(callable);
+            this.periodNanos = periodNanos;
+            setTrigger(triggerNanos);
+        }
+
+        private void setTrigger(long triggerNanos) {
+            this.triggerNanos = triggerNanos;
+            // 올림해서 일찍 실행되지 않게 한다.
+            this.deadlineTick = triggerNanos == Long.MAX_VALUE ? Long.MAX_VALUE : (triggerNanos + tickNanos - 1) / tickNanos;
+        }
+
+        @Override
+        public boolean isPeriodic() {
+            return periodNanos != 0;
+        }
+
+        @Override
+        public void run() {
+            if (!isPeriodic()) {
+                super.run();
+            } else if (runAndReset()) {
+                setTrigger(periodNanos > 0 ? triggerNanos + periodNanos : System.nanoTime() - startNanos - periodNanos);
+                place(this);
+            }
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            if (cancelled) {
+                unlink();
+            }
+            return cancelled;
+        }
+
+        private void unlink() {
+            for (;;) {
+                Bucket current = bucket;
+                if (current == null) {
+                    return;
+                }
+                synchronized (current) {
+                    if (bucket == current) {
+                        current.remove(this);
+                        return;
+                    }
+                }
+            }
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(triggerNanos - (System.nanoTime() - startNanos), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            if (other == this) {
+                return 0;
+            }
+            if (other instanceof WheelTask) {
+                WheelTask<?> that = (WheelTask<?>) other;
+                if (triggerNanos != that.triggerNanos) {
+                    return triggerNanos < that.triggerNanos ? -1 : 1;
+                }
+                return sequence < that.sequence ? -1 : 1;
+            }
+            return Long.compare(getDelay(TimeUnit.NANOSECONDS), other.getDelay(TimeUnit.NANOSECONDS));
+        }
+    }
+}
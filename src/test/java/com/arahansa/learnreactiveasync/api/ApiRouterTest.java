@@ -0,0 +1,74 @@
+package com.arahansa.learnreactiveasync.api;
+
+import org.junit.Test;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+
+import static org.junit.Assert.assertTrue;
+
+public class ApiRouterTest {
+
+    private final WebTestClient client = WebTestClient
+            .bindToRouterFunction(new ApiRouter().apiRoutes(new ApiHandler(new ApiService(0))))
+            .build();
+
+    @Test
+    public void result() throws Exception{
+        client.get().uri("/api/result")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(Result.class).isEqualTo(new Result("s0"));
+    }
+
+    @Test
+    public void streamJson() throws Exception{
+        Flux<Result> results = client.get().uri("/api/results?count=100&concurrency=8")
+                .accept(MediaType.APPLICATION_STREAM_JSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(MediaType.APPLICATION_STREAM_JSON)
+                .returnResult(Result.class)
+                .getResponseBody();
+
+        StepVerifier.create(results)
+                .expectNextCount(100)
+                .verifyComplete();
+    }
+
+    @Test
+    public void serverSentEvents() throws Exception{
+        Flux<Result> results = client.get().uri("/api/results/events?count=3")
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(Result.class)
+                .getResponseBody();
+
+        StepVerifier.create(results.map(Result::getS).sort())
+                .expectNext("s0", "s1", "s2")
+                .verifyComplete();
+    }
+
+    @Test
+    public void badRequest() throws Exception{
+        client.get().uri("/api/results?concurrency=0").exchange().expectStatus().isBadRequest();
+        client.get().uri("/api/results?count=abc").exchange().expectStatus().isBadRequest();
+    }
+
+    /**
+     * 동시 호출 수가 concurrency 를 넘지 않는다.
+     */
+    @Test
+    public void concurrencyLimit() throws Exception{
+        ApiService service = new ApiService(20);
+        long start = System.nanoTime();
+        StepVerifier.create(service.getApis(40, 10))
+                .expectNextCount(40)
+                .verifyComplete();
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).toMillis() >= 80);
+    }
+}
@@ -0,0 +1,180 @@
+package com.arahansa.learnreactiveasync.api;
+
+import org.junit.Test;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.CollectionOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * MongoDB 대신 목 repository 로 묶음 쓰기와 request(n) 에 따른 읽기를 확인한다.
+ */
+public class ResultStoreTest {
+
+    private final ResultRepository repository = mock(ResultRepository.class);
+    private final ReactiveMongoOperations operations = mock(ReactiveMongoOperations.class);
+    private final List<List<ResultDocument>> inserted = new CopyOnWriteArrayList<>();
+
+    private ResultStore newStore(int writeBatchSize, long writeMaxLatencyMillis, int readBatchSize) {
+        when(repository.insert(anyIterable())).thenAnswer(invocation -> {
+            List<ResultDocument> batch = new ArrayList<>();
+            invocation.<Iterable<ResultDocument>>getArgument(0).forEach(batch::add);
+            inserted.add(batch);
+            return Flux.fromIterable(batch);
+        });
+        return new ResultStore(repository, operations, writeBatchSize, writeMaxLatencyMillis, readBatchSize);
+    }
+
+    private static Flux<Result> results(int count) {
+        return Flux.range(0, count).map(i -> new Result("s" + i));
+    }
+
+    /**
+     * 원소마다가 아니라 writeBatchSize 개씩 insert 한다.
+     */
+    @Test
+    public void writesInBatches() throws Exception{
+        ResultStore store = newStore(4, 10_000, 256);
+
+        StepVerifier.create(store.saveAll(results(10)))
+                .expectNext(10L)
+                .verifyComplete();
+
+        assertEquals(3, inserted.size());
+        assertEquals(4, inserted.get(0).size());
+        assertEquals(4, inserted.get(1).size());
+        assertEquals(2, inserted.get(2).size());
+        List<String> saved = inserted.stream().flatMap(List::stream).map(ResultDocument::getS).collect(Collectors.toList());
+        assertEquals(results(10).map(Result::getS).collectList().block(), saved);
+    }
+
+    /**
+     * 묶음이 덜 찼어도 writeMaxLatency 가 지나면 쓴다.
+     */
+    @Test
+    public void flushesPartialBatchAfterMaxLatency() throws Exception{
+        ResultStore store = newStore(100, 100, 256);
+
+        StepVerifier.withVirtualTime(() -> store.saveAll(Flux.concat(
+                results(2),
+                Mono.delay(Duration.ofSeconds(10)).map(ignored -> new Result("late")))))
+                .expectSubscription()
+                .thenAwait(Duration.ofMillis(100))
+                .then(() -> {
+                    assertEquals(1, inserted.size());
+                    assertEquals(2, inserted.get(0).size());
+                })
+                .thenAwait(Duration.ofSeconds(10))
+                .expectNext(3L)
+                .verifyComplete();
+
+        assertEquals(2, inserted.size());
+    }
+
+    /**
+     * insert 가 writeMaxLatency 보다 훨씬 느려도 (bufferTimeout 처럼) 묶음을 request 없이 내보내다가 실패하지 않고,
+     * 위쪽을 늦추면서 끝까지 쓴다.
+     */
+    @Test
+    public void slowInsertsBackPressureInsteadOfOverflowing() throws Exception{
+        when(repository.insert(anyIterable())).thenAnswer(invocation -> {
+            List<ResultDocument> batch = new ArrayList<>();
+            invocation.<Iterable<ResultDocument>>getArgument(0).forEach(batch::add);
+            inserted.add(batch);
+            return Mono.delay(Duration.ofMillis(50)).thenMany(Flux.fromIterable(batch));
+        });
+        ResultStore store = new ResultStore(repository, operations, 1000, 5, 256);
+        AtomicLong requested = new AtomicLong();
+
+        StepVerifier.withVirtualTime(() -> store.saveAll(results(3000)
+                .doOnRequest(n -> requested.accumulateAndGet(n, (a, b) -> a + b < 0 ? Long.MAX_VALUE : a + b))
+                .delayElements(Duration.ofMillis(1))))
+                .thenAwait(Duration.ofHours(1))
+                .expectNext(3000L)
+                .verifyComplete();
+
+        assertTrue("batches " + inserted.size(), inserted.size() > 32);
+        assertEquals(3000, inserted.stream().mapToInt(List::size).sum());
+        assertTrue("requested " + requested.get(), requested.get() < Long.MAX_VALUE);
+    }
+
+    /**
+     * 묶음 쓰기가 실패하면 그 에러로 끝나고 남은 묶음은 쓰지 않는다.
+     */
+    @Test
+    public void insertFailureFailsSave() throws Exception{
+        when(repository.insert(anyIterable())).thenReturn(Flux.error(new IllegalStateException("mongo down")));
+        ResultStore store = new ResultStore(repository, operations, 4, 10_000, 256);
+
+        StepVerifier.create(store.saveAll(results(10)))
+                .expectError(IllegalStateException.class)
+                .verify();
+    }
+
+    /**
+     * 구독자가 request(n) 한 만큼만, 그리고 한 번에 readBatchSize 개까지만 커서에 요청한다.
+     */
+    @Test
+    public void readsFollowDownstreamDemand() throws Exception{
+        List<Long> requests = new CopyOnWriteArrayList<>();
+        when(repository.findAll(any(Sort.class))).thenReturn(Flux.range(0, 1_000)
+                .map(i -> new ResultDocument(String.valueOf(i), "s" + i, Instant.EPOCH))
+                .doOnRequest(requests::add));
+        ResultStore store = newStore(100, 100, 16);
+
+        StepVerifier.create(store.findAll(), 0)
+                .expectSubscription()
+                .expectNoEvent(Duration.ofMillis(10))
+                .thenRequest(5)
+                .expectNext(new Result("s0"), new Result("s1"), new Result("s2"), new Result("s3"), new Result("s4"))
+                .thenCancel()
+                .verify();
+
+        assertEquals(1, requests.size());
+        assertTrue(requests.stream().allMatch(n -> n <= 16));
+
+        requests.clear();
+        StepVerifier.create(store.findAll())
+                .expectNextCount(1_000)
+                .verifyComplete();
+        assertTrue(requests.stream().allMatch(n -> n <= 16));
+    }
+
+    /**
+     * 컬렉션이 없을 때만 capped 컬렉션을 만든다.
+     */
+    @Test
+    public void ensureCappedCreatesOnlyMissingCollection() throws Exception{
+        ResultStore store = newStore(100, 100, 16);
+        when(operations.collectionExists(ResultDocument.class)).thenReturn(Mono.just(true));
+
+        StepVerifier.create(store.ensureCapped(1 << 20)).verifyComplete();
+        verify(operations, never()).createCollection(eq(ResultDocument.class), any(CollectionOptions.class));
+
+        when(operations.collectionExists(ResultDocument.class)).thenReturn(Mono.just(false));
+        when(operations.createCollection(eq(ResultDocument.class), any(CollectionOptions.class))).thenReturn(Mono.empty());
+
+        StepVerifier.create(store.ensureCapped(1 << 20)).verifyComplete();
+        verify(operations).createCollection(eq(ResultDocument.class), any(CollectionOptions.class));
+    }
+}
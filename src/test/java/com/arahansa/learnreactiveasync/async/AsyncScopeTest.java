@@ -0,0 +1,176 @@
+package com.arahansa.learnreactiveasync.async;
+
+import com.arahansa.learnreactiveasync.timer.HashedWheelTimer;
+import com.arahansa.learnreactiveasync.timer.TimeoutService;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class AsyncScopeTest {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(8);
+
+    @After
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private static String sleepThen(long millis, String value) throws InterruptedException {
+        Thread.sleep(millis);
+        return value;
+    }
+
+    @Test
+    public void allOfTypedKeepsInputOrder() throws Exception{
+        CompletableFuture<String> slow = CompletableFuture.supplyAsync(() -> {
+            try {
+                return sleepThen(50, "Hello");
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        }, executor);
+        CompletableFuture<String> fast = CompletableFuture.completedFuture("World");
+        List<String> results = AsyncScope.<String>allOfTyped(slow, fast).get(1, TimeUnit.SECONDS);
+        assertEquals(Arrays.asList("Hello", "World"), results);
+    }
+
+    /**
+     * 하나가 실패하면 바로 실패하고, 돌고 있던 형제 작업은 interrupt 된다.
+     */
+    @Test
+    public void failFastInterruptsSiblings() throws Exception{
+        CountDownLatch started = new CountDownLatch(3);
+        CountDownLatch interrupted = new CountDownLatch(3);
+        try (AsyncScope<String> scope = AsyncScope.open(executor)) {
+            for (int i = 0; i < 3; i++) {
+                scope.fork(() -> {
+                    started.countDown();
+                    try {
+                        return sleepThen(10_000, "slow");
+                    } catch (InterruptedException e) {
+                        interrupted.countDown();
+                        throw e;
+                    }
+                });
+            }
+            scope.fork(() -> {
+                started.await();
+                throw new IllegalStateException("backend down");
+            });
+            long start = System.nanoTime();
+            try {
+                scope.all().get(1, TimeUnit.SECONDS);
+                fail();
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof IllegalStateException);
+            }
+            assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+            assertTrue(interrupted.await(1, TimeUnit.SECONDS));
+        }
+    }
+
+    /**
+     * 결과를 기다리던 쪽이 깨어날 때는 나머지가 이미 취소되어 있다.
+     */
+    @Test
+    public void siblingsCancelledBeforeResultCompletes() throws Exception{
+        CompletableFuture<String> failing = new CompletableFuture<>();
+        CompletableFuture<String> sibling = new CompletableFuture<>();
+        CompletableFuture<List<String>> all = AsyncScope.allOfTyped(Arrays.asList(failing, sibling));
+        CompletableFuture<Boolean> seenByCaller = all.handle((value, ex) -> sibling.isCancelled());
+        failing.completeExceptionally(new IllegalStateException("boom"));
+        assertTrue(seenByCaller.get());
+        assertTrue(all.handle((value, ex) -> ex instanceof IllegalStateException).get());
+
+        CompletableFuture<String> first = new CompletableFuture<>();
+        CompletableFuture<String> rest = new CompletableFuture<>();
+        CompletableFuture<List<String>> firstOne = AsyncScope.firstN(1, Arrays.asList(first, rest));
+        CompletableFuture<Boolean> restCancelled = firstOne.thenApply(value -> rest.isCancelled());
+        first.complete("first");
+        assertTrue(restCancelled.get());
+        assertEquals(Arrays.asList("first"), firstOne.get());
+    }
+
+    @Test
+    public void firstNSuccesses() throws Exception{
+        CountDownLatch interrupted = new CountDownLatch(1);
+        try (AsyncScope<String> scope = AsyncScope.open(executor)) {
+            scope.fork(() -> sleepThen(30, "b"));
+            scope.fork(() -> "a");
+            scope.fork(() -> {
+                throw new IllegalStateException("ignored while n can still be reached");
+            });
+            scope.fork(() -> {
+                try {
+                    return sleepThen(10_000, "never");
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                    throw e;
+                }
+            });
+            List<String> firstTwo = scope.firstN(2).get(1, TimeUnit.SECONDS);
+            assertEquals(Arrays.asList("a", "b"), firstTwo);
+            assertTrue(interrupted.await(1, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void firstNFailsWhenUnreachable() throws Exception{
+        CompletableFuture<String> ok = CompletableFuture.completedFuture("ok");
+        CompletableFuture<String> bad1 = new CompletableFuture<>();
+        CompletableFuture<String> bad2 = new CompletableFuture<>();
+        CompletableFuture<List<String>> two = AsyncScope.firstN(2, Arrays.asList(ok, bad1, bad2));
+        bad1.completeExceptionally(new IllegalStateException("1"));
+        assertTrue(!two.isDone());
+        bad2.completeExceptionally(new IllegalStateException("2"));
+        assertTrue(two.isCompletedExceptionally());
+    }
+
+    @Test
+    public void deadlineCancelsScope() throws Exception{
+        CountDownLatch interrupted = new CountDownLatch(1);
+        try (HashedWheelTimer timer = new HashedWheelTimer(Executors.defaultThreadFactory(), 5, TimeUnit.MILLISECONDS, 64);
+             AsyncScope<String> scope = AsyncScope.<String>open(executor)
+                     .withDeadline(new TimeoutService(timer), 50, TimeUnit.MILLISECONDS)) {
+            scope.fork(() -> "fast");
+            CompletableFuture<String> slow = scope.fork(() -> {
+                try {
+                    return sleepThen(10_000, "slow");
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                    throw e;
+                }
+            });
+            try {
+                scope.all().get(1, TimeUnit.SECONDS);
+                fail();
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof TimeoutException);
+            }
+            assertTrue(slow.isCancelled());
+            assertTrue(interrupted.await(1, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void closeCancelsUnfinished() throws Exception{
+        CompletableFuture<String> pending;
+        try (AsyncScope<String> scope = AsyncScope.open(executor)) {
+            pending = scope.fork(() -> sleepThen(10_000, "late"));
+        }
+        assertTrue(pending.isCancelled());
+    }
+}
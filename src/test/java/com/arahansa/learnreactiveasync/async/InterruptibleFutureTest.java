@@ -0,0 +1,223 @@
+package com.arahansa.learnreactiveasync.async;
+
+import com.arahansa.learnreactiveasync.executor.ExecutorRegistry;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class InterruptibleFutureTest {
+
+    private final ExecutorService pool = Executors.newFixedThreadPool(4);
+    private final ExecutorRegistry executorRegistry = new ExecutorRegistry();
+
+    @After
+    public void shutdown() {
+        pool.shutdownNow();
+        executorRegistry.close();
+    }
+
+    private static Callable<String> sleepUntilInterrupted(CountDownLatch started, CountDownLatch interrupted) {
+        return () -> {
+            started.countDown();
+            try {
+                TimeUnit.SECONDS.sleep(30);
+                return "slow";
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+                throw e;
+            }
+        };
+    }
+
+    /**
+     * 일반 CompletableFuture 와 같은 결과를 낸다.
+     */
+    @Test
+    public void behavesLikeCompletableFuture() throws Exception{
+        InterruptibleFuture<String> hello = InterruptibleFuture.supplyAsync(() -> "Hello", pool);
+
+        assertEquals("Hello World", hello.thenApply(s -> s + " World").get());
+        assertEquals("Hello World", hello.thenCompose(s -> CompletableFuture.supplyAsync(() -> s + " World")).get());
+        assertEquals("Hello World", hello.thenComposeAsync(s -> InterruptibleFuture.supplyAsync(() -> s + " World"), pool).get());
+        assertEquals("Hello World", hello.thenCombine(CompletableFuture.supplyAsync(() -> " World"), (a, b) -> a + b).get());
+        assertEquals("Hello World", hello.thenCombineAsync(CompletableFuture.supplyAsync(() -> " World"), (a, b) -> a + b, pool).get());
+        assertEquals("HELLO", hello.thenApplyAsync(String::toUpperCase, pool).get());
+
+        InterruptibleFuture<String> failed = InterruptibleFuture.supplyAsync(() -> {
+            throw new IllegalStateException("Computation error!");
+        }, pool);
+        assertEquals("Hello, Stranger!", failed.handle((s, t) -> s != null ? s : "Hello, Stranger!").get());
+        assertEquals("Hello, Stranger!", failed.exceptionally(t -> "Hello, Stranger!").get());
+        try {
+            failed.thenApply(s -> s + "!").whenCompleteAsync((s, t) -> { }, pool).get();
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+    }
+
+    /**
+     * thenApply / thenCombine 으로 이어진 마지막 단계를 취소하면 맨 위의 작업 스레드까지 interrupt 된다.
+     */
+    @Test
+    public void cancelPropagatesUpstreamAndInterrupts() throws Exception{
+        CountDownLatch started = new CountDownLatch(2);
+        CountDownLatch interrupted = new CountDownLatch(2);
+        InterruptibleFuture<String> left = InterruptibleFuture.callAsync(sleepUntilInterrupted(started, interrupted), pool);
+        InterruptibleFuture<String> right = InterruptibleFuture.callAsync(sleepUntilInterrupted(started, interrupted), pool);
+        CompletableFuture<String> combined = left.thenApply(String::trim).thenCombine(right, (a, b) -> a + b);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        assertTrue(combined.cancel(true));
+
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+        assertTrue(left.isCancelled());
+        assertTrue(right.isCancelled());
+    }
+
+    /**
+     * 한 갈래를 바깥에서 complete 해도 다른 갈래가 남아 있으면 공유하는 위쪽은 계속 돌고, 남은 갈래는 위쪽 결과로 끝난다.
+     */
+    @Test
+    public void completingOneBranchKeepsSharedUpstream() throws Exception{
+        InterruptibleFuture<String> a = new InterruptibleFuture<>();
+        InterruptibleFuture<String> b = a.thenApply(s -> s + "b");
+        InterruptibleFuture<String> c = a.thenApply(s -> s + "c");
+
+        assertTrue(b.complete("x"));
+
+        assertFalse(a.isDone());
+        assertFalse(c.isDone());
+        a.complete("a");
+        assertEquals("ac", c.get(5, TimeUnit.SECONDS));
+        assertEquals("x", b.get());
+    }
+
+    /**
+     * 공유하는 위쪽은 마지막 갈래까지 취소되거나 끝났을 때 취소되고 interrupt 된다.
+     */
+    @Test
+    public void sharedUpstreamCancelledAfterLastBranch() throws Exception{
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        InterruptibleFuture<String> a = InterruptibleFuture.callAsync(sleepUntilInterrupted(started, interrupted), pool);
+        InterruptibleFuture<String> b = a.thenApply(s -> s + "b");
+        InterruptibleFuture<String> c = a.thenApplyAsync(s -> s + "c", pool);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        assertTrue(b.cancel(true));
+        assertFalse(a.isDone());
+        assertFalse(c.isDone());
+        assertEquals(1, interrupted.getCount());
+
+        assertTrue(c.complete("x"));
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+        assertTrue(a.isCancelled());
+    }
+
+    /**
+     * 타임아웃으로 실패해도 위쪽이 취소된다. thenCompose 가 돌려준 단계의 작업도 interrupt 된다.
+     */
+    @Test
+    public void timeoutInterruptsComposedStage() throws Exception{
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        InterruptibleFuture<String> result = InterruptibleFuture.supplyAsync(() -> "Hello", pool)
+                .thenCompose(s -> InterruptibleFuture.callAsync(sleepUntilInterrupted(started, interrupted), pool));
+
+        executorRegistry.timeouts().orTimeout(result, 100, TimeUnit.MILLISECONDS);
+
+        try {
+            result.get();
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof TimeoutException);
+        }
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Async 단계의 함수는 실행 중에 취소되면 interrupt 된다.
+     */
+    @Test
+    public void asyncStageFunctionIsInterrupted() throws Exception{
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        InterruptibleFuture<String> result = InterruptibleFuture.supplyAsync(() -> "Hello", pool)
+                .thenApplyAsync(s -> {
+                    started.countDown();
+                    try {
+                        TimeUnit.SECONDS.sleep(30);
+                    } catch (InterruptedException e) {
+                        interrupted.countDown();
+                    }
+                    return s;
+                }, pool);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        result.cancel(true);
+
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+        try {
+            result.get();
+            fail();
+        } catch (CancellationException expected) {
+        }
+    }
+
+    /**
+     * applyToEither 는 먼저 끝난 쪽으로 완료되고 진 쪽은 취소된다.
+     */
+    @Test
+    public void eitherCancelsLoser() throws Exception{
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        InterruptibleFuture<String> slow = InterruptibleFuture.callAsync(sleepUntilInterrupted(started, interrupted), pool);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        String result = slow.applyToEither(InterruptibleFuture.supplyAsync(() -> "fast", pool), s -> s).get();
+
+        assertEquals("fast", result);
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+    }
+
+    /**
+     * 일반 CompletableFuture 체인은 취소해도 위쪽 작업이 계속 돈다. (비교용)
+     */
+    @Test
+    public void plainCompletableFutureKeepsRunning() throws Exception{
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<String> upstream = CompletableFuture.supplyAsync(() -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "done";
+        }, pool);
+        CompletableFuture<String> downstream = upstream.thenApply(s -> s + "!");
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        downstream.cancel(true);
+
+        assertTrue(!upstream.isDone());
+        release.countDown();
+        assertEquals("done", upstream.get(5, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,108 @@
+package com.arahansa.learnreactiveasync.async;
+
+import org.junit.Test;
+import reactor.test.StepVerifier;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PromiseTest {
+
+    /**
+     * Async02 의 wait/notify 대신 Promise 로 결과를 넘긴다. 기다리는 쪽은 콜백만 등록한다.
+     */
+    @Test
+    public void replaceWaitNotify() throws Exception{
+        Promise<Async02.Result> promise = new Promise<>();
+
+        Thread thread = new Thread(() -> promise.complete(Async02.getApi()));
+        thread.start();
+
+        assertEquals("Result{ s='s'}", promise.toCompletableFuture().get(1, TimeUnit.SECONDS).toString());
+    }
+
+    @Test
+    public void completeOnlyOnce() throws Exception{
+        Promise<String> promise = new Promise<>();
+        List<String> seen = new ArrayList<>();
+        promise.onComplete((value, ex) -> seen.add("first " + value));
+        promise.onComplete((value, ex) -> seen.add("second " + value));
+
+        assertTrue(promise.complete("a"));
+        assertFalse(promise.complete("b"));
+        assertFalse(promise.fail(new IllegalStateException()));
+        promise.onComplete((value, ex) -> seen.add("late " + value));
+
+        assertEquals("[first a, second a, late a]", seen.toString());
+        assertEquals("a", promise.getNow("absent"));
+    }
+
+    /**
+     * 콜백 하나가 예외를 던져도 나머지 콜백은 실행되고, complete 를 부른 쪽으로 예외가 나오지 않는다.
+     */
+    @Test
+    public void throwingCallbackDoesNotStopOthers() throws Exception{
+        Promise<String> promise = new Promise<>();
+        List<String> seen = new ArrayList<>();
+        promise.onComplete((value, ex) -> seen.add("first " + value));
+        promise.onComplete((value, ex) -> {
+            throw new IllegalStateException("callback failed");
+        });
+        promise.onComplete((value, ex) -> seen.add("third " + value));
+
+        assertTrue(promise.complete("a"));
+        promise.onComplete((value, ex) -> {
+            throw new IllegalStateException("late callback failed");
+        });
+        promise.onComplete((value, ex) -> seen.add("late " + value));
+
+        assertEquals("[first a, third a, late a]", seen.toString());
+    }
+
+    /**
+     * 여러 getApi 호출의 결과를 스레드를 세우지 않고 모은다.
+     */
+    @Test
+    public void fanIn() throws Exception{
+        ExecutorService es = Executors.newFixedThreadPool(4);
+        List<Promise<Async02.Result>> promises = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            Promise<Async02.Result> promise = new Promise<>();
+            es.execute(() -> promise.complete(Async02.getApi()));
+            promises.add(promise);
+        }
+
+        List<Async02.Result> results = Promise.<Async02.Result>all(promises).toCompletableFuture().get(1, TimeUnit.SECONDS);
+        assertEquals(1000, results.size());
+        assertEquals(1, results.stream().map(Object::toString).collect(Collectors.toSet()).size());
+        es.shutdown();
+    }
+
+    @Test
+    public void adapters() throws Exception{
+        StepVerifier.create(Promise.from(CompletableFuture.supplyAsync(() -> "Hello")).toMono())
+                .expectNext("Hello")
+                .verifyComplete();
+
+        Promise<String> failed = new Promise<>();
+        failed.fail(new IllegalStateException("boom"));
+        StepVerifier.create(failed.toMono())
+                .expectError(IllegalStateException.class)
+                .verify();
+
+        CompletableFuture<String> future = new CompletableFuture<>();
+        Promise<String> promise = Promise.from(future);
+        future.completeExceptionally(new IllegalArgumentException());
+        assertTrue(promise.isDone());
+        assertTrue(promise.toCompletableFuture().isCompletedExceptionally());
+    }
+}
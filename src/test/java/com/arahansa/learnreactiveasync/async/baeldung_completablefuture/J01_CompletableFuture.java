@@ -1,11 +1,14 @@
 package com.arahansa.learnreactiveasync.async.baeldung_completablefuture;
 
+import com.arahansa.learnreactiveasync.async.AsyncScope;
+import com.arahansa.learnreactiveasync.executor.ExecutorRegistry;
+import org.junit.AfterClass;
 import org.junit.Test;
 
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -17,6 +20,14 @@ import static org.junit.Assert.assertTrue;
  *
  */
 public class J01_CompletableFuture {
+
+    // 호출마다 Executors.newCachedThreadPool() 을 만들면 스레드가 계속 늘어나고 종료도 안되므로 공용 풀과 타이머를 사용한다.
+    private static final ExecutorRegistry executorRegistry = new ExecutorRegistry();
+
+    @AfterClass
+    public static void closeExecutors() {
+        executorRegistry.close();
+    }
     /**
      *
      비동기 연산은 다루기 어렵지만 보통 우리는 어떤 단계들의 연속적인 연산으로 이해하기를 바래
@@ -37,11 +48,8 @@ public class J01_CompletableFuture {
     public Future<String>  calculateAsync() throws InterruptedException{
         CompletableFuture<String> completablefuture = new CompletableFuture<>();
 
-        Executors.newCachedThreadPool().submit(()->{
-            Thread.sleep(2000);
-            completablefuture.complete("Hello");
-            return null;
-        });
+        // 풀의 스레드에서 Thread.sleep(2000) 하고 complete 하는 대신 타이머가 2초 뒤에 완료시킨다.
+        executorRegistry.timeouts().completeOnTimeout(completablefuture, "Hello", 2000, TimeUnit.MILLISECONDS);
 
         return completablefuture;
     }
@@ -59,17 +67,14 @@ public class J01_CompletableFuture {
      이것은 Future 의 cancel 메서드를 통해서 이뤄질 수 있습니다.
      이 메서드는 boolean 아규먼트 mayInterruptIfRunning 을 받습니다.
      CompletableFuture 를 위한 조정작업을 하는데 인터럽트가 사용되지 않기 때문에, 이러한 CompletableFuture 의 경우 어떠한 효과도 없습니다.
+     (체인을 거슬러 취소하고 실행 중인 작업을 interrupt 하려면 InterruptibleFuture 를 씁니다.)
 
      여기 비동기메서드의 수정된 버젼을 봅시다.
      */
     public Future<String> calculateAsyncWithCancellation() throws InterruptedException {
         CompletableFuture<String> completableFuture = new CompletableFuture<>();
 
-        Executors.newCachedThreadPool().submit(() -> {
-            Thread.sleep(500);
-            completableFuture.cancel(false);
-            return null;
-        });
+        executorRegistry.timeouts().cancelAfter(completableFuture, 500, TimeUnit.MILLISECONDS);
 
         return completableFuture;
     }
@@ -170,6 +175,24 @@ public class J01_CompletableFuture {
         assertEquals("Hello Beautiful World", combined);
     }
 
+    /**
+     * AsyncScope.allOfTyped 는 List&lt;String&gt; 으로 바로 완료되므로 다시 join 할 필요가 없다.
+     * 하나가 실패하면 나머지는 취소된다.
+     */
+    @Test
+    public void runningMultipleFutureParallelTyped() throws Exception{
+        CompletableFuture<String> future1
+                = CompletableFuture.supplyAsync(() -> "Hello");
+        CompletableFuture<String> future2
+                = CompletableFuture.supplyAsync(() -> "Beautiful");
+        CompletableFuture<String> future3
+                = CompletableFuture.supplyAsync(() -> "World");
+
+        String combined = String.join(" ", AsyncScope.allOfTyped(future1, future2, future3).get());
+
+        assertEquals("Hello Beautiful World", combined);
+    }
+
     @Test
     public void handlingErrors() throws Exception{
         String name = null;
@@ -53,6 +53,7 @@ public class J01_ExecutorServiceExample {
         System.out.println(s);
 
         // Invoke Any 는 ES 에 콜렉션 태스크를 할당하고 각각 실행되게 한다.. 그리고 성공한 실행이 있다면 하나의 실행결과를 리턴한다.
+        // 모든 태스크를 한꺼번에 실행하므로 태스크 수만큼 부하가 늘어난다. 꼬리 지연만 줄이려면 HedgingExecutor.invokeAny 를 쓴다.
         final String s1 = executorService.invokeAny(callableTasks);
         System.out.println("invokeAny result : "+s1);
 
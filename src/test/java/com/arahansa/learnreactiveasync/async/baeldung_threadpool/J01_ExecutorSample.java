@@ -1,5 +1,7 @@
 package com.arahansa.learnreactiveasync.async.baeldung_threadpool;
 
+import com.arahansa.learnreactiveasync.executor.EventLoopGroup;
+import com.arahansa.learnreactiveasync.forkjoin.FlatTree;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListeningExecutorService;
@@ -131,6 +133,23 @@ public class J01_ExecutorSample {
         System.out.println("counter :"+counter);
     }
 
+    /**
+     * EventLoopGroup 은 같은 key 의 태스크를 항상 같은 스레드에 넣으므로
+     * 위와 같은 set(1) → compareAndSet(1, 2) 순서가 key 마다 지켜지고, 다른 key 는 다른 루프에서 병렬로 돈다.
+     * @throws Exception
+     */
+    @Test
+    public void eventLoopGroupPerKeyOrdering() throws Exception{
+        try (EventLoopGroup group = new EventLoopGroup("sample-loop", 2)) {
+            AtomicInteger counter = new AtomicInteger();
+            group.execute("counter", () -> counter.set(1));
+            group.execute("counter", () -> counter.compareAndSet(1, 2));
+
+            group.next("counter").submit(() -> null).get();
+            assertEquals(2, counter.get());
+        }
+    }
+
     // 3.3 스케쥴된 스레드 풀 Executor
 
     /**
@@ -231,6 +250,21 @@ public class J01_ExecutorSample {
         System.out.println("sum :"+sum);
     }
 
+    /**
+     * 같은 트리를 FlatTree 로 바꾸면 노드 객체 대신 int 배열로 레벨별 병렬 합을 구한다.
+     */
+    @Test
+    public void computeFlatTree() throws Exception{
+        TreeNode tree = new TreeNode(5,
+                new TreeNode(3), new TreeNode(2,
+                new TreeNode(2), new TreeNode(8)));
+
+        FlatTree flatTree = FlatTree.from(tree, node -> node.value, node -> node.children);
+
+        ForkJoinPool forkJoinPool = ForkJoinPool.commonPool();
+        assertEquals((long) forkJoinPool.invoke(new CountingTask(tree)), flatTree.sum(forkJoinPool));
+    }
+
 
     /**
      * MoreExecutors.directExecutor() 를 통해서 Executor 를 받는 모습
@@ -0,0 +1,291 @@
+package com.arahansa.learnreactiveasync.cache;
+
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class AsyncLoadingCacheTest {
+
+    private final ExecutorService pool = Executors.newFixedThreadPool(8);
+
+    @After
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    private static class FakeTicker extends Ticker {
+
+        private final AtomicLong nanos = new AtomicLong();
+
+        @Override
+        public long read() {
+            return nanos.get();
+        }
+
+        void advance(long duration, TimeUnit unit) {
+            nanos.addAndGet(unit.toNanos(duration));
+        }
+    }
+
+    /**
+     * 여러 스레드에서 같은 key 를 동시에 물어도 로딩은 한 번만 일어나고 모두 같은 값을 받는다.
+     */
+    @Test
+    public void concurrentMissesShareOneLoad() throws Exception{
+        AtomicInteger loads = new AtomicInteger();
+        CompletableFuture<String> backend = new CompletableFuture<>();
+        AsyncLoadingCache<String, String> cache = new AsyncLoadingCache<>(CacheBuilder.newBuilder(), key -> {
+            loads.incrementAndGet();
+            return backend;
+        });
+
+        int callers = 1_000;
+        CountDownLatch start = new CountDownLatch(1);
+        List<CompletableFuture<CompletableFuture<String>>> requests = new ArrayList<>();
+        for (int i = 0; i < callers; i++) {
+            requests.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return cache.get("API");
+            }, pool));
+        }
+        start.countDown();
+        List<CompletableFuture<String>> results = new ArrayList<>();
+        for (CompletableFuture<CompletableFuture<String>> request : requests) {
+            results.add(request.get(5, TimeUnit.SECONDS));
+        }
+        backend.complete("result");
+
+        for (CompletableFuture<String> result : results) {
+            assertEquals("result", result.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, loads.get());
+        CacheStats stats = cache.stats();
+        assertEquals(1, stats.missCount());
+        assertEquals(callers - 1, stats.hitCount());
+        assertEquals(1, stats.loadSuccessCount());
+    }
+
+    /**
+     * 한 요청의 future 를 취소해도 진행 중인 로딩과 다른 요청에는 영향이 없다.
+     */
+    @Test
+    public void cancellingOneCallerDoesNotCancelSharedLoad() throws Exception{
+        CompletableFuture<String> backend = new CompletableFuture<>();
+        AsyncLoadingCache<String, String> cache = new AsyncLoadingCache<>(CacheBuilder.newBuilder(), key -> backend);
+
+        CompletableFuture<String> first = cache.get("API");
+        CompletableFuture<String> second = cache.get("API");
+        first.cancel(true);
+        backend.complete("result");
+
+        assertEquals("result", second.get(5, TimeUnit.SECONDS));
+        assertEquals("result", cache.get("API").get(5, TimeUnit.SECONDS));
+    }
+
+    /**
+     * 실패한 로딩은 캐시에 남지 않고 다음 요청이 다시 로딩한다.
+     */
+    @Test
+    public void failedLoadIsNotCached() throws Exception{
+        AtomicInteger loads = new AtomicInteger();
+        AsyncLoadingCache<String, String> cache = new AsyncLoadingCache<>(CacheBuilder.newBuilder(), key ->
+                CompletableFuture.supplyAsync(() -> {
+                    if (loads.incrementAndGet() == 1) {
+                        throw new IllegalStateException("backend down");
+                    }
+                    return "result";
+                }, pool));
+
+        try {
+            cache.get("API").get(5, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        assertEquals("result", cache.get("API").get(5, TimeUnit.SECONDS));
+        assertEquals(2, loads.get());
+        assertEquals(1, cache.stats().loadExceptionCount());
+    }
+
+    /**
+     * refreshAfterWrite 가 지나면 이전 값을 바로 돌려주면서 백그라운드에서 다시 로딩하고, 끝나면 새 값을 돌려준다.
+     */
+    @Test
+    public void refreshAheadServesStaleValueWhileReloading() throws Exception{
+        FakeTicker ticker = new FakeTicker();
+        List<CompletableFuture<String>> backends = new ArrayList<>();
+        AsyncLoadingCache<String, String> cache = new AsyncLoadingCache<>(CacheBuilder.newBuilder()
+                .ticker(ticker)
+                .refreshAfterWrite(1, TimeUnit.MINUTES), key -> {
+            CompletableFuture<String> backend = new CompletableFuture<>();
+            synchronized (backends) {
+                backends.add(backend);
+            }
+            return backend;
+        });
+        CompletableFuture<String> first = cache.get("API");
+        backends.get(0).complete("v1");
+        assertEquals("v1", first.get(5, TimeUnit.SECONDS));
+
+        ticker.advance(2, TimeUnit.MINUTES);
+        CompletableFuture<String> stale = cache.get("API");
+
+        assertTrue(stale.isDone());
+        assertEquals("v1", stale.get());
+        assertEquals(2, backends.size());
+        // 다시 로딩 중에 온 요청도 이전 값을 받고 로딩을 더 시작하지 않는다.
+        assertEquals("v1", cache.get("API").get());
+        assertEquals(2, backends.size());
+
+        backends.get(1).complete("v2");
+        assertEquals("v2", cache.get("API").get(5, TimeUnit.SECONDS));
+    }
+
+    /**
+     * 다시 로딩이 실패하면 이전 값을 계속 쓴다.
+     */
+    @Test
+    public void failedRefreshKeepsPreviousValue() throws Exception{
+        FakeTicker ticker = new FakeTicker();
+        AtomicInteger loads = new AtomicInteger();
+        AsyncLoadingCache<String, String> cache = new AsyncLoadingCache<>(CacheBuilder.newBuilder()
+                .ticker(ticker)
+                .refreshAfterWrite(1, TimeUnit.MINUTES), key -> {
+            CompletableFuture<String> backend = new CompletableFuture<>();
+            if (loads.incrementAndGet() == 1) {
+                backend.complete("v1");
+            } else {
+                backend.completeExceptionally(new IllegalStateException("backend down"));
+            }
+            return backend;
+        });
+        assertEquals("v1", cache.get("API").get());
+
+        ticker.advance(2, TimeUnit.MINUTES);
+
+        assertEquals("v1", cache.get("API").get());
+        assertEquals("v1", cache.get("API").get());
+        // 실패하면 쓴 시각이 바뀌지 않으므로 다음 읽기에서 다시 시도한다.
+        assertEquals(3, loads.get());
+        assertEquals(2, cache.stats().loadExceptionCount());
+    }
+
+    /**
+     * expireAfterWrite 가 지나면 다시 로딩하고, maximumSize 를 넘으면 오래된 것부터 버린다.
+     */
+    @Test
+    public void evictsBySizeAndTime() throws Exception{
+        FakeTicker ticker = new FakeTicker();
+        AtomicInteger loads = new AtomicInteger();
+        AsyncLoadingCache<Integer, Integer> cache = new AsyncLoadingCache<>(CacheBuilder.newBuilder()
+                .ticker(ticker)
+                .concurrencyLevel(1)
+                .maximumSize(2)
+                .expireAfterWrite(1, TimeUnit.MINUTES)
+                .recordStats(), key -> {
+            loads.incrementAndGet();
+            return CompletableFuture.completedFuture(key * 10);
+        });
+
+        assertEquals(10, (int) cache.get(1).get());
+        assertEquals(10, (int) cache.get(1).get());
+        assertEquals(1, loads.get());
+
+        ticker.advance(2, TimeUnit.MINUTES);
+        assertNull(cache.getIfPresent(1));
+        assertEquals(10, (int) cache.get(1).get());
+        assertEquals(2, loads.get());
+
+        cache.get(2).get();
+        cache.get(3).get();
+        assertEquals(2, cache.size());
+        assertTrue(cache.stats().evictionCount() >= 1);
+    }
+
+    /**
+     * expireAfterWrite 는 로딩을 시작한 때가 아니라 값이 생긴 때부터 센다.
+     */
+    @Test
+    public void expiryCountsFromLoadCompletion() throws Exception{
+        FakeTicker ticker = new FakeTicker();
+        AtomicInteger loads = new AtomicInteger();
+        CompletableFuture<String> backend = new CompletableFuture<>();
+        AsyncLoadingCache<String, String> cache = new AsyncLoadingCache<>(CacheBuilder.newBuilder()
+                .ticker(ticker)
+                .expireAfterWrite(1, TimeUnit.MINUTES), key -> {
+            loads.incrementAndGet();
+            return backend;
+        });
+
+        CompletableFuture<String> first = cache.get("API");
+        ticker.advance(50, TimeUnit.SECONDS);
+        backend.complete("result");
+        assertEquals("result", first.get(5, TimeUnit.SECONDS));
+
+        // 로딩 시작부터는 1분이 넘었지만 완료부터는 아니다.
+        ticker.advance(30, TimeUnit.SECONDS);
+        assertEquals("result", cache.getIfPresent("API").get());
+        assertEquals(1, loads.get());
+
+        ticker.advance(31, TimeUnit.SECONDS);
+        assertNull(cache.getIfPresent("API"));
+    }
+
+    /**
+     * 넘겨받은 CacheBuilder 에 recordStats 같은 설정을 더하지 않는다.
+     */
+    @Test
+    public void builderIsNotModified() throws Exception{
+        CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder();
+        AsyncLoadingCache<String, String> cache = new AsyncLoadingCache<>(builder, CompletableFuture::completedFuture);
+        assertEquals("API", cache.get("API").get());
+        assertEquals(1, cache.stats().missCount());
+
+        Cache<Object, Object> other = builder.build();
+        other.getIfPresent("API");
+        assertEquals(0, other.stats().missCount());
+    }
+
+    /**
+     * 로딩 시간은 future 를 만드는 시간이 아니라 future 가 끝날 때까지로 잰다.
+     */
+    @Test
+    public void loadTimeCoversAsyncCompletion() throws Exception{
+        AsyncLoadingCache<String, String> cache = new AsyncLoadingCache<>(CacheBuilder.newBuilder(), key ->
+                CompletableFuture.supplyAsync(() -> {
+                    try {
+                        TimeUnit.MILLISECONDS.sleep(50);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return key;
+                }, pool));
+
+        cache.get("API").get(5, TimeUnit.SECONDS);
+
+        assertTrue(cache.stats().totalLoadTime() >= TimeUnit.MILLISECONDS.toNanos(50));
+    }
+}
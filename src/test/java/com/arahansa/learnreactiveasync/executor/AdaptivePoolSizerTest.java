@@ -0,0 +1,83 @@
+package com.arahansa.learnreactiveasync.executor;
+
+import org.junit.Test;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AdaptivePoolSizerTest {
+
+    private final InstrumentedThreadPoolExecutor executor = new InstrumentedThreadPoolExecutor("adaptive", 1, 1,
+            60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>());
+
+    @Test
+    public void growUnderLoadAndShrinkWhenIdle() throws Exception{
+        AdaptivePoolSizer sizer = new AdaptivePoolSizer(executor, 2, 16, 5, TimeUnit.MILLISECONDS);
+        assertEquals(2, executor.getCorePoolSize());
+
+        for (int i = 0; i < 200; i++) {
+            executor.execute(() -> {
+                try {
+                    TimeUnit.MILLISECONDS.sleep(10);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        int size = 2;
+        for (int i = 0; i < 5; i++) {
+            TimeUnit.MILLISECONDS.sleep(50);
+            int next = sizer.adjust();
+            assertTrue(next >= size);
+            size = next;
+        }
+        assertTrue("grew to " + size, size > 2);
+        assertTrue(size <= 16);
+
+        while (executor.getQueue().size() > 0 || executor.getActiveCount() > 0) {
+            TimeUnit.MILLISECONDS.sleep(20);
+        }
+        sizer.adjust();
+        for (int i = 0; i < 10; i++) {
+            TimeUnit.MILLISECONDS.sleep(10);
+            size = sizer.adjust();
+        }
+        assertEquals(2, size);
+        assertEquals(2, executor.getMaximumPoolSize());
+        executor.shutdown();
+    }
+
+    /**
+     * 큐에 한도가 있으면 core 를 넘는 스레드가 생길 수 있으므로 max 만 조절한다.
+     */
+    @Test
+    public void boundedQueueResizesOnlyMax() throws Exception{
+        InstrumentedThreadPoolExecutor bounded = new InstrumentedThreadPoolExecutor("adaptive-bounded", 2, 4,
+                60L, TimeUnit.SECONDS, new ArrayBlockingQueue<>(1000));
+        AdaptivePoolSizer sizer = new AdaptivePoolSizer(bounded, 1, 16, 5, TimeUnit.MILLISECONDS);
+        assertEquals(2, bounded.getCorePoolSize());
+        assertEquals(4, bounded.getMaximumPoolSize());
+
+        for (int i = 0; i < 200; i++) {
+            bounded.execute(() -> {
+                try {
+                    TimeUnit.MILLISECONDS.sleep(10);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        TimeUnit.MILLISECONDS.sleep(50);
+        int size = sizer.adjust();
+        assertTrue("grew to " + size, size > 4);
+        assertEquals(size, bounded.getMaximumPoolSize());
+        assertEquals(2, bounded.getCorePoolSize());
+
+        bounded.shutdownNow();
+        assertTrue(bounded.awaitTermination(1, TimeUnit.SECONDS));
+    }
+}
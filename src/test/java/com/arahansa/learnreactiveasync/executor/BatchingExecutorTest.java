@@ -0,0 +1,171 @@
+package com.arahansa.learnreactiveasync.executor;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BatchingExecutorTest {
+
+    private final ExecutorService workers = Executors.newFixedThreadPool(4);
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+    @After
+    public void shutdown() {
+        workers.shutdownNow();
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    public void flushesWhenBatchIsFull() throws Exception{
+        BatchingExecutor executor = new BatchingExecutor(workers, scheduler, 100, 1, TimeUnit.HOURS);
+        List<CompletableFuture<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            int value = i;
+            futures.add(executor.submit(() -> value * 2));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get(1, TimeUnit.SECONDS);
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i * 2, (int) futures.get(i).get());
+        }
+        assertEquals(1000, executor.getSubmittedCount());
+        assertEquals(10, executor.getBatchCount());
+    }
+
+    @Test
+    public void flushesAfterLinger() throws Exception{
+        BatchingExecutor executor = new BatchingExecutor(workers, scheduler, 100, 500, TimeUnit.MICROSECONDS);
+        CompletableFuture<String> future = executor.submit(() -> "lonely");
+        assertEquals("lonely", future.get(1, TimeUnit.SECONDS));
+        assertEquals(1, executor.getBatchCount());
+    }
+
+    /**
+     * 같은 배치의 future 들은 모든 태스크가 끝난 뒤에 한꺼번에 완료된다.
+     */
+    @Test
+    public void completesBatchTogether() throws Exception{
+        BatchingExecutor executor = new BatchingExecutor(workers, scheduler, 2, 1, TimeUnit.HOURS);
+        CountDownLatch second = new CountDownLatch(1);
+        CompletableFuture<String> first = executor.submit(() -> "first");
+        CompletableFuture<String> last = executor.submit(() -> {
+            second.await();
+            return "last";
+        });
+        Thread.sleep(50);
+        assertFalse(first.isDone());
+        second.countDown();
+        assertEquals("last", last.get(1, TimeUnit.SECONDS));
+        assertEquals("first", first.get());
+    }
+
+    @Test
+    public void failureIsolatedToItsFuture() throws Exception{
+        BatchingExecutor executor = new BatchingExecutor(workers, scheduler, 3, 1, TimeUnit.HOURS);
+        AtomicInteger ran = new AtomicInteger();
+        executor.execute(ran::incrementAndGet);
+        CompletableFuture<String> failed = executor.submit(() -> {
+            throw new IllegalStateException("boom");
+        });
+        CompletableFuture<String> ok = executor.submit(() -> "ok");
+        assertEquals("ok", ok.get(1, TimeUnit.SECONDS));
+        try {
+            failed.get();
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        assertEquals(1, ran.get());
+    }
+
+    @Test
+    public void closeFlushesAndRejects() throws Exception{
+        BatchingExecutor executor = new BatchingExecutor(workers, scheduler, 100, 1, TimeUnit.HOURS);
+        CompletableFuture<String> pending = executor.submit(() -> "pending");
+        executor.close();
+        assertEquals("pending", pending.get(1, TimeUnit.SECONDS));
+        try {
+            executor.submit(() -> "late");
+            fail();
+        } catch (RejectedExecutionException expected) {
+        }
+    }
+
+    @Test
+    public void delegateRejectionFailsFutures() throws Exception{
+        workers.shutdown();
+        BatchingExecutor executor = new BatchingExecutor(workers, scheduler, 1, 1, TimeUnit.HOURS);
+        CompletableFuture<String> future = executor.submit(() -> "never");
+        assertTrue(future.isCompletedExceptionally());
+    }
+
+    @Test
+    public void concurrentSubmitters() throws Exception{
+        BatchingExecutor executor = new BatchingExecutor(workers, scheduler, 64, 200, TimeUnit.MICROSECONDS);
+        AtomicInteger sum = new AtomicInteger();
+        ExecutorService producers = Executors.newFixedThreadPool(4);
+        List<CompletableFuture<?>> futures = new ArrayList<>();
+        for (int p = 0; p < 4; p++) {
+            futures.add(CompletableFuture.runAsync(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    executor.execute(sum::incrementAndGet);
+                }
+            }, producers));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get(5, TimeUnit.SECONDS);
+        executor.close();
+        producers.shutdown();
+        workers.shutdown();
+        assertTrue(workers.awaitTermination(5, TimeUnit.SECONDS));
+        assertEquals(40_000, sum.get());
+        assertTrue(executor.getBatchCount() < 40_000);
+    }
+
+    /**
+     * 꽉 차서 내보내는 것과 linger 로 내보내는 것이 겹쳐도 모든 future 가 한 번씩 완료된다.
+     */
+    @Test
+    public void concurrentSubmitsRacingLinger() throws Exception{
+        BatchingExecutor executor = new BatchingExecutor(workers, scheduler, 16, 10, TimeUnit.MICROSECONDS);
+        AtomicInteger runs = new AtomicInteger();
+        ExecutorService producers = Executors.newFixedThreadPool(4);
+        List<CompletableFuture<List<CompletableFuture<Integer>>>> submitted = new ArrayList<>();
+        for (int p = 0; p < 4; p++) {
+            submitted.add(CompletableFuture.supplyAsync(() -> {
+                List<CompletableFuture<Integer>> futures = new ArrayList<>();
+                for (int i = 0; i < 5_000; i++) {
+                    int value = i;
+                    futures.add(executor.submit(() -> {
+                        runs.incrementAndGet();
+                        return value;
+                    }));
+                }
+                return futures;
+            }, producers));
+        }
+        for (CompletableFuture<List<CompletableFuture<Integer>>> producer : submitted) {
+            List<CompletableFuture<Integer>> futures = producer.get(10, TimeUnit.SECONDS);
+            for (int i = 0; i < futures.size(); i++) {
+                assertEquals(i, (int) futures.get(i).get(5, TimeUnit.SECONDS));
+            }
+        }
+        producers.shutdown();
+        assertEquals(20_000, runs.get());
+        assertEquals(20_000, executor.getSubmittedCount());
+    }
+}
@@ -0,0 +1,258 @@
+package com.arahansa.learnreactiveasync.executor;
+
+import com.arahansa.learnreactiveasync.executor.BoundedExecutor.OverflowPolicy;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BoundedExecutorTest {
+
+    private final CountDownLatch latch = new CountDownLatch(1);
+    private BoundedExecutor executor;
+
+    @After
+    public void shutdown() {
+        latch.countDown();
+        executor.shutdownNow();
+    }
+
+    private Object block() throws InterruptedException {
+        latch.await();
+        return null;
+    }
+
+    /**
+     * 스레드 1 개가 막혀 있고 큐 1 칸도 찬 상태를 만든다.
+     */
+    private Future<?> fill(OverflowPolicy policy) throws InterruptedException {
+        executor = new BoundedExecutor("bounded", 1, 1, policy, 100, TimeUnit.MILLISECONDS, Executors.defaultThreadFactory());
+        CountDownLatch started = new CountDownLatch(1);
+        executor.submit(() -> {
+            started.countDown();
+            return block();
+        });
+        // 워커가 첫 태스크를 큐에서 꺼낸 뒤에야 큐 한 칸이 빈다.
+        started.await();
+        return executor.submit(this::block);
+    }
+
+    @Test
+    public void failFast() throws Exception{
+        fill(OverflowPolicy.FAIL_FAST);
+        try {
+            executor.submit(() -> "rejected");
+            fail();
+        } catch (ExecutorOverloadedException expected) {
+        }
+        assertEquals(1, executor.getRejectedCount());
+    }
+
+    /**
+     * 종료된 풀에 제출한 것은 과부하가 아니므로 ExecutorOverloadedException 이 아닌 RejectedExecutionException 이다.
+     */
+    @Test
+    public void failFastAfterShutdown() throws Exception{
+        fill(OverflowPolicy.FAIL_FAST);
+        executor.shutdown();
+        try {
+            executor.submit(() -> "rejected");
+            fail();
+        } catch (ExecutorOverloadedException e) {
+            fail("shut down executor is not overloaded");
+        } catch (RejectedExecutionException expected) {
+        }
+    }
+
+    @Test
+    public void blockWithTimeout() throws Exception{
+        fill(OverflowPolicy.BLOCK);
+        long start = System.nanoTime();
+        try {
+            executor.submit(() -> "rejected");
+            fail();
+        } catch (ExecutorOverloadedException expected) {
+        }
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(100));
+
+        // 자리가 나면 막혀 있던 제출이 들어간다.
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        scheduler.schedule(latch::countDown, 30, TimeUnit.MILLISECONDS);
+        assertEquals("accepted", executor.submit(() -> "accepted").get(1, TimeUnit.SECONDS));
+        scheduler.shutdown();
+    }
+
+    /**
+     * blockTimeout 없이 만든 BLOCK 풀도 바로 실패하지 않고 자리가 날 때까지 기다린다.
+     */
+    @Test
+    public void blockUsesDefaultTimeout() throws Exception{
+        executor = new BoundedExecutor("bounded", 1, 1, OverflowPolicy.BLOCK);
+        CountDownLatch started = new CountDownLatch(1);
+        executor.submit(() -> {
+            started.countDown();
+            return block();
+        });
+        started.await();
+        executor.submit(this::block);
+
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        scheduler.schedule(latch::countDown, 100, TimeUnit.MILLISECONDS);
+        assertEquals("accepted", executor.submit(() -> "accepted").get(1, TimeUnit.SECONDS));
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void callerRuns() throws Exception{
+        fill(OverflowPolicy.CALLER_RUNS);
+        assertEquals(Thread.currentThread().getName(), executor.submit(() -> Thread.currentThread().getName()).get());
+    }
+
+    @Test
+    public void dropOldest() throws Exception{
+        Future<?> oldest = fill(OverflowPolicy.DROP_OLDEST);
+        Future<String> newest = executor.submit(() -> "newest");
+        assertTrue(oldest.isCancelled());
+        latch.countDown();
+        assertEquals("newest", newest.get(1, TimeUnit.SECONDS));
+    }
+
+    /**
+     * 버려진 태스크가 submitAsync 로 들어온 것이면 그 future 도 끝나야 기다리는 쪽이 멈춰 있지 않는다.
+     */
+    @Test
+    public void dropOldestFailsDroppedAsyncTask() throws Exception{
+        executor = new BoundedExecutor("bounded", 1, 1, OverflowPolicy.DROP_OLDEST, 100, TimeUnit.MILLISECONDS, Executors.defaultThreadFactory());
+        CountDownLatch started = new CountDownLatch(1);
+        executor.submit(() -> {
+            started.countDown();
+            return block();
+        });
+        started.await();
+        CompletableFuture<String> dropped = executor.submitAsync(() -> "dropped");
+        assertEquals(0, executor.getWaitingCount());
+        Future<String> newest = executor.submit(() -> "newest");
+
+        assertTrue(dropped.isCompletedExceptionally());
+        try {
+            dropped.join();
+            fail();
+        } catch (Exception e) {
+            assertTrue(e.getCause() instanceof ExecutorOverloadedException);
+        }
+        latch.countDown();
+        assertEquals("newest", newest.get(1, TimeUnit.SECONDS));
+    }
+
+    /**
+     * submitAsync 는 제출한 스레드를 막지 않고, 자리가 나는 순서대로 실행된다. 대기열은 큐 크기까지만 받는다.
+     */
+    @Test
+    public void submitAsyncWaitsForCapacity() throws Exception{
+        executor = new BoundedExecutor("bounded", 1, 4, OverflowPolicy.FAIL_FAST, 100, TimeUnit.MILLISECONDS, Executors.defaultThreadFactory());
+        CountDownLatch started = new CountDownLatch(1);
+        executor.submit(() -> {
+            started.countDown();
+            return block();
+        });
+        started.await();
+        List<CompletableFuture<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            int value = i;
+            futures.add(executor.submitAsync(() -> value));
+        }
+        assertEquals(4, executor.getWaitingCount());
+        assertFalse(futures.get(0).isDone());
+
+        CompletableFuture<Integer> overloaded = executor.submitAsync(() -> -1);
+        assertTrue(overloaded.isCompletedExceptionally());
+        try {
+            overloaded.join();
+            fail();
+        } catch (Exception e) {
+            assertTrue(e.getCause() instanceof ExecutorOverloadedException);
+        }
+        assertEquals(4, executor.getWaitingCount());
+
+        latch.countDown();
+        for (int i = 0; i < 8; i++) {
+            assertEquals(i, (int) futures.get(i).get(1, TimeUnit.SECONDS));
+        }
+        assertEquals(0, executor.getWaitingCount());
+        assertEquals(0, executor.getRejectedCount());
+    }
+
+    /**
+     * admitted 는 결과가 아니라 큐에 들어가는 순간 완료된다.
+     */
+    @Test
+    public void admittedCompletesOnQueueEntry() throws Exception{
+        fill(OverflowPolicy.FAIL_FAST);
+        BoundedExecutor.AsyncSubmission<String> first = executor.submitAsync(() -> "first");
+        BoundedExecutor.AsyncSubmission<String> overloaded = executor.submitAsync(() -> "overloaded");
+        assertFalse(first.admitted().isDone());
+        assertTrue(overloaded.admitted().isCompletedExceptionally());
+
+        // 막혀 있던 태스크 하나가 끝나고 큐의 태스크가 꺼내지면 자리가 난다.
+        latch.countDown();
+        first.admitted().get(1, TimeUnit.SECONDS);
+        assertEquals("first", first.get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void waitingTasksRejectedOnShutdown() throws Exception{
+        fill(OverflowPolicy.FAIL_FAST);
+        CompletableFuture<String> waiting = executor.submitAsync(() -> "never");
+        executor.shutdown();
+        assertTrue(waiting.isCompletedExceptionally());
+        try {
+            waiting.join();
+            fail();
+        } catch (Exception e) {
+            assertTrue(e.getCause() instanceof RejectedExecutionException);
+        }
+    }
+
+    /**
+     * shutdownNow 는 큐에 이미 들어간 submitAsync 태스크의 future 도 끝낸다.
+     */
+    @Test
+    public void queuedAsyncTasksRejectedOnShutdownNow() throws Exception{
+        executor = new BoundedExecutor("bounded", 1, 1, OverflowPolicy.FAIL_FAST, 100, TimeUnit.MILLISECONDS, Executors.defaultThreadFactory());
+        CountDownLatch started = new CountDownLatch(1);
+        executor.submit(() -> {
+            started.countDown();
+            return block();
+        });
+        started.await();
+        CompletableFuture<String> queued = executor.submitAsync(() -> "queued");
+        CompletableFuture<String> waiting = executor.submitAsync(() -> "waiting");
+        assertEquals(1, executor.getWaitingCount());
+
+        List<Runnable> notRun = executor.shutdownNow();
+
+        assertEquals(1, notRun.size());
+        for (CompletableFuture<String> future : Arrays.asList(queued, waiting)) {
+            try {
+                future.join();
+                fail();
+            } catch (Exception e) {
+                assertTrue(e.getCause() instanceof RejectedExecutionException);
+            }
+        }
+    }
+}
@@ -0,0 +1,293 @@
+package com.arahansa.learnreactiveasync.executor;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class EventLoopTest {
+
+    private EventLoop loop = new EventLoop("event-loop-test");
+
+    @After
+    public void shutdown() throws Exception{
+        loop.shutdownNow();
+        assertTrue(loop.awaitTermination(1, TimeUnit.SECONDS));
+    }
+
+    /**
+     * 한 루프에 넣은 태스크는 넣은 순서대로 루프 스레드에서 실행된다.
+     * 루프 스레드만 만지는 상태는 락이 필요 없다.
+     */
+    @Test
+    public void runsInOrderOnLoopThread() throws Exception{
+        List<Integer> seen = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            int value = i;
+            loop.execute(() -> {
+                assertTrue(loop.inEventLoop());
+                seen.add(value);
+            });
+        }
+        assertEquals(Integer.valueOf(9_999), loop.submit(() -> seen.get(seen.size() - 1)).get(1, TimeUnit.SECONDS));
+        for (int i = 0; i < 10_000; i++) {
+            assertEquals(Integer.valueOf(i), seen.get(i));
+        }
+        assertFalse(loop.inEventLoop());
+    }
+
+    /**
+     * 루프 안에서 inbox 보다 많이 넣어도 멈추지 않는다.
+     */
+    @Test
+    public void selfSubmissionOverflows() throws Exception{
+        loop.shutdownNow();
+        loop = new EventLoop(Executors.defaultThreadFactory(), 16, 4, false);
+        AtomicInteger ran = new AtomicInteger();
+        Future<?> outer = loop.submit(() -> {
+            for (int i = 0; i < 100; i++) {
+                loop.execute(ran::incrementAndGet);
+            }
+        });
+        outer.get(1, TimeUnit.SECONDS);
+        loop.submit(() -> null).get(1, TimeUnit.SECONDS);
+        assertEquals(100, ran.get());
+    }
+
+    /**
+     * 루프 안에서 넣은 태스크는 inbox 가 넘쳐 overflow 로 가도 넣은 순서대로 실행된다.
+     */
+    @Test
+    public void selfSubmissionKeepsOrderAcrossOverflow() throws Exception{
+        loop.shutdownNow();
+        loop = new EventLoop(Executors.defaultThreadFactory(), 16, 4, false);
+        List<Integer> seen = new ArrayList<>();
+        loop.submit(() -> {
+            for (int i = 0; i < 100; i++) {
+                int value = i;
+                loop.execute(() -> {
+                    seen.add(value);
+                    if (value % 10 == 0) {
+                        // 실행 중에 더 넣어도 이미 overflow 에 있는 것보다 뒤에 선다.
+                        loop.execute(() -> seen.add(1_000 + value));
+                    }
+                });
+            }
+        }).get(1, TimeUnit.SECONDS);
+        List<Integer> result = loop.submit(() -> new ArrayList<>(seen)).get(1, TimeUnit.SECONDS);
+
+        assertEquals(110, result.size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals(Integer.valueOf(i), result.get(i));
+        }
+        for (int i = 0; i < 10; i++) {
+            assertEquals(Integer.valueOf(1_000 + i * 10), result.get(100 + i));
+        }
+    }
+
+    /**
+     * 실행 중인 태스크를 cancel(true) 해서 생긴 interrupt 가 다음 태스크로 새지 않는다.
+     */
+    @Test
+    public void cancelInterruptDoesNotLeakToNextTask() throws Exception{
+        CountDownLatch running = new CountDownLatch(1);
+        AtomicBoolean release = new AtomicBoolean();
+        Future<?> spinning = loop.submit(() -> {
+            running.countDown();
+            // interrupt 를 보지 않는 태스크
+            while (!release.get()) {
+                Thread.yield();
+            }
+        });
+        running.await();
+        assertTrue(spinning.cancel(true));
+        release.set(true);
+
+        assertFalse(loop.submit(() -> Thread.currentThread().isInterrupted()).get(1, TimeUnit.SECONDS));
+
+        CountDownLatch scheduledRunning = new CountDownLatch(1);
+        AtomicBoolean scheduledRelease = new AtomicBoolean();
+        ScheduledFuture<?> scheduled = loop.schedule(() -> {
+            scheduledRunning.countDown();
+            while (!scheduledRelease.get()) {
+                Thread.yield();
+            }
+        }, 1, TimeUnit.MILLISECONDS);
+        scheduledRunning.await();
+        assertTrue(scheduled.cancel(true));
+        scheduledRelease.set(true);
+
+        assertFalse(loop.submit(() -> Thread.currentThread().isInterrupted()).get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void scheduledTasks() throws Exception{
+        List<String> order = new ArrayList<>();
+        CountDownLatch done = new CountDownLatch(3);
+        loop.schedule(() -> {
+            order.add("late");
+            done.countDown();
+        }, 60, TimeUnit.MILLISECONDS);
+        loop.schedule(() -> {
+            order.add("early");
+            done.countDown();
+        }, 20, TimeUnit.MILLISECONDS);
+        ScheduledFuture<String> callable = loop.schedule(() -> {
+            done.countDown();
+            return "callable";
+        }, 40, TimeUnit.MILLISECONDS);
+        ScheduledFuture<?> cancelled = loop.schedule(() -> order.add("cancelled"), 30, TimeUnit.MILLISECONDS);
+        assertTrue(cancelled.cancel(false));
+
+        assertTrue(done.await(1, TimeUnit.SECONDS));
+        assertEquals("callable", callable.get());
+        assertEquals(2, loop.submit(order::size).get().intValue());
+        assertEquals("early", order.get(0));
+        assertEquals("late", order.get(1));
+    }
+
+    @Test
+    public void periodicTasks() throws Exception{
+        CountDownLatch fixedRate = new CountDownLatch(5);
+        CountDownLatch fixedDelay = new CountDownLatch(5);
+        ScheduledFuture<?> rate = loop.scheduleAtFixedRate(fixedRate::countDown, 0, 5, TimeUnit.MILLISECONDS);
+        ScheduledFuture<?> delay = loop.scheduleWithFixedDelay(fixedDelay::countDown, 0, 5, TimeUnit.MILLISECONDS);
+        assertTrue(fixedRate.await(1, TimeUnit.SECONDS));
+        assertTrue(fixedDelay.await(1, TimeUnit.SECONDS));
+        rate.cancel(false);
+        delay.cancel(false);
+        assertTrue(rate.isCancelled());
+    }
+
+    @Test
+    public void shutdownRunsAcceptedTasksAndCancelsScheduled() throws Exception{
+        AtomicInteger ran = new AtomicInteger();
+        CountDownLatch gate = new CountDownLatch(1);
+        loop.execute(() -> {
+            try {
+                gate.await();
+            } catch (InterruptedException ignored) {
+            }
+        });
+        for (int i = 0; i < 100; i++) {
+            loop.execute(ran::incrementAndGet);
+        }
+        ScheduledFuture<?> later = loop.schedule(ran::incrementAndGet, 1, TimeUnit.HOURS);
+        loop.shutdown();
+        try {
+            loop.execute(ran::incrementAndGet);
+            fail();
+        } catch (RejectedExecutionException expected) {
+        }
+        gate.countDown();
+        assertTrue(loop.awaitTermination(1, TimeUnit.SECONDS));
+        assertEquals(100, ran.get());
+        assertTrue(later.isCancelled());
+    }
+
+    @Test
+    public void concurrentProducers() throws Exception{
+        loop.shutdownNow();
+        loop = new EventLoop(Executors.defaultThreadFactory(), 64, 16, false);
+        int[] counter = new int[1];
+        List<Thread> producers = new ArrayList<>();
+        for (int p = 0; p < 4; p++) {
+            Thread producer = new Thread(() -> {
+                for (int i = 0; i < 50_000; i++) {
+                    loop.execute(() -> counter[0]++);
+                }
+            });
+            producers.add(producer);
+            producer.start();
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        loop.shutdown();
+        assertTrue(loop.awaitTermination(5, TimeUnit.SECONDS));
+        assertEquals(200_000, counter[0]);
+    }
+
+    @Test
+    public void busySpin() throws Exception{
+        loop.shutdownNow();
+        loop = new EventLoop(Executors.defaultThreadFactory(), 64, 16, true);
+        assertEquals("spin", loop.submit(() -> "spin").get(1, TimeUnit.SECONDS));
+        assertEquals("scheduled", loop.schedule(() -> "scheduled", 10, TimeUnit.MILLISECONDS).get(1, TimeUnit.SECONDS));
+    }
+
+    /**
+     * 같은 key 는 항상 같은 루프로 가므로, key 별 카운터를 락 없이 올려도 된다.
+     */
+    @Test
+    public void groupPinsKeysToLoops() throws Exception{
+        try (EventLoopGroup group = new EventLoopGroup("group-test", 4)) {
+            assertSame(group.next("user-1"), group.next("user-1"));
+
+            Map<EventLoop, Map<String, Integer>> perLoop = new HashMap<>();
+            for (EventLoop eventLoop : group.getLoops()) {
+                perLoop.put(eventLoop, new HashMap<>());
+            }
+            for (int i = 0; i < 10_000; i++) {
+                String key = "key-" + (i % 50);
+                EventLoop target = group.next(key);
+                Map<String, Integer> counts = perLoop.get(target);
+                group.execute(key, () -> counts.merge(key, 1, Integer::sum));
+            }
+            int total = 0;
+            int usedLoops = 0;
+            for (Map.Entry<EventLoop, Map<String, Integer>> entry : perLoop.entrySet()) {
+                Map<String, Integer> counts = entry.getValue();
+                total += entry.getKey().submit(() -> counts.values().stream().mapToInt(Integer::intValue).sum()).get();
+                usedLoops += counts.isEmpty() ? 0 : 1;
+            }
+            assertEquals(10_000, total);
+            assertEquals(4, usedLoops);
+        }
+    }
+
+    /**
+     * close 중에 interrupt 되면 돌던 태스크를 interrupt 해서 끝내고, 호출한 스레드의 interrupt 상태는 남긴다.
+     */
+    @Test
+    public void closeInterruptedStopsLoopsAndKeepsInterrupt() throws Exception{
+        EventLoopGroup group = new EventLoopGroup("close-test", 2);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch stopped = new CountDownLatch(1);
+        group.execute("key", () -> {
+            started.countDown();
+            try {
+                TimeUnit.SECONDS.sleep(30);
+            } catch (InterruptedException e) {
+                stopped.countDown();
+            }
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        Thread.currentThread().interrupt();
+        group.close();
+
+        assertTrue(Thread.interrupted());
+        assertTrue(stopped.await(5, TimeUnit.SECONDS));
+        for (EventLoop loop : group.getLoops()) {
+            assertTrue(loop.isTerminated());
+        }
+    }
+}
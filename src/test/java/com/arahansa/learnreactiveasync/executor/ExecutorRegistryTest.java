@@ -0,0 +1,81 @@
+package com.arahansa.learnreactiveasync.executor;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ExecutorRegistryTest {
+
+    @Test
+    public void namedPools() throws Exception{
+        try (ExecutorRegistry registry = new ExecutorRegistry()) {
+            assertTrue(registry.cpuBound().submit(() -> Thread.currentThread().getName()).get().startsWith("cpu-bound-"));
+            assertTrue(registry.ioBound().submit(() -> Thread.currentThread().getName()).get().startsWith("io-bound-"));
+            assertEquals("scheduled", registry.scheduled()
+                    .schedule(() -> Thread.currentThread().getName().substring(0, 9), 10, TimeUnit.MILLISECONDS).get());
+            assertEquals(3, registry.getExecutors().size());
+        }
+    }
+
+    /**
+     * 큐가 차면 cpu-bound 는 호출한 스레드에서 실행하고 io-bound 는 거절한다.
+     */
+    @Test
+    public void boundedQueues() throws Exception{
+        try (ExecutorRegistry registry = new ExecutorRegistry(1, 1, 1, 1, 100)) {
+            CountDownLatch latch = new CountDownLatch(1);
+            registry.cpuBound().submit(() -> {
+                latch.await();
+                return null;
+            });
+            registry.cpuBound().submit(() -> {
+                latch.await();
+                return null;
+            });
+            assertEquals(Thread.currentThread().getName(),
+                    registry.cpuBound().submit(() -> Thread.currentThread().getName()).get());
+
+            registry.ioBound().submit(() -> {
+                latch.await();
+                return null;
+            });
+            registry.ioBound().submit(() -> {
+                latch.await();
+                return null;
+            });
+            try {
+                registry.ioBound().submit(() -> "rejected");
+                fail();
+            } catch (RejectedExecutionException expected) {
+            }
+            latch.countDown();
+        }
+    }
+
+    @Test
+    public void closeInterruptsStuckTasks() throws Exception{
+        ExecutorRegistry registry = new ExecutorRegistry(1, 1, 10, 1, 100);
+        ExecutorService stuck = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>());
+        registry.register("stuck", stuck);
+        Future<?> future = stuck.submit(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                Thread.yield();
+            }
+        });
+
+        registry.close();
+        future.get(1, TimeUnit.SECONDS);
+        assertTrue(stuck.awaitTermination(1, TimeUnit.SECONDS));
+        assertTrue(registry.cpuBound().isTerminated());
+    }
+}
@@ -0,0 +1,230 @@
+package com.arahansa.learnreactiveasync.executor;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class HedgingExecutorTest {
+
+    private final ExecutorService pool = Executors.newFixedThreadPool(16);
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+    @After
+    public void shutdown() {
+        pool.shutdownNow();
+        scheduler.shutdownNow();
+    }
+
+    private HedgingExecutor newExecutor(double maxHedgeRatio) {
+        return new HedgingExecutor(pool, scheduler, 0.95, maxHedgeRatio, 50, TimeUnit.MILLISECONDS, 20);
+    }
+
+    /**
+     * 1ms 걸리는 호출로 기준을 만들고 window 를 넘긴다.
+     */
+    private void warmUp(HedgingExecutor executor, int calls) throws Exception{
+        for (int i = 0; i < calls; i++) {
+            executor.submit(() -> {
+                TimeUnit.MILLISECONDS.sleep(1);
+                return "warm";
+            }).get(5, TimeUnit.SECONDS);
+        }
+        TimeUnit.MILLISECONDS.sleep(60);
+    }
+
+    private static Callable<String> blockingUntilInterrupted(CountDownLatch interrupted) {
+        return () -> {
+            try {
+                TimeUnit.SECONDS.sleep(30);
+                return "slow";
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+                throw e;
+            }
+        };
+    }
+
+    /**
+     * 샘플이 모자라면 기준이 없으므로 느린 호출이라도 백업을 띄우지 않는다.
+     */
+    @Test
+    public void noHedgeBeforeEnoughSamples() throws Exception{
+        HedgingExecutor executor = newExecutor(1.0);
+        AtomicInteger backups = new AtomicInteger();
+        CompletableFuture<String> result = executor.submit(Arrays.asList(() -> {
+            TimeUnit.MILLISECONDS.sleep(100);
+            return "primary";
+        }, () -> {
+            backups.incrementAndGet();
+            return "backup";
+        }));
+
+        assertEquals("primary", result.get(5, TimeUnit.SECONDS));
+        assertEquals(0, backups.get());
+        assertEquals(0, executor.getHedgeCount());
+        assertEquals(0, executor.getHedgeDelay(TimeUnit.NANOSECONDS));
+    }
+
+    /**
+     * p95 를 넘긴 호출은 백업이 띄워지고, 백업이 이기면 느린 쪽은 interrupt 된다.
+     * invokeAny 와 달리 백업은 기준 지연이 지난 뒤에만 실행된다.
+     */
+    @Test
+    public void slowPrimaryIsHedgedAndLoserInterrupted() throws Exception{
+        HedgingExecutor executor = newExecutor(1.0);
+        warmUp(executor, 40);
+        // 준비 호출 중 p95 를 넘긴 것이 이미 hedge 되었을 수 있다.
+        long hedges = executor.getHedgeCount();
+        long wins = executor.getHedgeWinCount();
+
+        CountDownLatch interrupted = new CountDownLatch(1);
+        long start = System.nanoTime();
+        String result = executor.invokeAny(Arrays.asList(blockingUntilInterrupted(interrupted), () -> "backup"));
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertEquals("backup", result);
+        assertTrue("took " + elapsedMillis + "ms", elapsedMillis < 5_000);
+        assertTrue(executor.getHedgeDelay(TimeUnit.NANOSECONDS) > 0);
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+        assertEquals(hedges + 1, executor.getHedgeCount());
+        assertEquals(wins + 1, executor.getHedgeWinCount());
+    }
+
+    /**
+     * hedge 된 호출은 이긴 백업의 시간이 아니라 첫 시도부터의 시간으로 한 번 기록된다.
+     * 그래야 느린 쪽이 빠지면서 p95 가 내려가지 않는다.
+     */
+    @Test
+    public void hedgedCallRecordsLatencyFromPrimaryStart() throws Exception{
+        HedgingExecutor executor = newExecutor(1.0);
+        warmUp(executor, 40);
+        long delay = executor.getHedgeDelay(TimeUnit.NANOSECONDS);
+        assertTrue(delay > 0);
+        long recorded = executor.getLatency().count();
+
+        CountDownLatch interrupted = new CountDownLatch(1);
+        assertEquals("backup", executor.invokeAny(Arrays.asList(blockingUntilInterrupted(interrupted), () -> "backup")));
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+
+        assertEquals(recorded + 1, executor.getLatency().count());
+        assertTrue(executor.getLatency().maxNanos() >= delay);
+    }
+
+    /**
+     * 기준 안에 끝나는 호출은 백업을 띄우지 않는다.
+     */
+    @Test
+    public void fastCallsAreNotHedged() throws Exception{
+        HedgingExecutor executor = newExecutor(1.0);
+        warmUp(executor, 40);
+        AtomicInteger backups = new AtomicInteger();
+
+        for (int i = 0; i < 20; i++) {
+            assertEquals("primary", executor.submit(Arrays.asList(() -> "primary", () -> {
+                backups.incrementAndGet();
+                return "backup";
+            })).get(5, TimeUnit.SECONDS));
+        }
+
+        assertEquals(0, backups.get());
+    }
+
+    /**
+     * 모든 호출이 느려져도 hedge 는 전체 호출 수의 maxHedgeRatio 를 넘지 않는다.
+     */
+    @Test
+    public void hedgeLoadIsCapped() throws Exception{
+        HedgingExecutor executor = newExecutor(0.1);
+        warmUp(executor, 20);
+
+        List<CountDownLatch> interrupts = new ArrayList<>();
+        List<CompletableFuture<String>> results = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            CountDownLatch interrupted = new CountDownLatch(1);
+            interrupts.add(interrupted);
+            results.add(executor.submit(Arrays.asList(blockingUntilInterrupted(interrupted), () -> "backup")));
+        }
+        TimeUnit.MILLISECONDS.sleep(200);
+
+        // 호출 30 개 * 0.1
+        assertEquals(3, executor.getHedgeCount());
+        assertEquals(7, executor.getSkippedHedgeCount());
+        long hedged = results.stream().filter(CompletableFuture::isDone).count();
+        assertEquals(3, hedged);
+
+        results.forEach(result -> result.cancel(true));
+        for (CountDownLatch interrupted : interrupts) {
+            assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+        }
+    }
+
+    /**
+     * 오랫동안 빠르던 백엔드가 한꺼번에 느려져도, 그동안 쓰지 않은 예산으로 모든 호출을 hedge 하지 않는다.
+     */
+    @Test
+    public void unusedHedgeBudgetDoesNotAccumulate() throws Exception{
+        HedgingExecutor executor = newExecutor(0.1);
+        // 예전처럼 누적이면 (400 + 15) * 0.1 = 41 번까지 hedge 할 수 있다.
+        warmUp(executor, 400);
+        long hedgesBefore = executor.getHedgeCount();
+
+        List<CountDownLatch> interrupts = new ArrayList<>();
+        List<CompletableFuture<String>> results = new ArrayList<>();
+        for (int i = 0; i < 15; i++) {
+            CountDownLatch interrupted = new CountDownLatch(1);
+            interrupts.add(interrupted);
+            results.add(executor.submit(Arrays.asList(blockingUntilInterrupted(interrupted), () -> "backup")));
+        }
+        TimeUnit.MILLISECONDS.sleep(200);
+
+        // 최근 HEDGE_BUDGET_CALLS 호출분 10 개 + 느린 호출 15 개분 1.5 개
+        long hedged = executor.getHedgeCount() - hedgesBefore;
+        assertTrue("hedged " + hedged, hedged >= 1 && hedged <= 11);
+        assertTrue(executor.getSkippedHedgeCount() >= 4);
+
+        results.forEach(result -> result.cancel(true));
+        for (CountDownLatch interrupted : interrupts) {
+            assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+        }
+    }
+
+    /**
+     * 시도가 실패하면 invokeAny 처럼 다음 태스크로 넘어가고, 모두 실패하면 마지막 예외로 실패한다.
+     */
+    @Test
+    public void failureFallsOverToNextReplica() throws Exception{
+        HedgingExecutor executor = newExecutor(0);
+        List<Callable<String>> replicas = Arrays.asList(() -> {
+            throw new IllegalStateException("first");
+        }, () -> "second");
+        assertEquals("second", executor.invokeAny(replicas));
+
+        try {
+            executor.invokeAny(Arrays.<Callable<String>>asList(() -> {
+                throw new IllegalStateException("first");
+            }, () -> {
+                throw new IllegalStateException("second");
+            }));
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        assertEquals(0, executor.getHedgeCount());
+    }
+}
@@ -0,0 +1,191 @@
+package com.arahansa.learnreactiveasync.executor;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class InstrumentedThreadPoolExecutorTest {
+
+    /**
+     * J01_ExecutorServiceExample 과 같은 1 스레드 풀. 두 번째 태스크는 첫 번째가 끝날 때까지 큐에서 기다린다.
+     */
+    @Test
+    public void queueWaitAndExecutionTime() throws Exception{
+        InstrumentedThreadPoolExecutor executor = new InstrumentedThreadPoolExecutor("test", 1, 1, 0L,
+                TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>());
+
+        Future<?> first = executor.submit(() -> {
+            TimeUnit.MILLISECONDS.sleep(200);
+            return null;
+        });
+        Future<?> second = executor.submit(() -> {
+            TimeUnit.MILLISECONDS.sleep(10);
+            return null;
+        });
+        first.get();
+        second.get();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.SECONDS));
+
+        assertEquals(2, executor.getQueueWait().count());
+        assertEquals(2, executor.getExecutionTime().count());
+        assertTrue(executor.getQueueWait().maxNanos() >= TimeUnit.MILLISECONDS.toNanos(150));
+        assertTrue(executor.getExecutionTime().percentileNanos(1.0) >= TimeUnit.MILLISECONDS.toNanos(200));
+        assertTrue(executor.getExecutionTime().percentileNanos(0.5) < TimeUnit.MILLISECONDS.toNanos(100));
+    }
+
+    @Test
+    public void rejectionsAndMeters() throws Exception{
+        InstrumentedThreadPoolExecutor executor = new InstrumentedThreadPoolExecutor("bounded", 1, 1, 0L,
+                TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(1));
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        executor.bindTo(registry);
+
+        CountDownLatch latch = new CountDownLatch(1);
+        Runnable blocker = () -> {
+            try {
+                latch.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        executor.execute(blocker);
+        executor.execute(blocker);
+        try {
+            executor.execute(blocker);
+            fail();
+        } catch (RejectedExecutionException expected) {
+        }
+        assertTrue(executor.getRejectedExecutionHandler() instanceof ThreadPoolExecutor.AbortPolicy);
+
+        assertEquals(1.0, registry.get("executor.rejected").tag("name", "bounded").functionCounter().count(), 0.0);
+        assertEquals(1.0, registry.get("executor.active").gauge().value(), 0.0);
+        assertEquals(1.0, registry.get("executor.queued").gauge().value(), 0.0);
+
+        latch.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.SECONDS));
+        assertEquals(2.0, registry.get("executor.completed").functionCounter().count(), 0.0);
+        assertEquals(3, registry.get("executor.queue.wait").meters().size());
+    }
+
+    /**
+     * 백분위/최대값 게이지는 누적값이 아니라 직전 window 에 기록된 값만 보여준다.
+     */
+    @Test
+    public void gaugesShowRecentWindow() throws Exception{
+        InstrumentedThreadPoolExecutor executor = new InstrumentedThreadPoolExecutor("windowed", 1, 1, 0L,
+                TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>());
+        executor.setGaugeWindow(100, TimeUnit.MILLISECONDS);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        executor.bindTo(registry);
+
+        Future<?> first = executor.submit(() -> {
+            TimeUnit.MILLISECONDS.sleep(200);
+            return null;
+        });
+        executor.submit(() -> null).get();
+        first.get();
+        // 실행 시간은 get() 이 돌아온 뒤 afterExecute 에서 기록되므로, 그것까지 끝나야 첫 window 에 들어간다.
+        while (executor.getCompletedTaskCount() < 2) {
+            Thread.sleep(1);
+        }
+
+        // 첫 window 에 기록된 200ms 가 보인다.
+        assertTrue(registry.get("executor.queue.wait.max").timeGauge().value(TimeUnit.MILLISECONDS) >= 150);
+        assertTrue(registry.get("executor.execution").tag("quantile", "0.99").timeGauge().value(TimeUnit.MILLISECONDS) >= 150);
+
+        // 다음 window 에는 기록이 없으므로 누적 분포와 달리 0 이다.
+        TimeUnit.MILLISECONDS.sleep(150);
+        assertEquals(0.0, registry.get("executor.queue.wait.max").timeGauge().value(TimeUnit.MILLISECONDS), 0.0);
+        assertEquals(0.0, registry.get("executor.execution").tag("quantile", "0.99").timeGauge().value(TimeUnit.MILLISECONDS), 0.0);
+        assertTrue(executor.getExecutionTime().maxNanos() >= TimeUnit.MILLISECONDS.toNanos(150));
+
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void shutdownNowReturnsOriginalTasks() throws Exception{
+        InstrumentedThreadPoolExecutor executor = new InstrumentedThreadPoolExecutor("test", 1, 1, 0L,
+                TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>());
+        CountDownLatch latch = new CountDownLatch(1);
+        Runnable queued = () -> { };
+        executor.execute(() -> {
+            try {
+                latch.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        executor.execute(queued);
+
+        List<Runnable> remaining = executor.shutdownNow();
+        assertEquals(1, remaining.size());
+        assertTrue(remaining.get(0) == queued);
+    }
+
+    /**
+     * 큐에는 감싼 태스크가 들어 있어도 원래 태스크로 지울 수 있고, purge 도 취소된 Future 를 찾아낸다.
+     */
+    @Test
+    public void removeAndPurgeFindWrappedTasks() throws Exception{
+        InstrumentedThreadPoolExecutor executor = new InstrumentedThreadPoolExecutor("test", 1, 1, 0L,
+                TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>());
+        CountDownLatch latch = new CountDownLatch(1);
+        executor.execute(() -> {
+            try {
+                latch.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        Runnable removed = () -> { };
+        Runnable kept = () -> { };
+        executor.execute(removed);
+        Future<?> cancelled = executor.submit(() -> { });
+        executor.execute(kept);
+
+        assertTrue(executor.remove(removed));
+        assertFalse(executor.remove(removed));
+        cancelled.cancel(false);
+        executor.purge();
+
+        List<Runnable> remaining = executor.shutdownNow();
+        assertEquals(1, remaining.size());
+        assertTrue(remaining.get(0) == kept);
+    }
+
+    @Test
+    public void histogramBuckets() throws Exception{
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(TimeUnit.MICROSECONDS.toNanos(i));
+        }
+        LatencyHistogram.Snapshot before = histogram.snapshot();
+        histogram.record(TimeUnit.SECONDS.toNanos(1));
+
+        double p50 = histogram.percentileNanos(0.5);
+        assertEquals(500_000, p50, 500_000 * 0.04);
+        assertEquals(1.0, histogram.snapshot().percentileNanos(1.0) / 1e9, 0.04);
+        assertEquals(1, histogram.snapshot().since(before).count());
+        assertEquals(Long.MAX_VALUE, LatencyHistogram.highestValueAt(LatencyHistogram.indexOf(Long.MAX_VALUE)));
+        for (long value : new long[]{0, 31, 32, 33, 63, 64, 65, 1000, 123_456_789}) {
+            int index = LatencyHistogram.indexOf(value);
+            assertTrue(LatencyHistogram.highestValueAt(index) >= value);
+            assertTrue(index == 0 || LatencyHistogram.highestValueAt(index - 1) < value);
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.arahansa.learnreactiveasync.executor;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class KeyedSerialExecutorTest {
+
+    private final ExecutorService pool = Executors.newFixedThreadPool(4);
+
+    @After
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * 같은 key 의 태스크는 여러 스레드에서 넣어도 넣은 순서대로, 겹치지 않고 실행된다.
+     * 일반 int 를 락 없이 올려도 값이 맞는다.
+     */
+    @Test
+    public void sameKeyRunsInOrderWithoutOverlap() throws Exception{
+        KeyedSerialExecutor<Integer> executor = new KeyedSerialExecutor<>(pool, 4);
+        int keys = 100;
+        int perKey = 1_000;
+        int[] counters = new int[keys];
+        boolean[] ordered = {true};
+        for (int i = 0; i < perKey; i++) {
+            for (int key = 0; key < keys; key++) {
+                int k = key;
+                int expected = i;
+                executor.execute(key, () -> {
+                    if (counters[k] != expected) {
+                        ordered[0] = false;
+                    }
+                    counters[k]++;
+                });
+            }
+        }
+        List<CompletableFuture<Integer>> last = new ArrayList<>();
+        for (int key = 0; key < keys; key++) {
+            int k = key;
+            last.add(executor.submit(key, () -> counters[k]));
+        }
+        for (CompletableFuture<Integer> future : last) {
+            assertEquals(perKey, (int) future.get(5, TimeUnit.SECONDS));
+        }
+        assertTrue(ordered[0]);
+    }
+
+    @Test
+    public void differentKeysRunInParallel() throws Exception{
+        KeyedSerialExecutor<String> executor = new KeyedSerialExecutor<>(pool);
+        CountDownLatch bothRunning = new CountDownLatch(2);
+        CompletableFuture<Boolean> a = executor.submit("a", () -> {
+            bothRunning.countDown();
+            return bothRunning.await(1, TimeUnit.SECONDS);
+        });
+        CompletableFuture<Boolean> b = executor.submit("b", () -> {
+            bothRunning.countDown();
+            return bothRunning.await(1, TimeUnit.SECONDS);
+        });
+        assertTrue(a.get(2, TimeUnit.SECONDS));
+        assertTrue(b.get(2, TimeUnit.SECONDS));
+    }
+
+    /**
+     * 큐가 빈 key 는 맵에서 사라진다.
+     */
+    @Test
+    public void idleKeysAreEvicted() throws Exception{
+        KeyedSerialExecutor<Integer> executor = new KeyedSerialExecutor<>(ForkJoinPool.commonPool());
+        List<CompletableFuture<Integer>> futures = new ArrayList<>();
+        for (int key = 0; key < 100_000; key++) {
+            int k = key;
+            futures.add(executor.submit(key, () -> k));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get(10, TimeUnit.SECONDS);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        while (executor.getActiveKeyCount() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(0, executor.getActiveKeyCount());
+    }
+
+    @Test
+    public void failureDoesNotBlockKey() throws Exception{
+        KeyedSerialExecutor<String> executor = new KeyedSerialExecutor<>(pool);
+        executor.execute("key", () -> {
+            throw new IllegalStateException("boom");
+        });
+        CompletableFuture<String> failed = executor.submit("key", () -> {
+            throw new IllegalArgumentException("fail");
+        });
+        CompletableFuture<String> next = executor.submit("key", () -> "next");
+        assertEquals("next", next.get(1, TimeUnit.SECONDS));
+        try {
+            failed.get();
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalArgumentException);
+        }
+    }
+
+    /**
+     * 한 key 에 태스크가 몰려도 maxBatch 마다 다시 줄을 서므로 다른 key 가 굶지 않는다.
+     */
+    @Test
+    public void busyKeyYieldsToOthers() throws Exception{
+        ExecutorService single = Executors.newSingleThreadExecutor();
+        try {
+            KeyedSerialExecutor<String> executor = new KeyedSerialExecutor<>(single, 2);
+            List<String> order = new ArrayList<>();
+            CountDownLatch gate = new CountDownLatch(1);
+            single.execute(() -> {
+                try {
+                    gate.await();
+                } catch (InterruptedException ignored) {
+                }
+            });
+            for (int i = 0; i < 6; i++) {
+                executor.execute("busy", () -> order.add("busy"));
+            }
+            executor.execute("quiet", () -> order.add("quiet"));
+            gate.countDown();
+            executor.submit("busy", () -> null).get(1, TimeUnit.SECONDS);
+            assertEquals("quiet", order.get(2));
+        } finally {
+            single.shutdownNow();
+        }
+    }
+
+    @Test
+    public void rejectedByDelegate() throws Exception{
+        pool.shutdown();
+        KeyedSerialExecutor<String> executor = new KeyedSerialExecutor<>(pool);
+        try {
+            executor.submit("key", () -> "never");
+            fail();
+        } catch (RejectedExecutionException expected) {
+        }
+        assertEquals(0, executor.getActiveKeyCount());
+
+        AtomicInteger ran = new AtomicInteger();
+        KeyedSerialExecutor<String> direct = new KeyedSerialExecutor<>(Runnable::run);
+        direct.execute("key", ran::incrementAndGet);
+        assertEquals(1, ran.get());
+        assertEquals(0, direct.getActiveKeyCount());
+    }
+}
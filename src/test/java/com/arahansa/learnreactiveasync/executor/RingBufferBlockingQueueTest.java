@@ -0,0 +1,271 @@
+package com.arahansa.learnreactiveasync.executor;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RingBufferBlockingQueueTest {
+
+    @Test
+    public void fifoAndCapacity() throws Exception{
+        RingBufferBlockingQueue<Integer> queue = new RingBufferBlockingQueue<>(5);
+        assertEquals(8, queue.capacity());
+        for (int i = 0; i < 8; i++) {
+            assertTrue(queue.offer(i));
+        }
+        assertFalse(queue.offer(8));
+        assertEquals(8, queue.size());
+        assertEquals(0, queue.remainingCapacity());
+        assertEquals(Integer.valueOf(0), queue.peek());
+
+        // 한 바퀴 넘게 돌아도 순서가 유지된다.
+        for (int i = 0; i < 20; i++) {
+            assertEquals(Integer.valueOf(i), queue.poll());
+            assertTrue(queue.offer(i + 8));
+        }
+        List<Integer> drained = new ArrayList<>();
+        assertEquals(8, queue.drainTo(drained));
+        assertEquals(Integer.valueOf(20), drained.get(0));
+        assertNull(queue.poll());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void takeWaitsForPut() throws Exception{
+        RingBufferBlockingQueue<String> queue = new RingBufferBlockingQueue<>(2);
+        CompletableFuture<String> taken = CompletableFuture.supplyAsync(() -> {
+            try {
+                return queue.take();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        Thread.sleep(50);
+        assertFalse(taken.isDone());
+        queue.put("hello");
+        assertEquals("hello", taken.get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void timeouts() throws Exception{
+        RingBufferBlockingQueue<String> queue = new RingBufferBlockingQueue<>(1);
+        assertEquals(2, queue.capacity());
+        long start = System.nanoTime();
+        assertNull(queue.poll(50, TimeUnit.MILLISECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+
+        queue.put("a");
+        queue.put("a");
+        start = System.nanoTime();
+        assertFalse(queue.offer("b", 50, TimeUnit.MILLISECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+        assertFalse(queue.offer("b", 0, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void putWaitsForSpace() throws Exception{
+        RingBufferBlockingQueue<Integer> queue = new RingBufferBlockingQueue<>(2, 0);
+        queue.put(0);
+        queue.put(1);
+        CountDownLatch done = new CountDownLatch(1);
+        Thread producer = new Thread(() -> {
+            try {
+                queue.put(2);
+                done.countDown();
+            } catch (InterruptedException ignored) {
+            }
+        });
+        producer.start();
+        assertFalse(done.await(50, TimeUnit.MILLISECONDS));
+        assertEquals(Integer.valueOf(0), queue.take());
+        assertTrue(done.await(1, TimeUnit.SECONDS));
+        assertEquals(Integer.valueOf(1), queue.take());
+        assertEquals(Integer.valueOf(2), queue.take());
+    }
+
+    @Test
+    public void takeIsInterruptible() throws Exception{
+        RingBufferBlockingQueue<Integer> queue = new RingBufferBlockingQueue<>(4);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        Thread consumer = new Thread(() -> {
+            try {
+                queue.take();
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+        });
+        consumer.start();
+        Thread.sleep(50);
+        consumer.interrupt();
+        assertTrue(interrupted.await(1, TimeUnit.SECONDS));
+    }
+
+    /**
+     * 생산자와 소비자가 여럿이어도 빠지거나 두 번 나오는 원소가 없다. 작은 용량으로 park 경로를 자주 타게 한다.
+     */
+    @Test
+    public void multiProducerMultiConsumer() throws Exception{
+        int producers = 4;
+        int consumers = 4;
+        int perProducer = 200_000;
+        RingBufferBlockingQueue<Long> queue = new RingBufferBlockingQueue<>(64, 8);
+        ExecutorService threads = Executors.newFixedThreadPool(producers + consumers);
+        LongAdder sum = new LongAdder();
+        AtomicLong received = new AtomicLong();
+        long total = (long) producers * perProducer;
+        List<Future<?>> futures = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            futures.add(threads.submit(() -> {
+                for (long i = 1; i <= perProducer; i++) {
+                    queue.put(i);
+                }
+                return null;
+            }));
+        }
+        for (int c = 0; c < consumers; c++) {
+            futures.add(threads.submit(() -> {
+                while (received.get() < total) {
+                    Long value = queue.poll(10, TimeUnit.MILLISECONDS);
+                    if (value != null) {
+                        sum.add(value);
+                        received.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        threads.shutdown();
+        assertEquals(total, received.get());
+        assertEquals(producers * ((long) perProducer * (perProducer + 1) / 2), sum.sum());
+        assertTrue(queue.isEmpty());
+    }
+
+    /**
+     * 중간의 원소를 지워도 나머지 순서는 그대로고, 지운 칸은 poll 이 건너뛴다.
+     */
+    @Test
+    public void removingFromTheMiddle() throws Exception{
+        RingBufferBlockingQueue<Integer> queue = new RingBufferBlockingQueue<>(8);
+        queue.addAll(Arrays.asList(1, 2, 3, 4, 5, 6, 7));
+        assertTrue(queue.remove(2));
+        assertFalse(queue.remove(2));
+        assertTrue(queue.removeAll(Collections.singleton(4)));
+        assertTrue(queue.removeIf(e -> e == 6));
+        Iterator<Integer> it = queue.iterator();
+        assertEquals(Integer.valueOf(1), it.next());
+        it.remove();
+        assertEquals(Arrays.asList(3, 5, 7), new ArrayList<>(queue));
+        assertEquals(3, queue.size());
+        assertEquals(Integer.valueOf(3), queue.peek());
+
+        // 앞의 두 칸은 peek 이 꺼내 버렸고, 4 와 6 의 칸은 poll 이 지나가야 자리로 돌아온다.
+        assertEquals(3, queue.remainingCapacity());
+        assertEquals(Integer.valueOf(3), queue.poll());
+        assertTrue(queue.retainAll(Collections.singleton(7)));
+        assertEquals(Integer.valueOf(7), queue.poll());
+        assertNull(queue.poll());
+        assertTrue(queue.isEmpty());
+        assertEquals(0, queue.size());
+        assertEquals(8, queue.remainingCapacity());
+    }
+
+    /**
+     * shutdownNow 와 겹친 execute 는 remove(Object) 로 태스크를 되돌린 뒤 RejectedExecutionException 을 던진다.
+     * 받아들여진 태스크는 실행되거나 shutdownNow 가 돌려준 목록에 정확히 한 번 들어 있어야 한다.
+     */
+    @Test
+    public void executeRacingShutdownNow() throws Exception{
+        ExecutorService submitters = Executors.newFixedThreadPool(2);
+        try {
+            for (int round = 0; round < 200; round++) {
+                ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                        new RingBufferBlockingQueue<>(1024));
+                LongAdder ran = new LongAdder();
+                LongAdder accepted = new LongAdder();
+                CountDownLatch started = new CountDownLatch(2);
+                List<Future<?>> futures = new ArrayList<>();
+                for (int s = 0; s < 2; s++) {
+                    futures.add(submitters.submit(() -> {
+                        started.countDown();
+                        for (int i = 0; i < 500; i++) {
+                            try {
+                                executor.execute(ran::increment);
+                                accepted.increment();
+                            } catch (RejectedExecutionException e) {
+                                return null;
+                            }
+                        }
+                        return null;
+                    }));
+                }
+                started.await();
+                List<Runnable> drained = executor.shutdownNow();
+                for (Future<?> future : futures) {
+                    future.get(5, TimeUnit.SECONDS);
+                }
+                assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+                assertEquals(accepted.sum(), ran.sum() + drained.size());
+                assertTrue(executor.getQueue().isEmpty());
+            }
+        } finally {
+            submitters.shutdownNow();
+        }
+    }
+
+    @Test
+    public void worksAsExecutorQueue() throws Exception{
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(4, 4, 0L, TimeUnit.MILLISECONDS,
+                new RingBufferBlockingQueue<>(1024));
+        LongAdder ran = new LongAdder();
+        for (int i = 0; i < 1000; i++) {
+            executor.execute(ran::increment);
+        }
+        executor.purge();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        assertEquals(1000, ran.sum());
+
+        ThreadPoolExecutor blocked = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new RingBufferBlockingQueue<>(16));
+        CountDownLatch latch = new CountDownLatch(1);
+        blocked.execute(() -> {
+            try {
+                latch.await();
+            } catch (InterruptedException ignored) {
+            }
+        });
+        for (int i = 0; i < 10; i++) {
+            blocked.execute(ran::increment);
+        }
+        assertEquals(10, blocked.shutdownNow().size());
+        assertTrue(blocked.awaitTermination(5, TimeUnit.SECONDS));
+        try {
+            blocked.execute(ran::increment);
+            fail();
+        } catch (RejectedExecutionException expected) {
+        }
+    }
+}
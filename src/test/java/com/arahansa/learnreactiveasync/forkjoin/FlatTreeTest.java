@@ -0,0 +1,58 @@
+package com.arahansa.learnreactiveasync.forkjoin;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FlatTreeTest {
+
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+
+    @After
+    public void shutdown() throws Exception{
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void breadthFirstLayout() throws Exception{
+        ArrayTreeNode tree = new ArrayTreeNode(5,
+                new ArrayTreeNode(3), new ArrayTreeNode(2,
+                new ArrayTreeNode(2), new ArrayTreeNode(8)));
+
+        FlatTree flat = FlatTree.of(tree);
+        assertEquals(5, flat.size());
+        assertEquals(3, flat.levels());
+        assertEquals(1, flat.levelStart(1));
+        assertEquals(3, flat.levelStart(2));
+        assertEquals(2, flat.childCount(0));
+        assertEquals(3, flat.firstChild(2));
+        assertEquals(8, flat.value(4));
+
+        assertEquals(20, flat.sum(pool));
+        assertArrayEquals(new long[]{20, 3, 12, 2, 8}, flat.subtreeSums(pool));
+    }
+
+    @Test
+    public void sameResultAsTreeAggregateTask() throws Exception{
+        ArrayTreeNode[] wide = new ArrayTreeNode[50_000];
+        for (int i = 0; i < wide.length; i++) {
+            wide[i] = new ArrayTreeNode(i % 13, new ArrayTreeNode(1), new ArrayTreeNode(i % 5));
+        }
+        ArrayTreeNode chain = new ArrayTreeNode(1);
+        for (int i = 0; i < 10_000; i++) {
+            chain = new ArrayTreeNode(2, chain);
+        }
+        ArrayTreeNode root = new ArrayTreeNode(7, new ArrayTreeNode(0, wide), chain);
+
+        FlatTree flat = FlatTree.of(root);
+        assertEquals(root.size(), flat.size());
+        assertEquals(TreeAggregateTask.sum(pool, root), flat.sum(pool));
+    }
+}
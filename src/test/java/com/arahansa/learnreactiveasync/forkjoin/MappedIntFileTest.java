@@ -0,0 +1,68 @@
+package com.arahansa.learnreactiveasync.forkjoin;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertEquals;
+
+public class MappedIntFileTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void sumSameAsInMemory() throws Exception{
+        int[] arr = IntStream.range(0, 100_003).map(i -> i % 40).toArray();
+        Path path = write(arr);
+
+        // 세그먼트를 2^10 개로 작게 잡아서 세그먼트 경계를 넘는 리프가 생기게 한다.
+        try (MappedIntFile file = MappedIntFile.open(path, 10)) {
+            assertEquals(arr.length, file.length());
+            assertEquals(arr[1025], file.get(1025));
+            assertEquals(RangeSumTask.sum(arr), file.sum());
+
+            ForkJoinPool pool = new ForkJoinPool(4);
+            MappedRangeSumTask task = new MappedRangeSumTask(file, 0, file.length(), 300);
+            pool.invoke(task);
+            assertEquals(RangeSumTask.sum(arr), task.getResult());
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void littleEndian() throws Exception{
+        Path path = write(new int[]{11, 12, 13});
+        assertEquals(11, Files.readAllBytes(path)[0]);
+        try (MappedIntFile file = MappedIntFile.open(path)) {
+            assertEquals(360, file.sum());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectTruncatedFile() throws Exception{
+        Path path = folder.newFile().toPath();
+        Files.write(path, new byte[]{1, 2, 3, 4, 5});
+        MappedIntFile.open(path);
+    }
+
+    private Path write(int[] arr) throws IOException {
+        Path path = folder.newFile().toPath();
+        ByteBuffer buffer = ByteBuffer.allocate(arr.length * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.asIntBuffer().put(arr);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.write(buffer);
+        }
+        return path;
+    }
+}
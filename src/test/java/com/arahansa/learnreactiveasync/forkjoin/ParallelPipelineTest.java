@@ -0,0 +1,76 @@
+package com.arahansa.learnreactiveasync.forkjoin;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+import static org.junit.Assert.assertEquals;
+
+public class ParallelPipelineTest {
+
+    private final int[] ints = IntStream.range(0, 100_000).map(i -> i % 40).toArray();
+
+    @Test
+    public void intPipelineSameAsCustomRecursiveTask() throws Exception{
+        ParallelIntPipeline pipeline = ParallelIntPipeline.create()
+                .filter(a -> a > 10 && a < 27)
+                .map(a -> a * 10);
+
+        assertEquals(360, pipeline.sum(new int[]{11, 12, 13}));
+        assertEquals(RangeSumTask.sum(ints), pipeline.sum(ints));
+    }
+
+    /**
+     * filter 와 map 의 순서가 그대로 지켜지는지 확인
+     */
+    @Test
+    public void stagesRunInOrder() throws Exception{
+        ForkJoinPool pool = new ForkJoinPool(4);
+        ParallelIntPipeline pipeline = ParallelIntPipeline.on(pool)
+                .withThreshold(100)
+                .map(a -> a + 1)
+                .filter(a -> a % 2 == 0)
+                .map(a -> a * 3);
+
+        int expected = Arrays.stream(ints).map(a -> a + 1).filter(a -> a % 2 == 0).map(a -> a * 3).max().getAsInt();
+        assertEquals(expected, pipeline.reduce(ints, Integer.MIN_VALUE, Math::max));
+        assertEquals(Arrays.stream(ints).map(a -> a + 1).filter(a -> a % 2 == 0).count(), pipeline.count(ints));
+        assertEquals(0, pipeline.count(ints, 5, 5));
+        pool.shutdown();
+    }
+
+    @Test
+    public void intSumDoesNotOverflow() throws Exception{
+        int[] big = new int[10_000];
+        Arrays.fill(big, Integer.MAX_VALUE);
+        assertEquals(10_000L * Integer.MAX_VALUE, ParallelIntPipeline.create().withThreshold(64).sum(big));
+    }
+
+    @Test
+    public void longPipeline() throws Exception{
+        long[] longs = LongStream.range(0, 100_000).toArray();
+        ParallelLongPipeline pipeline = ParallelLongPipeline.create()
+                .withThreshold(1000)
+                .filter(a -> a % 3 == 0)
+                .map(a -> a * a);
+
+        assertEquals(LongStream.of(longs).filter(a -> a % 3 == 0).map(a -> a * a).sum(), pipeline.sum(longs));
+        assertEquals(LongStream.of(longs).filter(a -> a % 3 == 0).count(), pipeline.count(longs));
+    }
+
+    @Test
+    public void doublePipeline() throws Exception{
+        double[] doubles = IntStream.range(0, 100_000).mapToDouble(i -> i * 0.5).toArray();
+        ParallelDoublePipeline pipeline = ParallelDoublePipeline.create()
+                .withThreshold(1000)
+                .filter(a -> a > 100)
+                .map(Math::sqrt);
+
+        double expected = Arrays.stream(doubles).filter(a -> a > 100).map(Math::sqrt).sum();
+        assertEquals(expected, pipeline.sum(doubles), 1e-6);
+        assertEquals(Math.sqrt(49_999.5), pipeline.reduce(doubles, Double.NEGATIVE_INFINITY, Math::max), 0.0);
+    }
+}
@@ -0,0 +1,52 @@
+package com.arahansa.learnreactiveasync.forkjoin;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+
+public class RangeSumTaskTest {
+
+    @Test
+    public void sameResultAsCustomRecursiveTask() throws Exception{
+        assertEquals(360, RangeSumTask.sum(new int[]{11, 12, 13}));
+    }
+
+    /**
+     * 임계값을 작게 줘서 여러 번 나뉘어도 순차 계산과 결과가 같아야 한다.
+     */
+    @Test
+    public void splitRanges() throws Exception{
+        int[] arr = new int[100_000];
+        for (int i = 0; i < arr.length; i++) {
+            arr[i] = i % 40;
+        }
+        long expected = Arrays.stream(arr)
+                .filter(a -> a > 10 && a < 27)
+                .mapToLong(a -> a * 10)
+                .sum();
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        RangeSumTask task = new RangeSumTask(arr, 0, arr.length, 20);
+        pool.invoke(task);
+        assertEquals(expected, task.getResult());
+        assertEquals(expected, RangeSumTask.sum(pool, arr));
+        pool.shutdown();
+    }
+
+    @Test
+    public void subRange() throws Exception{
+        int[] arr = {11, 12, 13, 14, 15};
+        RangeSumTask task = new RangeSumTask(arr, 1, 3, 1);
+        ForkJoinPool.commonPool().invoke(task);
+        assertEquals(250, task.getResult());
+    }
+
+    @Test
+    public void thresholdFromParallelism() throws Exception{
+        assertEquals(ForkJoinThresholds.MIN_THRESHOLD, ForkJoinThresholds.of(3, 2));
+        assertEquals(100_000_000 / 32, ForkJoinThresholds.of(100_000_000, 4));
+    }
+}
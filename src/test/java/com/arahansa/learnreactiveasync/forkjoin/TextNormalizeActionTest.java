@@ -0,0 +1,61 @@
+package com.arahansa.learnreactiveasync.forkjoin;
+
+import org.junit.Test;
+
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+
+public class TextNormalizeActionTest {
+
+    @Test
+    public void upperCase() throws Exception{
+        assertEquals("HELLO WORLD", new String(TextNormalizeAction.toUpperCase("hello world")));
+    }
+
+    /**
+     * 임계값을 작게 줘서 여러 번 나뉘어도 결과는 String.toUpperCase 와 같아야 한다.
+     */
+    @Test
+    public void splitOnWhitespace() throws Exception{
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 2_000; i++) {
+            text.append("line ").append(i).append(i % 7 == 0 ? "\n" : " word ");
+        }
+        char[] target = new char[text.length() + 2];
+        ForkJoinPool pool = new ForkJoinPool(4);
+        pool.invoke(new TextNormalizeAction(text, 0, text.length(), target, 2,
+                TextNormalizeAction.UPPER_CASE, 16, false));
+
+        assertEquals(text.toString().toUpperCase(), new String(target, 2, text.length()));
+        pool.shutdown();
+    }
+
+    /**
+     * 가운데 근처에 공백이 없으면 가운데에서 나눈다. 글자 단위 변환이라 결과는 같다.
+     */
+    @Test
+    public void noWhitespaceSplitsAtMidpoint() throws Exception{
+        String text = "abcdefghijklmnopqrstuvwxyz";
+        char[] target = new char[text.length()];
+        new TextNormalizeAction(text, 0, text.length(), target, 0, c -> c == 'a' ? '_' : c, 4, false).invoke();
+        assertEquals("_bcdefghijklmnopqrstuvwxyz", new String(target));
+    }
+
+    /**
+     * 공백 없는 긴 구간과 서로게이트 쌍이 섞여도 결과는 String.toUpperCase 와 같다.
+     */
+    @Test
+    public void longRunsWithoutWhitespace() throws Exception{
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 20_000; i++) {
+            text.append(i % 3 == 0 ? "\uD835\uDC9C" : "abc");
+        }
+        text.append(" tail");
+        ForkJoinPool pool = new ForkJoinPool(4);
+        char[] target = TextNormalizeAction.normalize(pool, text, TextNormalizeAction.UPPER_CASE);
+        pool.shutdown();
+
+        assertEquals(text.toString().toUpperCase(), new String(target));
+    }
+}
@@ -0,0 +1,76 @@
+package com.arahansa.learnreactiveasync.forkjoin;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TreeAggregateTaskTest {
+
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+
+    @After
+    public void shutdown() throws Exception{
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void sameResultAsCountingTask() throws Exception{
+        ArrayTreeNode tree = new ArrayTreeNode(5,
+                new ArrayTreeNode(3), new ArrayTreeNode(2,
+                new ArrayTreeNode(2), new ArrayTreeNode(8)));
+
+        assertEquals(5, tree.size());
+        assertEquals(20, TreeAggregateTask.sum(pool, tree));
+    }
+
+    /**
+     * 팬아웃이 크고 깊은 체인이 섞인 트리. 노드마다 태스크를 만들거나 재귀로 내려가면 스택이 넘친다.
+     */
+    @Test
+    public void wideAndDeepTree() throws Exception{
+        ArrayTreeNode chain = new ArrayTreeNode(1);
+        for (int i = 0; i < 200_000; i++) {
+            chain = new ArrayTreeNode(1, chain);
+        }
+        ArrayTreeNode[] wide = new ArrayTreeNode[5_000];
+        for (int i = 0; i < wide.length; i++) {
+            wide[i] = i % 1000 == 0
+                    ? new ArrayTreeNode(2, new ArrayTreeNode(3), new ArrayTreeNode(4))
+                    : new ArrayTreeNode(2);
+        }
+        ArrayTreeNode root = new ArrayTreeNode(7, chain, new ArrayTreeNode(0, wide), chain);
+
+        long nodes = 1 + 2 * 200_001L + 1 + 5_000 + 10;
+        long sum = 7 + 2 * 200_001L + 2 * 5_000 + 5 * (3 + 4);
+        assertEquals(nodes, root.size());
+
+        for (int cutoff : new int[]{1, 16, 1000, Integer.MAX_VALUE}) {
+            assertEquals(sum, (long) pool.invoke(new TreeAggregateTask<>(root,
+                    node -> (long) node.getValue(), Monoid.longSum(), cutoff)));
+        }
+        assertEquals(sum, TreeAggregateTask.sum(pool, root));
+        assertEquals(nodes, (long) TreeAggregateTask.aggregate(pool, root, node -> 1L, Monoid.longSum()));
+        assertEquals(7, (int) TreeAggregateTask.aggregate(pool, root, ArrayTreeNode::getValue, Monoid.intMax()));
+    }
+
+    @Test
+    public void customMonoid() throws Exception{
+        ArrayTreeNode tree = new ArrayTreeNode(5,
+                new ArrayTreeNode(3), new ArrayTreeNode(2,
+                new ArrayTreeNode(-2), new ArrayTreeNode(8)));
+
+        int[] minMax = pool.invoke(new TreeAggregateTask<>(tree,
+                node -> new int[]{node.getValue(), node.getValue()},
+                Monoid.of(new int[]{Integer.MAX_VALUE, Integer.MIN_VALUE},
+                        (a, b) -> new int[]{Math.min(a[0], b[0]), Math.max(a[1], b[1])}),
+                1));
+        assertEquals(-2, minMax[0]);
+        assertEquals(8, minMax[1]);
+    }
+}
@@ -0,0 +1,123 @@
+package com.arahansa.learnreactiveasync.timer;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class HashedWheelTimerTest {
+
+    private final HashedWheelTimer timer = new HashedWheelTimer(
+            new ThreadFactoryBuilder().setNameFormat("test-timer-%d").setDaemon(true).build(),
+            10, TimeUnit.MILLISECONDS, 64);
+    private final TimeoutService timeouts = new TimeoutService(timer);
+
+    @After
+    public void stop() {
+        timer.stop();
+    }
+
+    @Test
+    public void expireAndCancel() throws Exception{
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicInteger cancelledRuns = new AtomicInteger();
+
+        long start = System.nanoTime();
+        HashedWheelTimer.Timeout expired = timer.newTimeout(latch::countDown, 100, TimeUnit.MILLISECONDS);
+        HashedWheelTimer.Timeout cancelled = timer.newTimeout(cancelledRuns::incrementAndGet, 100, TimeUnit.MILLISECONDS);
+        assertTrue(cancelled.cancel());
+
+        assertTrue(latch.await(1, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(100));
+        assertTrue(expired.isExpired());
+        assertFalse(expired.cancel());
+        assertTrue(cancelled.isCancelled());
+        Thread.sleep(50);
+        assertEquals(0, cancelledRuns.get());
+        assertEquals(0, timer.pendingTimeouts());
+    }
+
+    /**
+     * 휠 한 바퀴(64 틱 = 640ms)보다 먼 타이머도 제 시간에 만료된다.
+     */
+    /**
+     * taskExecutor 가 작업을 거절해도 만료된 작업은 버려지지 않고 워커 스레드에서 실행된다.
+     */
+    @Test
+    public void rejectedTaskRunsOnTimerThread() throws Exception{
+        ExecutorService closed = Executors.newSingleThreadExecutor();
+        closed.shutdown();
+        HashedWheelTimer rejecting = new HashedWheelTimer(
+                new ThreadFactoryBuilder().setNameFormat("rejecting-timer-%d").setDaemon(true).build(),
+                10, TimeUnit.MILLISECONDS, 64, closed);
+        try {
+            CompletableFuture<String> ranOn = new CompletableFuture<>();
+            rejecting.newTimeout(() -> ranOn.complete(Thread.currentThread().getName()), 20, TimeUnit.MILLISECONDS);
+
+            assertEquals("rejecting-timer-0", ranOn.get(5, TimeUnit.SECONDS));
+            assertEquals(0, rejecting.pendingTimeouts());
+        } finally {
+            rejecting.stop();
+        }
+    }
+
+    @Test
+    public void longerThanOneRound() throws Exception{
+        long start = System.nanoTime();
+        assertEquals("done", timeouts.delay("done", 800, TimeUnit.MILLISECONDS).get(2, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(800));
+    }
+
+    @Test
+    public void millionTimers() throws Exception{
+        int count = 1_000_000;
+        CountDownLatch latch = new CountDownLatch(count);
+        Runnable task = latch::countDown;
+        for (int i = 0; i < count; i++) {
+            timer.newTimeout(task, 100 + i % 500, TimeUnit.MILLISECONDS);
+        }
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        assertEquals(0, timer.pendingTimeouts());
+    }
+
+    @Test
+    public void futureTimeouts() throws Exception{
+        CompletableFuture<String> slow = timeouts.orTimeout(new CompletableFuture<>(), 50, TimeUnit.MILLISECONDS);
+        try {
+            slow.get(1, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof TimeoutException);
+        }
+
+        assertEquals("fallback", timeouts.completeOnTimeout(new CompletableFuture<>(), "fallback", 50, TimeUnit.MILLISECONDS)
+                .get(1, TimeUnit.SECONDS));
+
+        CompletableFuture<String> cancelled = timeouts.cancelAfter(new CompletableFuture<>(), 50, TimeUnit.MILLISECONDS);
+        try {
+            cancelled.get(1, TimeUnit.SECONDS);
+            fail();
+        } catch (CancellationException expected) {
+        }
+
+        // 먼저 끝난 future 의 타이머는 취소된다.
+        CompletableFuture<String> fast = timeouts.orTimeout(new CompletableFuture<>(), 10, TimeUnit.SECONDS);
+        assertEquals(1, timer.pendingTimeouts());
+        fast.complete("fast");
+        assertEquals(0, timer.pendingTimeouts());
+    }
+}
@@ -0,0 +1,147 @@
+package com.arahansa.learnreactiveasync.timer;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TimingWheelScheduledExecutorTest {
+
+    private final TimingWheelScheduledExecutor executor = new TimingWheelScheduledExecutor(2);
+
+    @After
+    public void shutdown() throws Exception{
+        executor.shutdownNow();
+        assertTrue(executor.awaitTermination(1, TimeUnit.SECONDS));
+    }
+
+    /**
+     * J01_ExecutorSample 의 scheduledExecutorService / repeatTask 를 그대로 돌린다.
+     */
+    @Test
+    public void dropInForScheduledThreadPool() throws Exception{
+        ScheduledExecutorService scheduler = executor;
+        CountDownLatch hello = new CountDownLatch(1);
+        scheduler.schedule(hello::countDown, 50, TimeUnit.MILLISECONDS);
+        assertTrue(hello.await(1, TimeUnit.SECONDS));
+
+        CountDownLatch lock = new CountDownLatch(3);
+        ScheduledFuture<?> future = scheduler.scheduleAtFixedRate(lock::countDown, 50, 10, TimeUnit.MILLISECONDS);
+        assertTrue(lock.await(1000, TimeUnit.MILLISECONDS));
+        assertTrue(future.cancel(true));
+        assertTrue(future.isCancelled());
+    }
+
+    @Test
+    public void neverRunsEarly() throws Exception{
+        List<Long> lateness = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(20);
+        for (int i = 0; i < 20; i++) {
+            long delayMillis = i * 7;
+            long start = System.nanoTime();
+            executor.schedule(() -> {
+                lateness.add(System.nanoTime() - start - TimeUnit.MILLISECONDS.toNanos(delayMillis));
+                done.countDown();
+            }, delayMillis, TimeUnit.MILLISECONDS);
+        }
+        assertTrue(done.await(2, TimeUnit.SECONDS));
+        for (long late : lateness) {
+            assertTrue(late >= 0);
+        }
+    }
+
+    /**
+     * 0 단(256 틱)을 넘는 지연은 윗단에 있다가 내려온다.
+     */
+    @Test
+    public void cascadesFromUpperLevel() throws Exception{
+        long start = System.nanoTime();
+        ScheduledFuture<String> future = executor.schedule(() -> "cascaded", 600, TimeUnit.MILLISECONDS);
+        assertTrue(future.getDelay(TimeUnit.MILLISECONDS) > 500);
+        assertEquals("cascaded", future.get(2, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(600));
+    }
+
+    @Test
+    public void fixedDelay() throws Exception{
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch five = new CountDownLatch(5);
+        ScheduledFuture<?> future = executor.scheduleWithFixedDelay(() -> {
+            runs.incrementAndGet();
+            five.countDown();
+        }, 0, 5, TimeUnit.MILLISECONDS);
+        assertTrue(five.await(1, TimeUnit.SECONDS));
+        future.cancel(false);
+        int afterCancel = runs.get();
+        Thread.sleep(30);
+        assertTrue(runs.get() <= afterCancel + 1);
+    }
+
+    /**
+     * 예약 수백만 개를 걸고 바로 취소해도 버킷에 남지 않는다.
+     */
+    @Test
+    public void millionsOfPeriodicTasks() throws Exception{
+        int count = 1_000_000;
+        AtomicInteger runs = new AtomicInteger();
+        List<ScheduledFuture<?>> futures = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            futures.add(executor.scheduleAtFixedRate(runs::incrementAndGet, 10_000 + i % 50_000, 60_000, TimeUnit.MILLISECONDS));
+        }
+        assertEquals(count, executor.getScheduledCount());
+        for (ScheduledFuture<?> future : futures) {
+            future.cancel(false);
+        }
+        assertEquals(0, executor.getScheduledCount());
+        assertEquals(0, runs.get());
+    }
+
+    /**
+     * 주기 태스크가 다시 place 되는 사이에 취소해도 버킷에 남지 않는다.
+     */
+    @Test
+    public void cancelWhileReschedulingLeavesNothingBehind() throws Exception{
+        int count = 20_000;
+        List<ScheduledFuture<?>> futures = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            futures.add(executor.scheduleAtFixedRate(() -> {
+            }, 0, 1, TimeUnit.HOURS));
+        }
+        // 첫 실행 뒤 한 시간 뒤로 다시 place 하는 것과 경쟁하도록 곧바로 취소한다.
+        for (ScheduledFuture<?> future : futures) {
+            future.cancel(false);
+        }
+        // workers 에 넘어간 것이 모두 끝나기를 기다린다. shutdown 하면 버킷이 비워지므로 그 전에 센다.
+        TimeUnit.MILLISECONDS.sleep(300);
+        assertEquals(0, executor.getScheduledCount());
+    }
+
+    @Test
+    public void shutdownCancelsPending() throws Exception{
+        ScheduledFuture<?> later = executor.schedule(() -> {
+        }, 1, TimeUnit.HOURS);
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.SECONDS));
+        assertTrue(later.isCancelled());
+        assertFalse(later.cancel(false));
+        try {
+            executor.schedule(() -> {
+            }, 1, TimeUnit.MILLISECONDS);
+            fail();
+        } catch (RejectedExecutionException expected) {
+        }
+    }
+}